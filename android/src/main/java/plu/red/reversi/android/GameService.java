@@ -33,6 +33,7 @@ import plu.red.reversi.core.command.Command;
 import plu.red.reversi.core.db.DBConnection;
 import plu.red.reversi.core.db.DBUtilities;
 import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.History;
 import plu.red.reversi.core.game.logic.ReversiLogic;
 import plu.red.reversi.core.game.player.BotPlayer;
 import plu.red.reversi.core.game.player.HumanPlayer;
@@ -223,8 +224,15 @@ public class GameService extends Service implements ICommandListener, IChatListe
             }
         }
         else {
-            if(cmd instanceof BoardCommand)
+            if(cmd instanceof BoardCommand) {
                 DBUtilities.INSTANCE.saveMove(mGame.getGameID(), (BoardCommand)cmd);
+
+                // Save the snapshot the move took, if it took one
+                History history = mGame.getHistory();
+                History.Snapshot snapshot = history.getSnapshot(history.getNumBoardCommands());
+                if(snapshot != null && snapshot.commands == history.getNumBoardCommands())
+                    DBUtilities.INSTANCE.saveSnapshot(mGame.getGameID(), snapshot);
+            }
         }
     }
 
@@ -0,0 +1,392 @@
+package plu.red.reversi.bench;
+
+import org.codehaus.jettison.json.JSONObject;
+import plu.red.reversi.core.Client;
+import plu.red.reversi.core.Controller;
+import plu.red.reversi.core.IMainGUI;
+import plu.red.reversi.core.SettingsLoader;
+import plu.red.reversi.core.command.Command;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.BotPlayer;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.DiscEvaluator;
+import plu.red.reversi.core.game.search.PatternEvaluator;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.util.Color;
+import plu.red.reversi.core.util.DataMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays two bots against each other over many games of reversi to see which is stronger, such as a change to the
+ * search or evaluator against the version before it.
+ *
+ * Games run on a Game with no GUI, one game per thread, with each search on the thread of its game. Every game starts
+ * with a few random moves so the bots do not play the same game over and over, and each opening is played twice with
+ * the bots swapping colors so neither gets the better side of it. The results are tallied from the first bot's point
+ * of view, along with the Elo difference they imply.
+ *
+ * Can also be run from the command line:
+ * <pre>
+ *     Arena [first bot] [second bot] [games] [threads] [opening plies] [endgame empties]
+ * </pre>
+ * where a bot is written as depth[:mode][:evaluator], such as "5:pvs:pattern" or "4:alpha_beta:disc".
+ */
+public class Arena {
+    /// Number of random moves at the start of each game.
+    public static final int DEFAULT_OPENING_PLIES = 6;
+
+    /**
+     * How one side of the match searches.
+     */
+    public static class Bot {
+        public final int depth;
+        public final ReversiMinimax.SearchMode mode;
+        /// Either "pattern" or "disc".
+        public final String evaluator;
+
+        /**
+         * @param depth Depth to search to.
+         * @param mode How to search each position.
+         * @param evaluator Either "pattern" or "disc".
+         * @throws IllegalArgumentException If the evaluator is not known.
+         */
+        public Bot(int depth, ReversiMinimax.SearchMode mode, String evaluator) throws IllegalArgumentException {
+            if(!evaluator.equals("pattern") && !evaluator.equals("disc"))
+                throw new IllegalArgumentException("Unknown evaluator " + evaluator);
+            this.depth = depth;
+            this.mode = mode;
+            this.evaluator = evaluator;
+        }
+
+
+        /**
+         * Reads a bot written as depth[:mode][:evaluator]. The mode defaults to the one BotPlayer would use for the
+         * depth and the evaluator to "pattern".
+         * @param spec Bot to read.
+         * @return The bot.
+         * @throws IllegalArgumentException If the bot cannot be read.
+         */
+        public static Bot parse(String spec) throws IllegalArgumentException {
+            final String[] parts = spec.split(":");
+            try {
+                final int depth = Integer.parseInt(parts[0]);
+                final ReversiMinimax.SearchMode mode = parts.length > 1
+                        ? ReversiMinimax.SearchMode.valueOf(parts[1].toUpperCase(Locale.ROOT))
+                        : BotPlayer.searchModeFor(depth);
+                return new Bot(depth, mode, parts.length > 2 ? parts[2].toLowerCase(Locale.ROOT) : "pattern");
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Bad bot " + spec);
+            }
+        }
+
+
+        /**
+         * Creates the search for this bot, on the thread it is called from.
+         */
+        ReversiMinimax create(Game game, int player, int endgameEmpties) {
+            return new ReversiMinimax(game, player, depth)
+                    .setEndgameEmpties(endgameEmpties)
+                    .setSearchMode(mode)
+                    .setEvaluator(evaluator.equals("disc") ? new DiscEvaluator() : new PatternEvaluator());
+        }
+
+
+        @Override
+        public String toString() {
+            return depth + ":" + mode.name().toLowerCase(Locale.ROOT) + ":" + evaluator;
+        }
+    }
+
+    /**
+     * Tally of a match from the first bot's point of view. Games add to it from their own threads.
+     */
+    public static class Result {
+        private int wins = 0;
+        private int draws = 0;
+        private int losses = 0;
+        /// Indexed by bot, 0 for the first.
+        private final long[] moves = new long[2];
+        private final long[] nanos = new long[2];
+        private final long[] nodes = new long[2];
+
+
+        /**
+         * Counts a finished game.
+         * @param score Score of the first bot less that of the second.
+         */
+        public synchronized void addGame(int score) {
+            if(score > 0) wins++;
+            else if(score < 0) losses++;
+            else draws++;
+        }
+
+
+        /**
+         * Counts a move picked by a search.
+         * @param bot 0 for the first bot, 1 for the second.
+         * @param nanos How long the search took.
+         * @param nodes Number of positions the search visited.
+         */
+        public synchronized void addMove(int bot, long nanos, long nodes) {
+            this.moves[bot]++;
+            this.nanos[bot] += nanos;
+            this.nodes[bot] += nodes;
+        }
+
+
+        public synchronized int getWins() { return wins; }
+        public synchronized int getDraws() { return draws; }
+        public synchronized int getLosses() { return losses; }
+        public synchronized int getGames() { return wins + draws + losses; }
+
+
+        /**
+         * @return Points per game for the first bot, counting a draw as half a win.
+         */
+        public synchronized double getScore() {
+            final int games = getGames();
+            return games == 0 ? 0.5 : (wins + draws * 0.5) / games;
+        }
+
+
+        /**
+         * @return Elo difference of the first bot over the second, infinite if one of them won every game.
+         */
+        public synchronized double getElo() {
+            return elo(getScore());
+        }
+
+
+        /**
+         * @return Half the width of the 95% confidence interval of getElo(), infinite if it is unbounded.
+         */
+        public synchronized double getEloError() {
+            final int games = getGames();
+            if(games < 2) return Double.POSITIVE_INFINITY;
+            final double score = getScore();
+            if(score <= 0 || score >= 1) return Double.POSITIVE_INFINITY;
+            //spread of a single game's points around the mean
+            final double variance = (wins * sq(1 - score) + draws * sq(0.5 - score) + losses * sq(score)) / games;
+            final double margin = 1.96 * Math.sqrt(variance / games);
+            return (elo(Math.min(1, score + margin)) - elo(Math.max(0, score - margin))) / 2;
+        }
+
+
+        /**
+         * @param bot 0 for the first bot, 1 for the second.
+         * @return Average time taken to pick a move in milliseconds.
+         */
+        public synchronized double getMillisPerMove(int bot) {
+            return moves[bot] == 0 ? 0 : nanos[bot] / 1e6 / moves[bot];
+        }
+
+
+        /**
+         * @param bot 0 for the first bot, 1 for the second.
+         * @return Average number of positions searched to pick a move.
+         */
+        public synchronized long getNodesPerMove(int bot) {
+            return moves[bot] == 0 ? 0 : nodes[bot] / moves[bot];
+        }
+
+
+        private static double elo(double score) {
+            if(score <= 0) return Double.NEGATIVE_INFINITY;
+            if(score >= 1) return Double.POSITIVE_INFINITY;
+            return -400 * Math.log10(1 / score - 1);
+        }
+
+
+        private static double sq(double x) {
+            return x * x;
+        }
+
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.ROOT, "+%d =%d -%d  score %.3f  elo %+.1f +/- %.1f  " +
+                            "ms/move %.2f vs %.2f  nodes/move %d vs %d",
+                    wins, draws, losses, getScore(), getElo(), getEloError(),
+                    getMillisPerMove(0), getMillisPerMove(1), getNodesPerMove(0), getNodesPerMove(1));
+        }
+    }
+
+    private final Bot first;
+    private final Bot second;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingPlies = DEFAULT_OPENING_PLIES;
+    private long seed = 0;
+    private int endgameEmpties = ReversiMinimax.DEFAULT_ENDGAME_EMPTIES;
+
+
+    /**
+     * Sets up a match.
+     * @param first Bot the results are tallied for.
+     * @param second Bot it plays against.
+     */
+    public Arena(Bot first, Bot second) {
+        this.first = first;
+        this.second = second;
+    }
+
+
+    /**
+     * Sets how many games are played at once. Defaults to one per processor.
+     * @param threads Number of threads.
+     * @return This object for chaining.
+     */
+    public Arena setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+
+    /**
+     * Sets how many random moves each game starts with. Defaults to DEFAULT_OPENING_PLIES.
+     * @param plies Number of moves.
+     * @return This object for chaining.
+     */
+    public Arena setOpeningPlies(int plies) {
+        this.openingPlies = Math.max(0, plies);
+        return this;
+    }
+
+
+    /**
+     * Sets the seed the openings are picked with, so a match can be played again exactly. Defaults to 0.
+     * @param seed Seed for the openings.
+     * @return This object for chaining.
+     */
+    public Arena setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+
+    /**
+     * Sets how many empty tiles both bots start solving the endgame exactly at. Solving is most of the time taken by
+     * shallow bots, so turning it off makes matches of them much quicker. Defaults to the same as ReversiMinimax.
+     * @param empties Number of empty tiles, 0 to never solve.
+     * @return This object for chaining.
+     */
+    public Arena setEndgameEmpties(int empties) {
+        this.endgameEmpties = Math.max(0, empties);
+        return this;
+    }
+
+
+    /**
+     * Plays the match, returning once every game is over.
+     * @param games Number of games; an odd number leaves the last opening played from one side only.
+     * @return Results of the match.
+     */
+    public Result run(int games) {
+        if(Controller.getInstance() == null) Controller.init(new Client(null, null, null, null));
+        final Result result = new Result();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < games; i++) {
+                //both games of a pair get the same opening
+                final long opening = seed * 31 + i / 2;
+                final boolean swapped = i % 2 == 1;
+                futures.add(pool.submit(() -> play(result, opening, swapped)));
+            }
+            for(Future<?> future : futures) future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+
+    /**
+     * Plays one game, driving it through commands the way players do.
+     * @param result Tally to add the game to.
+     * @param opening Seed for the random moves at the start.
+     * @param swapped True if the second bot moves first.
+     */
+    private void play(Result result, long opening, boolean swapped) {
+        final Game game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        final DataMap settings = SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject());
+        //a player who cannot move passes instead of ending the game, as in the usual rules
+        settings.set(SettingsLoader.GAME_ALLOW_TURN_SKIPPING, true);
+        game.setSettings(settings).setLogic(new ReversiLogic(game));
+        final int black = new NullPlayer(game, Color.BLACK).getID();
+        final int white = new NullPlayer(game, Color.WHITE).getID();
+        game.initialize();
+
+        //the first player to move is the lowest ID
+        final int firstMover = Math.min(black, white);
+        final int firstBot = swapped ? Math.max(black, white) : firstMover;
+        final ReversiMinimax[] bots = {
+                first.create(game, firstBot, endgameEmpties),
+                second.create(game, firstBot == black ? white : black, endgameEmpties)
+        };
+
+        final GameLogic logic = game.getGameLogic();
+        final Board board = game.getBoard();
+        final int[] moves = new int[board.size * board.size];
+        final Random random = new Random(opening);
+        for(int ply = 0; !game.isGameOver(); ply++) {
+            final int player = game.getCurrentPlayer().getID();
+            final BoardIndex index;
+            if(ply < openingPlies) {
+                final int count = logic.getValidMoves(game.getGameCache(), board, player, moves);
+                final int cell = moves[random.nextInt(count)];
+                index = new BoardIndex(cell / board.size, cell % board.size);
+            } else {
+                final int bot = player == firstBot ? 0 : 1;
+                final long start = System.nanoTime();
+                index = bots[bot].getBestPlay();
+                final SearchStats stats = bots[bot].getLastStats();
+                result.addMove(bot, System.nanoTime() - start, stats == null ? 0 : stats.getNodes());
+            }
+            if(!game.acceptCommand(new MoveCommand(Command.Source.CLIENTSIDE_ONLY, player, index)))
+                throw new IllegalStateException("Move " + index + " was not accepted");
+        }
+
+        final int otherBot = firstBot == black ? white : black;
+        result.addGame(logic.getScore(firstBot) - logic.getScore(otherBot));
+    }
+
+
+    /**
+     * Plays a match and prints the results.
+     * @param args [first bot] [second bot] [games] [threads] [opening plies] [endgame empties]
+     */
+    public static void main(String[] args) {
+        final Bot first = Bot.parse(args.length > 0 ? args[0] : "4");
+        final Bot second = Bot.parse(args.length > 1 ? args[1] : "3");
+        final int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        final Arena arena = new Arena(first, second);
+        if(args.length > 3) arena.setThreads(Integer.parseInt(args[3]));
+        if(args.length > 4) arena.setOpeningPlies(Integer.parseInt(args[4]));
+        if(args.length > 5) arena.setEndgameEmpties(Integer.parseInt(args[5]));
+
+        System.out.println(first + " vs " + second + ", " + games + " games");
+        final long start = System.nanoTime();
+        final Result result = arena.run(games);
+        System.out.println(result);
+        System.out.println(String.format(Locale.ROOT, "%.1fs", (System.nanoTime() - start) / 1e9));
+        System.exit(0);
+    }
+}
@@ -0,0 +1,96 @@
+package plu.red.reversi.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking and playing moves in go, on a board a third filled by random moves (with captures along the way).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GoLogicBenchmark {
+    @Param({"9", "19"})
+    public int size;
+
+    private final GoLogic logic = new GoLogic();
+    private Board start;
+    private GameLogicCache startCache;
+    private Board board;
+    private GameLogicCache cache;
+    private int[] moves;
+    private int player;
+    private MoveCommand move;
+
+
+    @Setup
+    public void setup() {
+        final int[] players = {0, 1};
+        start = new Board(size);
+        startCache = logic.createCache();
+        logic.initBoard(startCache, start, players, false, false);
+        player = players[Positions.play(logic, startCache, start, players, size * size / 3, Positions.SEED, null)];
+
+        moves = new int[size * size];
+        final int count = logic.getValidMoves(startCache, start, player, moves);
+        if(count == 0) throw new IllegalStateException("No moves on a " + size + "x" + size + " board");
+        move = new MoveCommand(player, new BoardIndex(moves[count / 2] / size, moves[count / 2] % size));
+
+        board = new Board(start);
+        cache = startCache.duplicate();
+    }
+
+
+    @Benchmark
+    public boolean isValidMove() {
+        return logic.isValidMove(cache, board, move);
+    }
+
+
+    @Benchmark
+    public int getValidMoves() {
+        return logic.getValidMoves(cache, board, player, moves);
+    }
+
+
+    /**
+     * Resets the board to where it was and plays a move. Compare against copy() for the cost of the move alone.
+     */
+    @Benchmark
+    public Board play() {
+        board.copyFrom(start);
+        cache.copyFrom(startCache);
+        logic.play(cache, board, move, false, false);
+        return board;
+    }
+
+
+    /**
+     * Only resets the board, the overhead included in play().
+     */
+    @Benchmark
+    public Board copy() {
+        board.copyFrom(start);
+        cache.copyFrom(startCache);
+        return board;
+    }
+}
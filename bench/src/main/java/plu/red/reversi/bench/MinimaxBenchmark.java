@@ -0,0 +1,90 @@
+package plu.red.reversi.bench;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plu.red.reversi.core.Client;
+import plu.red.reversi.core.Controller;
+import plu.red.reversi.core.IMainGUI;
+import plu.red.reversi.core.SettingsLoader;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.TranspositionTable;
+import plu.red.reversi.core.util.Color;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole search for a move to a fixed depth, on the opening position and two positions from random games. Each
+ * search starts from an empty transposition table and fresh move ordering, as the first search of a game would, and
+ * the endgame solver is left off so the depth is all that decides how much gets searched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MinimaxBenchmark {
+    @Param({"4", "6"})
+    public int depth;
+
+    /// Number of random moves made before searching; 0 is the opening position.
+    @Param({"0", "12", "24"})
+    public int plies;
+
+    private Game game;
+    private int player;
+    private final TranspositionTable table = new TranspositionTable();
+    private ReversiMinimax minimax;
+
+
+    @Setup
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        final Integer[] used = game.getUsedPlayers();
+        final int[] players = new int[used.length];
+        for(int i = 0; i < players.length; i++) players[i] = used[i];
+        //turns go up through the IDs, starting from the lowest
+        Arrays.sort(players);
+        player = players[Positions.play(game.getGameLogic(), game.getGameCache(), game.getBoard(), players,
+                plies, Positions.SEED, null)];
+    }
+
+
+    @Setup(Level.Invocation)
+    public void newSearch() {
+        //searches take milliseconds, so setting up each one costs nothing in comparison
+        table.clear();
+        minimax = new ReversiMinimax(game, player, depth)
+                .setTranspositionTable(table)
+                .setEndgameEmpties(0);
+    }
+
+
+    @Benchmark
+    public BoardIndex getBestPlay() {
+        return minimax.getBestPlay();
+    }
+}
@@ -0,0 +1,221 @@
+package plu.red.reversi.bench;
+
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.logic.MoveUndo;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+
+import java.util.Arrays;
+
+/**
+ * Counts every line of play to a fixed depth, the same way a search walks the game tree: moves come from
+ * getValidMoves() and are made and taken back with makeMove() and unmakeMove(). The counts only depend on the rules,
+ * so comparing them against known values catches any move generator which has stopped following them, and the time
+ * taken gives a single number for how fast a logic can walk its tree.
+ *
+ * A player with no moves passes, which uses up a ply; once every player has passed in a row the game is over and the
+ * position is counted as a leaf, however deep it is.
+ *
+ * Can also be run from the command line, checking every known position of a game and printing the counts and speed:
+ * <pre>
+ *     Perft [reversi|go] [depth]
+ * </pre>
+ */
+public class Perft {
+    /**
+     * A position to count from, with the counts it is known to give.
+     */
+    public static class Position {
+        public final String name;
+        /// Size of the board.
+        public final int size;
+        /// Moves played after setting up the board, in coordinate form such as "d3", the first player moving first.
+        public final String[] moves;
+        /// Leaf counts for each depth, starting at depth 1.
+        public final long[] counts;
+
+        /**
+         * @param name Name to print the counts under.
+         * @param size Size of the board.
+         * @param moves Moves to play separated by spaces, or an empty string for the position after setup.
+         * @param counts Leaf counts for each depth, starting at depth 1.
+         */
+        public Position(String name, int size, String moves, long... counts) {
+            this.name = name;
+            this.size = size;
+            this.moves = moves.isEmpty() ? new String[0] : moves.split(" ");
+            this.counts = counts;
+        }
+    }
+
+    /// Players of the games the positions come from.
+    public static final int[] PLAYERS = {0, 1};
+
+    /// Known reversi positions. The counts from the start are the published ones for 8x8 Othello.
+    public static final Position[] REVERSI = {
+            new Position("start", 8, "",
+                    4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288, 24571284),
+            new Position("midgame-16", 8, "c5 c6 f4 f5 f6 d3 c7 b7 e3 c8 a8 f3 f2 a6 c2 c4",
+                    4, 19, 115, 1127, 9590, 115716),
+            new Position("midgame-34", 8, "c5 c4 f3 f4 d3 f2 b3 b4 g2 c6 f1 d6 a4 h1 f6 c2 d7 e7 e2 d2 h3 c7 b5 g5 "
+                    + "c8 e6 d1 a2 g3 e3 g1 a5 h6 b2",
+                    14, 142, 1721, 18241, 202407, 2125564)
+    };
+
+    /// Known go positions. Counts were checked against playing every tile on a copy of the board.
+    public static final Position[] GO = {
+            new Position("start", 9, "",
+                    81, 6480, 511920, 39929136),
+            new Position("midgame-40", 9, "f5 c8 h5 f9 h3 d4 i6 g3 b7 h7 i4 e8 a9 c9 f8 f2 d5 c2 b2 d2 a8 a2 a1 c1 a5 "
+                    + "h1 h6 g9 i9 d7 f1 f7 e2 e1 b8 b3 c6 a4 e4 e5",
+                    40, 1560, 59170, 2196798)
+    };
+
+    private final GameLogic logic;
+    private final int[] players;
+    /// Undo record and move list for each ply, grown as deeper counts are asked for.
+    private MoveUndo[] undos = new MoveUndo[0];
+    private int[][] moves = new int[0][];
+
+
+    /**
+     * Creates a counter for a game.
+     * @param logic Rules to walk the tree with.
+     * @param players Players in the order they move.
+     */
+    public Perft(GameLogic logic, int[] players) {
+        this.logic = logic;
+        this.players = players.clone();
+    }
+
+
+    /**
+     * Sets up a board for a known position.
+     * @param position Position to set up.
+     * @param cache Cache for the board.
+     * @param board Board of the position's size to set up; it should be empty.
+     * @return Index into the players of whoever moves next.
+     * @throws IllegalArgumentException If a move of the position cannot be played.
+     */
+    public int setup(Position position, GameLogicCache cache, Board board) throws IllegalArgumentException {
+        logic.initBoard(cache, board, players, false, false);
+        int turn = 0;
+        for(String move : position.moves) {
+            final BoardIndex index = new BoardIndex(Integer.parseInt(move.substring(1)) - 1, move.charAt(0) - 'a');
+            //players who cannot move pass, as they do while counting
+            for(int passes = 0; !logic.canPlay(cache, board, players[turn]); passes++) {
+                if(passes == players.length) throw new IllegalArgumentException("Game is over before " + move);
+                turn = (turn + 1) % players.length;
+            }
+            final MoveCommand command = new MoveCommand(players[turn], index);
+            if(!logic.isValidMove(cache, board, command))
+                throw new IllegalArgumentException("Invalid move " + move + " in " + position.name);
+            logic.play(cache, board, command, false, false);
+            turn = (turn + 1) % players.length;
+        }
+        return turn;
+    }
+
+
+    /**
+     * Counts the leaves of the game tree below a position. The board and cache are back the way they were once this
+     * returns.
+     * @param cache Cache for the board.
+     * @param board Position to count from.
+     * @param turn Index into the players of whoever moves next.
+     * @param depth Number of plies to look ahead.
+     * @return Number of positions reached after exactly that many plies, plus the games which ended on the way.
+     */
+    public long count(GameLogicCache cache, Board board, int turn, int depth) {
+        if(moves.length < depth) {
+            final int old = moves.length;
+            moves = Arrays.copyOf(moves, depth);
+            undos = Arrays.copyOf(undos, depth);
+            for(int i = old; i < depth; i++) {
+                moves[i] = new int[board.size * board.size];
+                undos[i] = logic.createUndo();
+            }
+        }
+        return count(cache, board, turn, depth, 0);
+    }
+
+
+    private long count(GameLogicCache cache, Board board, int turn, int depth, int passes) {
+        if(depth == 0) return 1;
+        if(passes == players.length) return 1;
+
+        final int player = players[turn];
+        final int next = (turn + 1) % players.length;
+        final int[] list = moves[depth - 1];
+        final int n = logic.getValidMoves(cache, board, player, list);
+        if(n == 0) return count(cache, board, next, depth - 1, passes + 1);
+        //the last ply only needs the number of moves
+        if(depth == 1) return n;
+
+        final MoveUndo undo = undos[depth - 1];
+        final MoveCommand command = new MoveCommand(player, new BoardIndex());
+        long total = 0;
+        for(int i = 0; i < n; i++) {
+            command.position.row = list[i] / board.size;
+            command.position.column = list[i] % board.size;
+            logic.makeMove(cache, board, command, undo);
+            total += count(cache, board, next, depth - 1, 0);
+            logic.unmakeMove(cache, board, undo);
+        }
+        return total;
+    }
+
+
+    /**
+     * Counts each depth of a known position in turn, printing the counts and how fast they were found.
+     * @param position Position to count from.
+     * @param depth Deepest depth to count, no deeper than the known counts.
+     * @return True if every count matched.
+     */
+    public boolean check(Position position, int depth) {
+        final Board board = new Board(position.size);
+        final GameLogicCache cache = logic.createCache();
+        final int turn = setup(position, cache, board);
+
+        boolean matched = true;
+        long leaves = 0;
+        long nanos = 0;
+        for(int d = 1; d <= Math.min(depth, position.counts.length); d++) {
+            final long start = System.nanoTime();
+            final long count = count(cache, board, turn, d);
+            final long elapsed = System.nanoTime() - start;
+            leaves += count;
+            nanos += elapsed;
+
+            final long expected = position.counts[d - 1];
+            System.out.println(String.format("%-12s %2d %,14d %,12d/s %s", position.name, d, count,
+                    (long)(count * 1e9 / Math.max(1, elapsed)), count == expected ? "ok" : "expected " + expected));
+            if(count != expected) matched = false;
+        }
+        System.out.println(String.format("%-12s    %,14d %,12d/s", position.name, leaves,
+                (long)(leaves * 1e9 / Math.max(1, nanos))));
+        return matched;
+    }
+
+
+    /**
+     * Checks every known position of a game.
+     * @param args [reversi|go] [depth]
+     */
+    public static void main(String[] args) {
+        final boolean go = args.length > 0 && args[0].equalsIgnoreCase("go");
+        final int depth = args.length > 1 ? Integer.parseInt(args[1]) : (go ? 4 : 9);
+
+        final Perft perft = new Perft(go ? new GoLogic() : new ReversiLogic(), PLAYERS);
+        boolean matched = true;
+        for(Position position : go ? GO : REVERSI)
+            matched &= perft.check(position, depth);
+
+        System.out.println(matched ? "All counts match" : "COUNTS DO NOT MATCH");
+        if(!matched) System.exit(1);
+    }
+}
@@ -0,0 +1,58 @@
+package plu.red.reversi.bench;
+
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.History;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+
+import java.util.Random;
+
+/**
+ * Builds the positions the benchmarks run on. Every position comes from a game of random moves with a fixed seed, so
+ * each run of the benchmarks measures exactly the same work and their results can be compared.
+ */
+final class Positions {
+    /// Seed used for every game unless a benchmark picks its own.
+    static final long SEED = 20170423L;
+
+    private Positions() {}
+
+
+    /**
+     * Plays random valid moves, passing for any player who cannot move, until enough moves have been made or nobody
+     * can move.
+     * @param logic Rules of the game.
+     * @param cache Cache of the board, updated with the moves.
+     * @param board Set up board to play on.
+     * @param players Players in the order they move, the first moving first.
+     * @param plies Number of moves to make.
+     * @param seed Seed for choosing the moves.
+     * @param history History to record the moves in, or null.
+     * @return Index into players of whoever moves next.
+     */
+    static int play(GameLogic logic, GameLogicCache cache, Board board, int[] players, int plies, long seed,
+                    History history) {
+        final Random random = new Random(seed);
+        final int[] moves = new int[board.size * board.size];
+        int turn = 0;
+        int passes = 0;
+        while(plies > 0 && passes < players.length) {
+            final int player = players[turn];
+            final int count = logic.getValidMoves(cache, board, player, moves);
+            if(count == 0) {
+                passes++;
+            } else {
+                final int tile = moves[random.nextInt(count)];
+                final MoveCommand move = new MoveCommand(player, new BoardIndex(tile / board.size, tile % board.size));
+                logic.play(cache, board, move, false, false);
+                if(history != null) history.addCommand(move);
+                passes = 0;
+                plies--;
+            }
+            turn = (turn + 1) % players.length;
+        }
+        return turn;
+    }
+}
@@ -0,0 +1,112 @@
+package plu.red.reversi.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and playing moves in reversi, on an 8x8 board after a number of random moves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ReversiLogicBenchmark {
+    /// Number of random moves made before measuring; 0 is the opening position.
+    @Param({"0", "20", "40"})
+    public int plies;
+
+    private final FlipLogic logic = new FlipLogic();
+    private final Board start = new Board(8);
+    private final GameLogicCache startCache = logic.createCache();
+    private final Board board = new Board(8);
+    private final GameLogicCache cache = logic.createCache();
+    private final int[] moves = new int[64];
+    private int player;
+    private MoveCommand move;
+
+
+    @Setup
+    public void setup() {
+        final int[] players = {0, 1};
+        logic.initBoard(startCache, start, players, false, false);
+        player = players[Positions.play(logic, startCache, start, players, plies, Positions.SEED, null)];
+
+        final int count = logic.getValidMoves(startCache, start, player, moves);
+        if(count == 0) throw new IllegalStateException("No moves after " + plies + " plies");
+        move = new MoveCommand(player, new BoardIndex(moves[count / 2] / 8, moves[count / 2] % 8));
+
+        board.copyFrom(start);
+        cache.copyFrom(startCache);
+    }
+
+
+    @Benchmark
+    public Set<BoardIndex> getValidMoves() {
+        return logic.getValidMoves(cache, board, player);
+    }
+
+
+    @Benchmark
+    public int getValidMovesArray() {
+        return logic.getValidMoves(cache, board, player, moves);
+    }
+
+
+    @Benchmark
+    public Collection<BoardIndex> calculateFlipsFromBoard() {
+        return logic.calculateFlips(move.position, player, board);
+    }
+
+
+    /**
+     * Resets the board to where it was and plays a move. Compare against copy() for the cost of the move alone.
+     */
+    @Benchmark
+    public Board play() {
+        board.copyFrom(start);
+        cache.copyFrom(startCache);
+        logic.play(cache, board, move, false, false);
+        return board;
+    }
+
+
+    /**
+     * Only resets the board, the overhead included in play().
+     */
+    @Benchmark
+    public Board copy() {
+        board.copyFrom(start);
+        cache.copyFrom(startCache);
+        return board;
+    }
+
+
+    /**
+     * Opens up calculateFlipsFromBoard, which the logic only uses internally.
+     */
+    private static class FlipLogic extends ReversiLogic {
+        Collection<BoardIndex> calculateFlips(BoardIndex origin, int playerId, Board board) {
+            return calculateFlipsFromBoard(origin, playerId, board);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package plu.red.reversi.bench;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plu.red.reversi.core.SettingsLoader;
+import plu.red.reversi.core.command.SetCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.History;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.util.DataMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading through DataMap, both for a whole game's History (which goes through the converter History
+ * registers) and for the default game settings. Each goes all the way to a string and back, as saved games and
+ * network messages do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    private DataMap history;
+    private String historyJSON;
+    private DataMap settings;
+    private String settingsJSON;
+
+
+    @Setup
+    public void setup() {
+        //a full game of random moves, as it would be saved
+        final ReversiLogic logic = new ReversiLogic();
+        final Board board = new Board(8);
+        final GameLogicCache cache = logic.createCache();
+        final int[] players = {0, 1};
+        final History game = new History();
+        for(SetCommand command : logic.getSetupCommands(players, board.size)) {
+            logic.apply(cache, board, command, false, false);
+            game.addCommand(command);
+        }
+        Positions.play(logic, cache, board, players, board.size * board.size, Positions.SEED, game);
+
+        history = new DataMap();
+        history.set("history", game);
+        historyJSON = history.toJSON().toString();
+
+        settings = SettingsLoader.INSTANCE.createGameSettings();
+        settingsJSON = settings.toJSON().toString();
+    }
+
+
+    @Benchmark
+    public String historyToJSON() {
+        return history.toJSON().toString();
+    }
+
+
+    @Benchmark
+    public History historyFromJSON() throws Exception {
+        return new DataMap(new JSONObject(historyJSON)).get("history", History.class);
+    }
+
+
+    @Benchmark
+    public String settingsToJSON() {
+        return settings.toJSON().toString();
+    }
+
+
+    @Benchmark
+    public DataMap settingsFromJSON() throws Exception {
+        return new DataMap(new JSONObject(settingsJSON));
+    }
+}
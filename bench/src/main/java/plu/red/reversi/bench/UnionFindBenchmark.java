@@ -0,0 +1,105 @@
+package plu.red.reversi.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import plu.red.reversi.core.util.IntUnionFind;
+import plu.red.reversi.core.util.UnionFind;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The generic UnionFind next to the int-indexed one go uses for its groups. Each benchmark does the same random
+ * unions (or finds) over the same values for both, so the two can be compared directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class UnionFindBenchmark {
+    /// Number of values; 441 is every cell of a 19x19 board with its border.
+    @Param({"441", "10000"})
+    public int size;
+
+    private int[] pairs;
+    private UnionFind<Integer> built;
+    private IntUnionFind intBuilt;
+
+
+    @Setup
+    public void setup() {
+        //half as many unions as values leaves a mix of large and small sets
+        final Random random = new Random(Positions.SEED);
+        pairs = new int[size];
+        for(int i = 0; i < pairs.length; i++) pairs[i] = random.nextInt(size);
+
+        built = new UnionFind<>(size);
+        intBuilt = new IntUnionFind(size);
+        build(built);
+        build(intBuilt);
+    }
+
+
+    private void build(UnionFind<Integer> uf) {
+        for(int x = 0; x < size; x++) uf.add(x);
+        for(int i = 0; i + 1 < pairs.length; i += 2) uf.union(pairs[i], pairs[i + 1]);
+    }
+
+
+    private void build(IntUnionFind uf) {
+        for(int x = 0; x < size; x++) uf.add(x);
+        for(int i = 0; i + 1 < pairs.length; i += 2) uf.union(pairs[i], pairs[i + 1]);
+    }
+
+
+    @Benchmark
+    public int unionFindBuild() {
+        final UnionFind<Integer> uf = new UnionFind<>(size);
+        build(uf);
+        return uf.disjointSets();
+    }
+
+
+    @Benchmark
+    public int intUnionFindBuild() {
+        final IntUnionFind uf = new IntUnionFind(size);
+        build(uf);
+        return uf.disjointSets();
+    }
+
+
+    @Benchmark
+    public void unionFindGetRep(Blackhole bh) {
+        for(int x : pairs) bh.consume(built.getRep(x));
+    }
+
+
+    @Benchmark
+    public void intUnionFindGetRep(Blackhole bh) {
+        for(int x : pairs) bh.consume(intBuilt.getRep(x));
+    }
+
+
+    @Benchmark
+    public UnionFind<Integer> unionFindCopy() {
+        return new UnionFind<>(built);
+    }
+
+
+    @Benchmark
+    public IntUnionFind intUnionFindCopy() {
+        return new IntUnionFind(intBuilt);
+    }
+}
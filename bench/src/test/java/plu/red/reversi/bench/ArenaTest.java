@@ -0,0 +1,69 @@
+package plu.red.reversi.bench;
+
+import org.junit.Test;
+import plu.red.reversi.core.game.ReversiMinimax;
+
+import static org.junit.Assert.*;
+
+public class ArenaTest {
+    @Test
+    public void testParseBot() {
+        Arena.Bot bot = Arena.Bot.parse("5:alpha_beta:disc");
+        assertEquals(5, bot.depth);
+        assertEquals(ReversiMinimax.SearchMode.ALPHA_BETA, bot.mode);
+        assertEquals("disc", bot.evaluator);
+        assertEquals("5:alpha_beta:disc", bot.toString());
+
+        //the mode defaults to what a BotPlayer of that depth would use
+        assertEquals(ReversiMinimax.SearchMode.PVS, Arena.Bot.parse("6").mode);
+        assertEquals("pattern", Arena.Bot.parse("2").evaluator);
+
+        for(String bad : new String[] {"x", "3:fast", "3:pvs:random"}) {
+            try {
+                Arena.Bot.parse(bad);
+                assertTrue(false);
+            } catch(IllegalArgumentException e) {
+                assertTrue(true);
+            }
+        }
+    }
+
+    @Test
+    public void testElo() {
+        Arena.Result result = new Arena.Result();
+        assertEquals(0, result.getElo(), 1e-9);
+        assertTrue(Double.isInfinite(result.getEloError()));
+
+        for(int i = 0; i < 60; i++) result.addGame(1);
+        for(int i = 0; i < 20; i++) result.addGame(0);
+        for(int i = 0; i < 20; i++) result.addGame(-3);
+        assertEquals(100, result.getGames());
+        assertEquals(0.7, result.getScore(), 1e-9);
+        //a 70% score is about 147 Elo
+        assertEquals(147.2, result.getElo(), 0.1);
+        double error = result.getEloError();
+        assertTrue(error > 50 && error < 100);
+
+        //more games of the same kind tighten it
+        for(int i = 0; i < 60; i++) result.addGame(1);
+        for(int i = 0; i < 20; i++) result.addGame(0);
+        for(int i = 0; i < 20; i++) result.addGame(-3);
+        assertEquals(147.2, result.getElo(), 0.1);
+        assertTrue(result.getEloError() < error);
+
+        Arena.Result sweep = new Arena.Result();
+        sweep.addGame(2);
+        sweep.addGame(5);
+        assertTrue(Double.isInfinite(sweep.getElo()));
+        assertTrue(Double.isInfinite(sweep.getEloError()));
+    }
+
+    @Test
+    public void testRun() {
+        Arena.Result result = new Arena(Arena.Bot.parse("2"), Arena.Bot.parse("1"))
+                .setThreads(2).setSeed(3).setEndgameEmpties(0).run(4);
+        assertEquals(4, result.getGames());
+        assertTrue(result.getMillisPerMove(0) > 0);
+        assertTrue(result.getNodesPerMove(0) > result.getNodesPerMove(1));
+    }
+}
@@ -0,0 +1,63 @@
+package plu.red.reversi.bench;
+
+import org.junit.Test;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+    @Test
+    public void testReversi() {
+        checkPositions(new ReversiLogic(), Perft.REVERSI, 7);
+    }
+
+    @Test
+    public void testGo() {
+        checkPositions(new GoLogic(), Perft.GO, 3);
+    }
+
+    private static void checkPositions(GameLogic logic, Perft.Position[] positions, int maxDepth) {
+        Perft perft = new Perft(logic, Perft.PLAYERS);
+        for(Perft.Position position : positions) {
+            Board board = new Board(position.size);
+            GameLogicCache cache = logic.createCache();
+            int turn = perft.setup(position, cache, board);
+            Board before = new Board(board);
+
+            for(int depth = 1; depth <= Math.min(maxDepth, position.counts.length); depth++) {
+                assertEquals(position.name + " at depth " + depth,
+                        position.counts[depth - 1], perft.count(cache, board, turn, depth));
+                //counting must leave the position alone
+                assertEquals(before, board);
+            }
+        }
+    }
+
+    @Test
+    public void testGameOver() {
+        //once every line has played out (12 moves, with passes between them) each finished game counts once
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(4);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, Perft.PLAYERS, false, false);
+        Perft perft = new Perft(logic, Perft.PLAYERS);
+        long full = perft.count(cache, board, 0, 30);
+        assertTrue(full > 0);
+        assertEquals(full, perft.count(cache, board, 0, 40));
+    }
+
+    @Test
+    public void testBadPosition() {
+        Perft perft = new Perft(new ReversiLogic(), Perft.PLAYERS);
+        try {
+            perft.setup(new Perft.Position("bad", 8, "a1"), new ReversiLogic().createCache(), new Board(8));
+            assertTrue(false);
+        } catch(IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+}
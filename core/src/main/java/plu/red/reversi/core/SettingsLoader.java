@@ -2,6 +2,7 @@ package plu.red.reversi.core;
 
 
 import org.codehaus.jettison.json.JSONObject;
+import plu.red.reversi.core.game.player.BotExecutor;
 import plu.red.reversi.core.listener.ISettingsListener;
 import plu.red.reversi.core.util.DataMap;
 
@@ -23,6 +24,8 @@ public class SettingsLoader {
     public static final String GLOBAL_USER_PASS = "Password";
     public static final String GLOBAL_USER_COLOR = "UserColor";
     public static final String GLOBAL_USE_3D_VIEW = "Use3DView";
+    public static final String GLOBAL_BOT_WORKERS = "BotWorkers";
+    public static final String GLOBAL_BOT_QUEUE_DEPTH = "BotQueueDepth";
 
     // ***********
     //  Listeners
@@ -110,6 +113,11 @@ public class SettingsLoader {
                 */
         settings.checkDefault(GLOBAL_USE_3D_VIEW, false,
                 "Whether or not to use the 3D Board View when playing a game");
+        settings.checkDefault(GLOBAL_BOT_WORKERS, 0,
+                "How many bot searches can run at once. A value of 0 means one for each processor. The processors are " +
+                "shared out between them, so fewer searches at once each search faster.", 0, 256);
+        settings.checkDefault(GLOBAL_BOT_QUEUE_DEPTH, BotExecutor.DEFAULT_QUEUE_DEPTH,
+                "How many bot searches can wait for one of the others to finish.", 1, 4096);
 
         return settings;
     }
@@ -34,6 +34,7 @@ public class CreateDB {
             createGameHistoryTable();
             createGameSettingsTable();
             createPlayersTable();
+            createGameSnapshotTable(conn);
         }//else
     }//constructor
 
@@ -129,4 +130,30 @@ public class CreateDB {
             e.printStackTrace();
         }//catch
     }//createGameSettingsTable
+
+    /**
+     * Creates the GAME_SNAPSHOT table in the database using SQL commands,
+     *  unless it is already there. Databases made before the table
+     *  existed get it the first time they are opened.
+     * If the SQL statement fails, will print the SQL message to
+     *  the console
+     *
+     * @param conn The connection object to the database
+     */
+    static void createGameSnapshotTable(Connection conn) {
+        String sql = "create table if not exists GAME_SNAPSHOT (\n"
+                + "game_id int NOT NULL,\n"
+                + "move_count int NOT NULL,\n"
+                + "snapshot text NOT NULL,\n"
+                + "PRIMARY KEY(game_id, move_count)\n"
+                + "FOREIGN KEY(game_id) references GAME(game_id)\n"
+                + "ON DELETE CASCADE\n"
+                + ");";
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }//catch
+    }//createGameSnapshotTable
 }//class
@@ -60,6 +60,10 @@ public class DBUtilities {
             } catch (SQLException e) {
                 e.printStackTrace();
             }//catch
+
+            //Databases from before snapshots were saved do not have their table yet
+            if(conn != null)
+                CreateDB.createGameSnapshotTable(conn);
         }
     }
 
@@ -118,6 +122,8 @@ public class DBUtilities {
 
         for(int i = 0; i < h.getNumBoardCommands(); i++)
             saveMove(gameID, h.getBoardCommand(i));
+        for(History.Snapshot snapshot : h.getSnapshots())
+            saveSnapshot(gameID, snapshot);
 
         return gameID;
     }//saveGame
@@ -368,9 +374,75 @@ public class DBUtilities {
             e.printStackTrace();
         }//catch
 
+        loadSnapshots(gameID, h);
+
         return h;
     }//loadGame
 
+    /**
+     * Saves a snapshot of a game's board, so loading the game does not
+     *  have to replay every move before it
+     * @param gameID the id of the game
+     * @param snapshot the snapshot to save, replacing any taken after
+     *  the same number of moves
+     * @return true if saved, false otherwise
+     */
+    public boolean saveSnapshot(int gameID, History.Snapshot snapshot) {
+
+        initDB();
+
+        boolean saved = false;
+        String sql = "insert or replace into GAME_SNAPSHOT values(?,?,?)";
+
+        try {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.clearParameters();
+            stmt.setInt(1, gameID);
+            stmt.setInt(2, snapshot.commands);
+            stmt.setString(3, snapshot.toJSON().toString());
+
+            if(stmt.executeUpdate() > 0)
+                saved = true;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }//catch
+        catch (JSONException e) {
+            e.printStackTrace();
+        }//catch
+        return saved;
+    }//saveSnapshot
+
+    /**
+     * Loads the snapshots saved for a game into its history. Snapshots
+     *  which do not fit the history are skipped
+     * @param gameID the id of the game
+     * @param h the history of the game, with its moves already loaded
+     */
+    private void loadSnapshots(int gameID, History h) {
+
+        String sql = "select snapshot from GAME_SNAPSHOT where game_id=? order by move_count";
+
+        try {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.clearParameters();
+            stmt.setInt(1,gameID);
+            ResultSet rs = stmt.executeQuery();
+
+            while(rs.next()) {
+                History.Snapshot snapshot = new History.Snapshot(new JSONObject(rs.getString("snapshot")));
+                if(snapshot.commands <= h.getNumBoardCommands())
+                    h.addSnapshot(snapshot);
+            }//while
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }//catch
+        catch (JSONException e) {
+            e.printStackTrace();
+        }//catch
+    }//loadSnapshots
+
     /**
      * Saves a move from a game in the database
      * @param gameID the id of the game being played
@@ -28,7 +28,7 @@ public class Board implements Iterable<BoardIndex> {
                     for(int i = 0; i < size; i++) {
                         ArrayList<Integer> l = new ArrayList<>();
                         for(int j = 0; j < size; j++)
-                            l.add(value.board[i][j]);
+                            l.add(value.at(i, j));
                         b.add(l);
                     }
                     jobj.put("data", b);
@@ -42,7 +42,7 @@ public class Board implements Iterable<BoardIndex> {
                     for(int i = 0; i < size; i++) {
                         JSONArray cols = rows.getJSONArray(i);
                         for(int j = 0; j < size; j++) {
-                            b.board[i][j] = cols.getInt(j);
+                            b.apply(new BoardIndex(i, j), cols.getInt(j));
                         }
                     }
                     return b;
@@ -50,8 +50,15 @@ public class Board implements Iterable<BoardIndex> {
     }
 
 
-    private int[][] board; // 2D array that represents the board. -1 represents an empty space.
+    /// Value of the ring of cells around the outside of the board. It is never a player or empty, so walking across
+    /// the board can stop when it reaches a value < 0 without checking the bounds.
+    public static final int BORDER = -2;
+
+    private final byte[] cells; // The board and a one cell border around it, row by row. -1 represents an empty space.
+    private long hash; // Zobrist hash of the board, kept up to date as tiles change.
     public final int size;
+    public final int stride; // Distance between a cell and the one below it; size + 2 because of the border.
+    private final int[] directions; // Offsets to move one cell in each direction, shared between copies.
 
 
     /**
@@ -61,11 +68,19 @@ public class Board implements Iterable<BoardIndex> {
      */
     public Board(int size){
         this.size = size;
-        board = new int[size][size];
-        //Arrays.fill(scoreCache, -1);
-        for(int i = 0; i < size; i++) {
-            Arrays.fill(board[i], -1);
+        stride = size + 2;
+        cells = new byte[stride * stride];
+        Arrays.fill(cells, (byte)BORDER);
+        for(int r = 0; r < size; r++) {
+            final int start = cell(r, 0);
+            Arrays.fill(cells, start, start + size, (byte)-1);
         }
+
+        //orthogonal directions first so they can be looped over on their own
+        directions = new int[] {
+                -stride, stride, -1, 1,
+                -stride - 1, -stride + 1, stride - 1, stride + 1
+        };
     }
 
 
@@ -76,14 +91,10 @@ public class Board implements Iterable<BoardIndex> {
      */
     public Board(Board b){
         size = b.size;
-
-        // Copy the board
-        board = new int[size][size];
-        for(int r = 0; r < size; r++){
-            board[r] = Arrays.copyOf(b.board[r], size);
-        }// end loop
-
-        // Can't copy the scoreCache because of ConcurrentModificationExceptions
+        stride = b.stride;
+        cells = b.cells.clone();
+        directions = b.directions;
+        hash = b.hash;
     }
 
 
@@ -95,7 +106,108 @@ public class Board implements Iterable<BoardIndex> {
      * @throws IndexOutOfBoundsException if the index that is passed in is out of bounds
      */
     public int at(BoardIndex index) throws IndexOutOfBoundsException{
-        return board[index.row][index.column];
+        return at(index.row, index.column);
+    }
+
+
+    /**
+     * Finds the value at a specific place of the board
+     *
+     * @param row Row of the tile
+     * @param column Column of the tile
+     * @return PlayerID at the tile
+     * @throws IndexOutOfBoundsException if the row or column is out of bounds
+     */
+    public int at(int row, int column) throws IndexOutOfBoundsException {
+        checkBounds(row, column);
+        return cells[cell(row, column)];
+    }
+
+
+    /**
+     * Converts a row and column to the position of its cell. Cells include the border around the board, so unlike
+     * BoardIndexes they can be stepped in any direction from a tile on the edge and still be read safely.
+     *
+     * @param row Row of the tile, may be -1 or size to refer to the border
+     * @param column Column of the tile, may be -1 or size to refer to the border
+     * @return Cell position to use with get and set
+     */
+    public int cell(int row, int column) {
+        return (row + 1) * stride + column + 1;
+    }
+
+
+    /**
+     * @param cell Cell position
+     * @return Row of the cell, -1 or size if it is part of the border
+     */
+    public int row(int cell) {
+        return cell / stride - 1;
+    }
+
+
+    /**
+     * @param cell Cell position
+     * @return Column of the cell, -1 or size if it is part of the border
+     */
+    public int column(int cell) {
+        return cell % stride - 1;
+    }
+
+
+    /**
+     * Converts a tile number (row * size + column) to a cell position.
+     * @param tile Tile number
+     * @return Cell position
+     */
+    public int tileToCell(int tile) {
+        return cell(tile / size, tile % size);
+    }
+
+
+    /**
+     * Converts a cell position to a tile number (row * size + column).
+     * @param cell Cell position, which must not be on the border
+     * @return Tile number
+     */
+    public int cellToTile(int cell) {
+        return row(cell) * size + column(cell);
+    }
+
+
+    /**
+     * Retrieves the offsets which move a cell position one step in each direction. The first four are up, down, left
+     * and right; the last four are the diagonals. The array is shared and must not be changed.
+     *
+     * @return Array of the eight offsets
+     */
+    public int[] getDirections() {
+        return directions;
+    }
+
+
+    /**
+     * Finds the value of a cell. Reading the border is allowed, and returns BORDER.
+     *
+     * @param cell Cell position, see cell()
+     * @return PlayerID at the cell, -1 if empty or BORDER if it is outside of the board
+     */
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+
+    /**
+     * Used to set a piece on the board by its cell position. Do this through the Board's GameLogic class
+     * if this board has been attached to one.
+     *
+     * @param cell Cell position, which must not be on the border
+     * @param value Value to set the location to
+     */
+    public void set(int cell, int value) {
+        final int tile = cellToTile(cell);
+        hash ^= Zobrist.key(tile, cells[cell]) ^ Zobrist.key(tile, value);
+        cells[cell] = (byte)value;
     }
 
 
@@ -106,8 +218,9 @@ public class Board implements Iterable<BoardIndex> {
     public int getTotalPieces() {
         int sum = 0;
         for(int r = 0; r < size; r++){
-            for(int c = 0; c < size; c++){
-                if(board[r][c] >= 0){
+            final int start = cell(r, 0);
+            for(int c = start; c < start + size; c++){
+                if(cells[c] >= 0){
                     sum++;
                 }
             }
@@ -133,7 +246,44 @@ public class Board implements Iterable<BoardIndex> {
      * @param value Value to set the location to
      */
     public void apply(BoardIndex index, int value) {
-        board[index.row][index.column] = value;
+        apply(index.row, index.column, value);
+    }
+
+
+    /**
+     * Used to set a piece on the board. Do this through the Board's GameLogic class
+     * if this board has been attached to one.
+     * @param row Row of the location to change
+     * @param column Column of the location to change
+     * @param value Value to set the location to
+     */
+    public void apply(int row, int column, int value) {
+        checkBounds(row, column);
+        if(value < -1 || value > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid value for a tile: " + value);
+        set(cell(row, column), value);
+    }
+
+
+    /**
+     * Overwrites this board with the contents of another board of the same size, without creating a new board.
+     * @param b Board object to copy
+     * @throws IllegalArgumentException if the boards are not the same size
+     */
+    public void copyFrom(Board b) throws IllegalArgumentException {
+        if(b.size != size) throw new IllegalArgumentException("Cannot copy a board of a different size.");
+        System.arraycopy(b.cells, 0, cells, 0, cells.length);
+        hash = b.hash;
+    }
+
+
+    /**
+     * Retrieves the Zobrist hash of the tiles on the board. Two boards with the same tiles will have the same hash.
+     * @see Zobrist
+     * @return 64-bit hash of the board.
+     */
+    public long getHash() {
+        return hash;
     }
 
 
@@ -165,12 +315,17 @@ public class Board implements Iterable<BoardIndex> {
         if(this.size != b.size)
             return false;
 
-        for(int r = 0; r < size; r++)
-            for(int c = 0; c < size; c++)
-                if(board[r][c] != b.board[r][c])
-                    return false;
+        //the borders are always the same, so the whole array can be compared
+        return Arrays.equals(cells, b.cells);
+    }
+
 
-        return true;
+    /**
+     * Throws if a row and column are not on the board; the border is not counted as being on the board.
+     */
+    private void checkBounds(int row, int column) throws ArrayIndexOutOfBoundsException {
+        if(row < 0 || row >= size || column < 0 || column >= size)
+            throw new ArrayIndexOutOfBoundsException("Tile (" + row + ", " + column + ") is not on a board of size " + size);
     }
 
     @Override
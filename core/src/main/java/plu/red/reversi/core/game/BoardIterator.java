@@ -6,7 +6,6 @@ import plu.red.reversi.core.command.SetCommand;
 import plu.red.reversi.core.game.logic.GameLogic;
 import plu.red.reversi.core.game.logic.GameLogicCache;
 
-//TODO: stop using logic.initBoard when possible and replace with forward stepping
 public class BoardIterator {
     public History history;
     public GameLogicCache cache;
@@ -44,8 +43,7 @@ public class BoardIterator {
     public void goTo(int i){
         pos = i;
         board = new Board(board.size);
-        cache.invalidate();
-        logic.initBoard(cache, board, history.getMoveCommandsUntil(i + 1), false, false);
+        logic.replay(cache, board, history, i + 1, false);
     }
 
     /**
@@ -54,8 +52,7 @@ public class BoardIterator {
      */
     public BoardIterator previous(){
         board = new Board(board.size);
-        cache.invalidate();
-        logic.initBoard(cache, board, history.getMoveCommandsUntil(pos), false, false);
+        logic.replay(cache, board, history, pos, false);
         pos--;
         return this;
     }
@@ -80,8 +77,7 @@ public class BoardIterator {
      */
     public BoardIterator end() {
         board = new Board(board.size);
-        cache.invalidate();
-        logic.initBoard(cache, board, history.getMoveCommandsUntil(history.getNumBoardCommands()), false, false);
+        logic.replay(cache, board, history, history.getNumBoardCommands(), false);
         return this;
     }
 
@@ -12,6 +12,7 @@ import plu.red.reversi.core.game.logic.GameLogic;
 import plu.red.reversi.core.game.logic.GameLogicCache;
 import plu.red.reversi.core.game.logic.GoLogic;
 import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.BotPlayer;
 import plu.red.reversi.core.game.player.HumanPlayer;
 import plu.red.reversi.core.game.player.Player;
 import plu.red.reversi.core.listener.IGameOverListener;
@@ -24,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Glory to the Red Team.
@@ -94,6 +96,7 @@ public class Game extends Coordinator {
     protected GameLogic gameLogic = null;
     protected GameLogicCache gameCache = null;
     protected History history = null;
+    protected TurnTimer turnTimer = null;
 
     // Player Data
     protected int currentPlayer = -1;
@@ -280,15 +283,24 @@ public class Game extends Coordinator {
         } else if(history.getNumBoardCommands() < 1)
             currentPlayer = getNextPlayerID(-1, players.keySet());
         else {
-            LinkedList<BoardCommand> cmds = history.getMoveCommandsUntil(history.getNumBoardCommands());
-            gameLogic.initBoard(cmds);
-            currentPlayer = getNextPlayerID(cmds.getLast().playerID);
+            //a loaded history is replayed from its latest snapshot, taking new ones on the way for viewers of the game
+            final int count = history.getNumBoardCommands();
+            gameLogic.replay(gameCache, board, history, count, true);
+            currentPlayer = getNextPlayerID(history.getBoardCommand(count - 1).playerID);
         }
 
         // Create Game Chat
         if(networked && master != null && master.getChat() != null)
             master.getChat().create(ChatMessage.Channel.game(name));
 
+        // Create the Turn Timer if the Game has a time limit
+        Integer timeLimit = settings.get(SettingsLoader.GAME_TIME_LIMIT, Integer.class);
+        if(timeLimit != null && timeLimit > 0) {
+            Integer timeBonus = settings.get(SettingsLoader.GAME_TIME_BONUS, Integer.class);
+            turnTimer = new TurnTimer(timeLimit, timeBonus == null ? 0 : timeBonus);
+            startTurnTimer();
+        }
+
         gameInitialized = true;
 
         // Start the Game by signalling to players
@@ -323,6 +335,13 @@ public class Game extends Coordinator {
      */
     public GameLogicCache getGameCache() { return gameCache; }
 
+    /**
+     * Retrieves the TurnTimer which tracks how much time each Player has left.
+     *
+     * @return this Game's TurnTimer, or <code>null</code> if the Game does not have a time limit
+     */
+    public TurnTimer getTurnTimer() { return turnTimer; }
+
     /**
      * Retrieves the History that this Game object is using.
      *
@@ -441,11 +460,28 @@ public class Game extends Coordinator {
             else endGame();
         }
 
+        // Start the new Player's clock before they are told it is their turn
+        startTurnTimer();
+
         // Notify everyone we found a Player and return that Player
         for(Player player : players.values()) player.nextTurn(player.getID() == currentPlayer);
         return players.get(currentPlayer);
     }
 
+    /**
+     * Internal helper method that switches the TurnTimer over to the current Player, if there is a TurnTimer and it is
+     * not already counting down for them.
+     */
+    private void startTurnTimer() {
+        if(turnTimer == null || !gameRunning) return;
+        if(turnTimer.getCurrentPlayer() == currentPlayer && !turnTimer.isPaused()) return;
+        try {
+            turnTimer.startTurn(currentPlayer);
+        } catch(TimeoutException e) {
+            // The timer pauses itself; running out of time is not enforced here
+        }
+    }
+
     /**
      * Parse Command for action. Check the type of Command given and perform an action dependant upon that type.
      *
@@ -471,6 +507,9 @@ public class Game extends Coordinator {
             if(!gameRunning) return false;
             int player = ((SurrenderCommand)cmd).playerID;
             surrenderedPlayers.add(player);
+            // A bot which gives up has no reason to keep searching
+            Player surrendered = getPlayer(player);
+            if(surrendered instanceof BotPlayer) ((BotPlayer)surrendered).cancel();
             if(players.size() - surrenderedPlayers.size() < 2) endGame(); // End the Game if theres only one player left
             else if(player == currentPlayer) nextTurn();
             history.addCommand(cmd);
@@ -498,6 +537,8 @@ public class Game extends Coordinator {
         }
 
         gameRunning = false;
+        if(turnTimer != null) turnTimer.pause();
+        cancelBots();
         this.acceptCommand(new StatusCommand("Game Over!"));
 
         // Signal Listeners that the Game has ended
@@ -570,10 +611,20 @@ public class Game extends Coordinator {
                 SettingsLoader.INSTANCE.removeSettingsListener((HumanPlayer)player);
         }
 
+        // Stop any BotPlayer searches which are still running or queued
+        cancelBots();
+
         // Clear Game Chat
         master.getChat().clear(ChatMessage.Channel.game(name));
+    }
 
-        // TODO: Manually stop any running BotPlayer Minimax threads
+    /**
+     * Internal helper method that cancels the searches of every BotPlayer in this Game, so none of them keep using
+     * the CPU once the Game is over.
+     */
+    private void cancelBots() {
+        for(Player player : getAllPlayers())
+            if(player instanceof BotPlayer) ((BotPlayer)player).cancel();
     }
 
     /**
@@ -0,0 +1,542 @@
+package plu.red.reversi.core.game;
+
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.search.GoPlayoutBoard;
+import plu.red.reversi.core.game.search.SearchCounters;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.util.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks moves in games of Go with Monte Carlo tree search (UCT with light playouts).
+ *
+ * Go has far too many moves and far too little structure for a minimax search with a hand written evaluation, so
+ * instead every iteration walks down a tree of moves from the current position, picking the child with the best
+ * upper confidence bound, and then finishes the game with random moves on a GoPlayoutBoard. Whoever has captured the
+ * most stones at the end of the random game (the same way Game decides the winner) wins that playout, and the result
+ * is added to every node on the way back up. The move played is the child of the root which was visited the most.
+ *
+ * Random games never fill their own eyes, and a player with nothing else to play passes; when every player has passed
+ * the playout is over. GoLogic has no passing or ko rule, so playouts are also cut off after a few times as many moves
+ * as the board has tiles.
+ *
+ * When given a ForkJoinPool, one worker for each of its threads shares the tree. A worker counts its visit to each
+ * node on the way down before the result is known, which works as a virtual loss: the node looks worse to the other
+ * workers until the result comes in, so they spread out over different moves.
+ *
+ * The search stops after a set number of playouts, or when its time runs out if it has a time limit or the game has a
+ * TurnTimer.
+ */
+public class GoMonteCarlo implements Runnable {
+    /// Playouts for each level of difficulty.
+    public static final int PLAYOUTS_PER_LEVEL = 2000;
+    /// Weight of the exploration term in the upper confidence bound.
+    private static final double EXPLORATION = 1.0;
+    /// Visits a node needs before its children are added to the tree.
+    private static final int EXPAND_VISITS = 2;
+    /// A playout is worth this much in total, split between its winners. Every count from 1 to 8 players divides it.
+    private static final int REWARD = 840;
+    /// Shortest time limit the search is given when using the game's timer, in milliseconds.
+    private static final long MIN_TIME_BUDGET = 50;
+
+    private final Game game;
+    private final int aiID;
+    private final int playouts;
+
+    private Looper.LooperCall<BoardIndex> callback;
+
+    /// Time limit for a search in milliseconds, or 0 to use the game's timer (if it has one).
+    private long timeLimit = 0;
+
+    /// Pool to run the search on, or null to search on the calling thread only.
+    private ForkJoinPool pool = null;
+
+    /// Seed for the random games, or null to use a different one every time.
+    private Long seed = null;
+
+    // State for the search currently running
+    private GoPlayoutBoard rootBoard;
+    private Node root;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private long deadline;
+    private boolean timed;
+    private int maxMoves;
+    /// Stats of the search running now, which every worker adds its own to when it finishes.
+    private SearchStats stats = new SearchStats();
+    private volatile SearchStats lastStats = null;
+    /// Set by stop() and cancel() and only cleared by reset(), so one which comes in before the search starts still
+    /// stops it.
+    private volatile boolean stopped = false;
+    private volatile boolean cancelled = false;
+
+
+    /**
+     * Constructs a search for one player of a game of Go.
+     * @param game Game to play in, which must use GoLogic.
+     * @param aiID Player ID to pick moves for.
+     * @param playouts Number of random games to play for each move.
+     */
+    public GoMonteCarlo(Game game, int aiID, int playouts) {
+        this.game = game;
+        this.aiID = aiID;
+        this.playouts = Math.max(1, playouts);
+    }
+
+
+    public GoMonteCarlo(Game game, int aiID, int playouts, Looper.LooperCall<BoardIndex> callback) {
+        this(game, aiID, playouts);
+        this.callback = callback;
+    }
+
+
+    /**
+     * Sets a wall-clock limit for each search. The search stops at the time limit or after its playouts, whichever
+     * comes first.
+     * @param millis Time allowed for each search in milliseconds, or 0 to go back to using the game's timer.
+     * @return This object for chaining.
+     */
+    public GoMonteCarlo setTimeLimit(long millis) {
+        timeLimit = Math.max(0, millis);
+        return this;
+    }
+
+
+    /**
+     * @return The time limit given to each search in milliseconds, or 0 if none was set.
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+
+    /**
+     * Sets the pool the search runs on. Every thread of the pool runs playouts on the same tree.
+     * @param pool Pool to use, or null to search on a single thread.
+     * @return This object for chaining.
+     */
+    public GoMonteCarlo setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+
+    /**
+     * @return The pool the search runs on, or null if it only uses a single thread.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+
+    /**
+     * Turns the parallel search on or off using the pool shared with ReversiMinimax.
+     * @param parallel True to search on every processor, false to use a single thread.
+     * @return This object for chaining.
+     */
+    public GoMonteCarlo setParallel(boolean parallel) {
+        return setPool(parallel ? ReversiMinimax.getSharedPool() : null);
+    }
+
+
+    /**
+     * Makes the random games repeatable, which is only useful for testing a search on a single thread.
+     * @param seed Seed for the random games, or null to pick a new one for every search.
+     * @return This object for chaining.
+     */
+    public GoMonteCarlo setSeed(Long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+
+    /**
+     * @return Number of playouts in each search, unless it runs out of time first.
+     */
+    public int getPlayouts() {
+        return playouts;
+    }
+
+
+    /**
+     * @return Number of playouts finished by the last search.
+     */
+    public long getPlayoutCount() {
+        return finished.get();
+    }
+
+
+    /**
+     * @return What the last call to getBestPlay() did, or null if it has not been called yet. Tree nodes walked
+     * through count as nodes and each playout counts as an evaluation.
+     */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+
+    /**
+     * Picks a move and hands it to the callback, or to the game if there is none.
+     *
+     * NOTE: This class implements runnable so you can export this operation to another thread quite easily.
+     */
+    @Override
+    public void run() {
+        try {
+            MoveCommand command = getBestMoveCommand();
+            if(cancelled) return;
+
+            if(callback != null)
+                callback.call(command.position);
+            else
+                game.acceptCommand(command);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("AI cannot move.");
+        }
+    }
+
+
+    /**
+     * Retrieve the best move as a move command.
+     * @return A move command representing the best move.
+     * @throws IndexOutOfBoundsException If no moves can be made.
+     */
+    public MoveCommand getBestMoveCommand() throws IndexOutOfBoundsException {
+        BoardIndex b = getBestPlay();
+        if(b == null) throw new IndexOutOfBoundsException("AI Cannot move");
+        return new MoveCommand(aiID, b);
+    }
+
+
+    /**
+     * Searches the current position of the game.
+     * @return Index of the best play, or null if no moves can be made.
+     */
+    public synchronized BoardIndex getBestPlay() {
+        stats = new SearchStats();
+        final long start = System.nanoTime();
+        try {
+            return searchBestPlay();
+        } finally {
+            stats.setElapsedNanos(System.nanoTime() - start);
+            lastStats = stats;
+            SearchCounters.getInstance().record(stats);
+        }
+    }
+
+
+    /**
+     * Searches the current position of the game, once the stats have been set up.
+     */
+    private BoardIndex searchBestPlay() {
+        if(!(game.getGameLogic() instanceof GoLogic))
+            throw new IllegalStateException("Must be a game of go to use go-monte-carlo.");
+        final GameLogic logic = game.getGameLogic();
+        final GameLogicCache cache = game.getGameCache();
+        final Board board = game.getBoard();
+
+        //players are numbered by turn order starting from us, so the root is always player 0 to move
+        final List<Integer> order = new ArrayList<>();
+        int id = aiID;
+        do {
+            order.add(id);
+            id = game.getNextPlayerID(id);
+        } while(id != aiID && !order.contains(id));
+        final int[] ids = new int[order.size()];
+        final int[] captures = new int[order.size()];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = order.get(i);
+            captures[i] = logic.getScore(cache, board, ids[i]);
+        }
+
+        rootBoard = GoPlayoutBoard.fromBoard(board, ids, captures);
+        root = new Node(GoPlayoutBoard.PASS, ids.length - 1, 0);
+        maxMoves = 3 * board.size * board.size;
+        started.set(0);
+        finished.set(0);
+
+        //the root has to offer a real move whenever there is one, even if it fills an eye
+        final int[] moves = new int[board.size * board.size];
+        int count = rootBoard.getMoves(0, moves, false);
+        if(count == 0) count = rootBoard.getMoves(0, moves, true);
+        if(count == 0) return null;
+        if(count == 1) return toIndex(rootBoard.tile(moves[0]), board);
+        root.setChildren(moves, count, 0, ids.length, newRandom(-1));
+
+        final long budget = getTimeBudget(board);
+        timed = budget > 0;
+        deadline = System.nanoTime() + budget * 1000000L;
+
+        if(pool == null) new Worker(newRandom(0)).run();
+        else {
+            final int workers = Math.max(1, pool.getParallelism());
+            final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for(int i = 1; i < workers; i++) tasks.add(pool.submit(new Worker(newRandom(i))));
+            new Worker(newRandom(0)).run();
+            for(ForkJoinTask<?> task : tasks) task.join();
+        }
+
+        Node best = null;
+        for(Node child : root.children)
+            if(best == null || child.visits > best.visits) best = child;
+        return toIndex(rootBoard.tile(best.move), board);
+    }
+
+
+    /**
+     * Stops the search as soon as it can; it picks the best move from the playouts it has finished. Every later search
+     * stops straight away too, until reset() is called. Does not wait for the search to finish.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+
+    /**
+     * Stops the search like stop(), and throws its result away: run() will not hand on any move until reset() is
+     * called.
+     */
+    public void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+
+    /**
+     * Lets searches run again after stop() or cancel(). Call before starting a new search, not while one is running.
+     */
+    public void reset() {
+        stopped = false;
+        cancelled = false;
+    }
+
+
+    /**
+     * @return True if cancel() has been called since the last reset().
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+
+    private Random newRandom(int worker) {
+        return seed == null ? new Random() : new Random(seed * 31 + worker);
+    }
+
+
+    private static BoardIndex toIndex(int tile, Board board) {
+        return new BoardIndex(tile / board.size, tile % board.size);
+    }
+
+
+    /**
+     * Works out how long the next search is allowed to take, the same way ReversiMinimax does.
+     * @param board Board being searched.
+     * @return Time budget in milliseconds, or 0 if the search should not be timed.
+     */
+    private long getTimeBudget(Board board) {
+        if(timeLimit > 0) return timeLimit;
+
+        final TurnTimer timer = game.getTurnTimer();
+        if(timer == null) return 0;
+
+        final long remaining = timer.getRemainingMillis(aiID);
+        final int empty = board.size * board.size - board.getTotalPieces();
+        final int movesLeft = Math.max(1, empty / Math.max(1, game.getPlayerCount()));
+
+        long budget = remaining / movesLeft + timer.getTurnIncrementMillis() * 3 / 4;
+        budget = Math.min(budget, remaining / 2);
+        return Math.max(budget, MIN_TIME_BUDGET);
+    }
+
+
+    /**
+     * Runs playouts on the shared tree until the search is out of playouts or time.
+     */
+    private final class Worker implements Runnable {
+        private final Random random;
+        private final GoPlayoutBoard board;
+        private final int[] moves;
+        private final int[] rewards;
+        private Node[] path = new Node[64];
+        private final SearchStats workerStats = new SearchStats();
+
+
+        Worker(Random random) {
+            this.random = random;
+            board = new GoPlayoutBoard(rootBoard.size, rootBoard.getPlayers());
+            moves = new int[rootBoard.size * rootBoard.size];
+            rewards = new int[rootBoard.getPlayers()];
+        }
+
+
+        @Override
+        public void run() {
+            final long allocation = SearchStats.startAllocation();
+            try {
+                while(started.getAndIncrement() < playouts) {
+                    if(stopped || timed && System.nanoTime() - deadline > 0) break;
+                    iterate();
+                    finished.incrementAndGet();
+                }
+            } finally {
+                workerStats.endAllocation(allocation);
+                stats.add(workerStats);
+            }
+        }
+
+
+        /**
+         * Walks down the tree, plays the rest of the game at random and passes the result back up.
+         */
+        private void iterate() {
+            final int players = rewards.length;
+            board.copyFrom(rootBoard);
+
+            Node node = root;
+            node.addVisit();
+            int length = 0;
+            path[length++] = node;
+            while(true) {
+                Node[] children = node.children;
+                if(children == null) {
+                    if(node.passes >= players || node.visits < EXPAND_VISITS) break;
+                    children = expand(node);
+                }
+
+                node = select(node, children);
+                node.addVisit();
+                if(node.move != GoPlayoutBoard.PASS) board.play(node.player, node.move);
+                if(length == path.length) path = Arrays.copyOf(path, length * 2);
+                path[length++] = node;
+            }
+
+            if(node.passes < players) board.playout((node.player + 1) % players, random, maxMoves);
+            score();
+            workerStats.addNodes(length);
+            workerStats.addEvaluation();
+            workerStats.reachDepth(length - 1);
+            for(int i = 0; i < length; i++) path[i].addReward(rewards[path[i].player]);
+        }
+
+
+        /**
+         * Adds the children of a node, from the moves on this worker's board.
+         */
+        private Node[] expand(Node node) {
+            synchronized(node) {
+                if(node.children == null) {
+                    final int player = (node.player + 1) % rewards.length;
+                    final int count = board.getMoves(player, moves, false);
+                    node.setChildren(moves, count, player, rewards.length, random);
+                }
+                return node.children;
+            }
+        }
+
+
+        /**
+         * Picks the child with the best upper confidence bound. Children which have never been visited come first.
+         */
+        private Node select(Node parent, Node[] children) {
+            final double logVisits = Math.log(Math.max(1, parent.visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for(Node child : children) {
+                final int visits = child.visits;
+                if(visits == 0) return child;
+                final double value = (double)child.wins / ((double)REWARD * visits) +
+                        EXPLORATION * Math.sqrt(logVisits / visits);
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+
+        /**
+         * Splits the reward between whoever captured the most stones.
+         */
+        private void score() {
+            int best = -1;
+            int winners = 0;
+            for(int i = 0; i < rewards.length; i++) {
+                final int c = board.getCaptures(i);
+                if(c > best) {
+                    best = c;
+                    winners = 1;
+                } else if(c == best) winners++;
+            }
+            for(int i = 0; i < rewards.length; i++)
+                rewards[i] = board.getCaptures(i) == best ? REWARD / winners : 0;
+        }
+    }
+
+
+    /**
+     * A position in the tree, reached by one move. Visits and wins are updated under the node's lock and read without
+     * it; a stale read only changes which child gets picked.
+     */
+    private static final class Node {
+        /// Point played to reach this node, or PASS.
+        final int move;
+        /// Index in the turn order of the player who made the move.
+        final int player;
+        /// Number of passes in a row leading here.
+        final int passes;
+        volatile Node[] children = null;
+        volatile int visits = 0;
+        /// Sum of the rewards for <code>player</code>.
+        volatile long wins = 0;
+
+
+        Node(int move, int player, int passes) {
+            this.move = move;
+            this.player = player;
+            this.passes = passes;
+        }
+
+
+        /**
+         * Creates the children for a list of moves, shuffled so that unvisited children are not always tried in
+         * board order. With no moves the only child is a pass.
+         */
+        void setChildren(int[] moves, int count, int player, int players, Random random) {
+            if(count == 0) {
+                children = new Node[] {new Node(GoPlayoutBoard.PASS, player, Math.min(passes + 1, players))};
+                return;
+            }
+            final Node[] list = new Node[count];
+            for(int i = 0; i < count; i++) list[i] = new Node(moves[i], player, 0);
+            for(int i = count - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final Node t = list[i];
+                list[i] = list[j];
+                list[j] = t;
+            }
+            children = list;
+        }
+
+
+        synchronized void addVisit() {
+            visits++;
+        }
+
+
+        synchronized void addReward(int reward) {
+            wins += reward;
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package plu.red.reversi.core.game;
 
 import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import plu.red.reversi.core.command.BoardCommand;
 import plu.red.reversi.core.command.Command;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
 import plu.red.reversi.core.util.DataMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
 
 
 /**
@@ -25,6 +31,10 @@ public class History {
                     for(int i = 0; i < value.moves.size(); i++)
                         jlist.put(i, value.moves.get(i).toJSON());
                     jobj.put("data", jlist);
+                    JSONArray jsnaps = new JSONArray();
+                    for(Snapshot snapshot : value.getSnapshots())
+                        jsnaps.put(snapshot.toJSON());
+                    jobj.put("snapshots", jsnaps);
                     json.put(key, jobj);
                 },
                 (key, json) -> {
@@ -34,17 +44,29 @@ public class History {
                     History hist = new History();
                     for(int i = 0; i < size; i++)
                         hist.moves.add((BoardCommand)Command.fromJSON(jlist.getJSONObject(i)));
+                    //histories saved before snapshots were kept have none
+                    if(jobj.has("snapshots")) {
+                        JSONArray jsnaps = jobj.getJSONArray("snapshots");
+                        for(int i = 0; i < jsnaps.length(); i++)
+                            hist.addSnapshot(new Snapshot(jsnaps.getJSONObject(i)));
+                    }
                     return hist;
                 });
     }
 
+    /// Number of board commands between the snapshots taken while playing or replaying a history.
+    public static final int SNAPSHOT_INTERVAL = 32;
+
     private ArrayList<BoardCommand> moves;
+    /// Positions part way through the history, by the number of board commands applied to reach them.
+    private final TreeMap<Integer, Snapshot> snapshots;
 
     /**
      * Basic constructor, initializes lists to be empty.
      */
     public History() {
         moves = new ArrayList<>();
+        snapshots = new TreeMap<>();
     }
 
     /**
@@ -53,6 +75,10 @@ public class History {
      */
     public History(History other) {
         moves = new ArrayList<>(other.moves);
+        //snapshots never change once taken, so they can be shared
+        synchronized(other) {
+            snapshots = new TreeMap<>(other.snapshots);
+        }
     }
 
     /**
@@ -113,4 +139,132 @@ public class History {
         list.addAll(moves.subList(i, moves.size()));
         return list;
     }
+
+    /**
+     * Remembers a position part way through the history, so replaying up to or past it does not have to start from
+     * the first command. Only the board and scores are kept; the rest of the cache is rebuilt from the board when the
+     * snapshot is restored.
+     * @param commands Number of board commands applied to reach the position.
+     * @param board Board after those commands, which is copied.
+     * @param cache Cache after those commands, whose scores are copied.
+     * @throws IndexOutOfBoundsException If the history does not have that many commands.
+     */
+    public synchronized void addSnapshot(int commands, Board board, GameLogicCache cache) throws IndexOutOfBoundsException {
+        if(commands < 0 || commands > moves.size())
+            throw new IndexOutOfBoundsException("No position after " + commands + " commands in the history");
+        snapshots.put(commands, new Snapshot(commands, board, cache));
+    }
+
+    /**
+     * Adds a snapshot which was saved along with the history, such as one loaded from a file or the database.
+     * @param snapshot Snapshot to add.
+     * @throws IndexOutOfBoundsException If the history does not have as many commands as the snapshot was taken after.
+     */
+    public synchronized void addSnapshot(Snapshot snapshot) throws IndexOutOfBoundsException {
+        if(snapshot.commands < 0 || snapshot.commands > moves.size())
+            throw new IndexOutOfBoundsException("No position after " + snapshot.commands + " commands in the history");
+        snapshots.put(snapshot.commands, snapshot);
+    }
+
+    /**
+     * Retrieves every snapshot of the history, so they can be saved with it.
+     * @return Snapshots in the order of the positions they were taken of.
+     */
+    public synchronized Collection<Snapshot> getSnapshots() {
+        return new ArrayList<>(snapshots.values());
+    }
+
+    /**
+     * Finds the latest snapshot which can be used to replay the history up to a point.
+     * @param commands Number of board commands to be applied.
+     * @return The snapshot taken after the most commands, but no more than <code>commands</code>, or null if there is
+     *         none.
+     */
+    public synchronized Snapshot getSnapshot(int commands) {
+        Map.Entry<Integer, Snapshot> entry = snapshots.floorEntry(commands);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * A position part way through the history.
+     */
+    public static class Snapshot {
+        /// Number of board commands applied to reach the position.
+        public final int commands;
+        private final Board board;
+        /// Players with a score, and their scores.
+        private final int[] players;
+        private final int[] scores;
+
+        private Snapshot(int commands, Board board, GameLogicCache cache) {
+            this.commands = commands;
+            this.board = new Board(board);
+            this.players = cache.getScoredPlayers();
+            this.scores = new int[players.length];
+            for(int i = 0; i < players.length; i++)
+                scores[i] = cache.getScore(players[i]);
+        }
+
+        /**
+         * Unserializes a snapshot saved with toJSON().
+         * @param json JSONObject storing the snapshot
+         * @throws JSONException if there is a problem during unserialization
+         */
+        public Snapshot(JSONObject json) throws JSONException {
+            commands = json.getInt("commands");
+            board = new Board(json.getInt("size"));
+            JSONArray jtiles = json.getJSONArray("tiles");
+            for(int i = 0; i < jtiles.length(); i++) {
+                final int value = jtiles.getInt(i);
+                if(value >= 0) board.apply(i / board.size, i % board.size, value);
+            }
+            JSONArray jplayers = json.getJSONArray("players");
+            JSONArray jscores = json.getJSONArray("scores");
+            players = new int[jplayers.length()];
+            scores = new int[players.length];
+            for(int i = 0; i < players.length; i++) {
+                players[i] = jplayers.getInt(i);
+                scores[i] = jscores.getInt(i);
+            }
+        }
+
+        /**
+         * Serializes this snapshot into a JSONObject.
+         * @return New JSONObject from this snapshot
+         * @throws JSONException if there is a problem during serialization
+         */
+        public JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("commands", commands);
+            json.put("size", board.size);
+            JSONArray jtiles = new JSONArray();
+            for(int row = 0; row < board.size; row++)
+                for(int col = 0; col < board.size; col++)
+                    jtiles.put(board.at(row, col));
+            json.put("tiles", jtiles);
+            JSONArray jplayers = new JSONArray();
+            JSONArray jscores = new JSONArray();
+            for(int i = 0; i < players.length; i++) {
+                jplayers.put(players[i]);
+                jscores.put(scores[i]);
+            }
+            json.put("players", jplayers);
+            json.put("scores", jscores);
+            return json;
+        }
+
+        /**
+         * Puts the position on a board and regenerates the cache for it.
+         * @param logic Logic the history is played with.
+         * @param cache Cache to overwrite.
+         * @param board Board to overwrite, of the same size as the one the snapshot was taken of.
+         */
+        public void restore(GameLogic logic, GameLogicCache cache, Board board) {
+            board.copyFrom(this.board);
+            cache.invalidate();
+            for(int i = 0; i < players.length; i++)
+                cache.setScore(players[i], scores[i]);
+            logic.rebuildCache(cache, board);
+        }
+    }
 }
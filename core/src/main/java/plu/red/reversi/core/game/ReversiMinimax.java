@@ -1,26 +1,171 @@
 package plu.red.reversi.core.game;
 
-import plu.red.reversi.core.SettingsLoader;
 import plu.red.reversi.core.command.MoveCommand;
 import plu.red.reversi.core.game.logic.GameLogic;
 import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.MoveUndo;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
 import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.logic.ReversiLogicCache;
+import plu.red.reversi.core.game.search.EndgameSolver;
+import plu.red.reversi.core.game.search.Evaluator;
+import plu.red.reversi.core.game.search.MaxNSearch;
+import plu.red.reversi.core.game.search.OpeningBook;
+import plu.red.reversi.core.game.search.PatternEvaluator;
+import plu.red.reversi.core.game.search.SearchCounters;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.game.search.TranspositionTable;
 import plu.red.reversi.core.util.Looper;
 
-import java.util.Set;
-
-//TODO: use iterative search to improve efficiency and allow cutting it off part-way through
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Using the minimax algorithm, calculate the optimal move for a particular currentPlayer given the specified currentState.
+ *
+ * By default this searches to a fixed depth. If it is given a time limit, or the game has a time limit, it will
+ * instead search iteratively at depth 1, 2, 3... up to the maximum depth and stop when the time runs out, using the
+ * best move from the deepest search it was able to finish.
+ *
+ * Results are remembered in a TranspositionTable keyed by the Zobrist hash of the board and the player to move, so
+ * positions reached by different move orders are only searched once. The table is kept between moves of the game.
+ *
+ * When given a ForkJoinPool the search runs in parallel using Young Brothers Wait: at the root and at any position
+ * with enough depth left, the first move is searched on its own to get good bounds, then the rest of the moves are
+ * searched at the same time. The tasks share their bounds, and once one of them causes a cutoff the others are
+ * cancelled. Each task works on its own copy of the board, while the transposition table is shared between them.
+ *
+ * In two player games on an 8x8 board with few enough empty tiles left, the search is extended to the end of the game
+ * and every position is handed off to an EndgameSolver, so the move played is exactly the best one.
+ *
+ * Games with more than two players are searched either as if every other player were working against us (paranoid),
+ * or with max-n where each player looks after themselves; see MultiplayerStrategy.
+ *
+ * Positions where the search stops early are scored by an Evaluator, a PatternEvaluator unless another is given.
+ *
+ * If given an OpeningBook, positions found in the book are played straight from it without searching at all.
  */
 public class ReversiMinimax implements Runnable {
+
+    /**
+     * How the search treats the window of each position.
+     */
+    public enum SearchMode {
+        /// Every move is searched with the full alpha-beta window.
+        ALPHA_BETA,
+        /// Principal variation search: the first move of each position is searched with the full window, and the rest
+        /// are only checked against it with a null window, being searched again if they turn out to be better. The
+        /// root is searched with an aspiration window around the score expected from the previous search.
+        PVS
+    }
+
+    /**
+     * How the search treats the other players in games with more than two of them.
+     */
+    public enum MultiplayerStrategy {
+        /// Every other player is assumed to be working against us, so the search is a normal alpha-beta search where
+        /// they all minimize our score. Prunes well, but plays very cautiously.
+        PARANOID,
+        /// Max-n search: each player is assumed to play for their own score, which is closer to how people play but
+        /// only allows shallow pruning.
+        MAX_N;
+
+        /**
+         * Picks a strategy for a number of players. With only one other player to worry about there is nothing to
+         * be paranoid about; with many, it becomes less and less likely they all work together.
+         * @param players Number of players in the game.
+         * @return The strategy to use.
+         */
+        public static MultiplayerStrategy forPlayers(int players) {
+            return players >= 4 ? MAX_N : PARANOID;
+        }
+    }
+    /// Number of nodes to search between checks of the clock.
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    /// Smallest amount of time a timed search will be given, in milliseconds.
+    private static final long MIN_TIME_BUDGET = 50;
+    /// Positions with less depth left than this are never split, it is not worth the overhead.
+    private static final int MIN_SPLIT_DEPTH = 3;
+    /// Empty tiles at or below which the endgame is solved exactly, unless changed with setEndgameEmpties.
+    public static final int DEFAULT_ENDGAME_EMPTIES = 20;
+    /// Multiplier applied to the final disc margin, so finished games outweigh any heuristic score.
+    private static final int ENDGAME_WEIGHT = 16;
+
+    // Sort keys used to order moves; anything below KILLER_KEY is a history score
+    private static final int TABLE_KEY = Integer.MAX_VALUE;
+    private static final int CORNER_KEY = 1 << 30;
+    private static final int KILLER_KEY = 1 << 29;
+    /// History scores are halved once one of them reaches this, which keeps them below KILLER_KEY.
+    private static final int HISTORY_LIMIT = 1 << 20;
+    /// Distance either side of the expected score covered by an aspiration window, two discs.
+    private static final int ASPIRATION_WINDOW = 2 * ENDGAME_WEIGHT;
+
+    /// Pool shared by every parallel search which does not bring its own.
+    private static ForkJoinPool sharedPool = null;
+
     private Game game;
     private int aiID;
     public final int MAX_DEPTH;
 
     private Looper.LooperCall<BoardIndex> callback;
 
+    /// Time limit for a search in milliseconds, or 0 to use the game's timer (if it has one).
+    private long timeLimit = 0;
+
+    /// Results of previous searches, reused for the whole game.
+    private TranspositionTable table = new TranspositionTable();
+
+    /// Pool to run the search on, or null to search on the calling thread only.
+    private ForkJoinPool pool = null;
+
+    /// Number of empty tiles at or below which the endgame is solved exactly, 0 to never solve it.
+    private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+
+    /// How each position is searched.
+    private SearchMode mode = SearchMode.ALPHA_BETA;
+
+    /// How other players are treated in games with more than two, null to pick from the number of players.
+    private MultiplayerStrategy multiplayer = null;
+    private MaxNSearch maxN = null;
+
+    /// Scores positions where the search stops before the end of the game.
+    private Evaluator evaluator = new PatternEvaluator();
+
+    /// Book of opening moves to play without searching, or null to always search.
+    private OpeningBook book = null;
+
+    /// How often each move has caused a cutoff, indexed by [maximizing ? 0 : 1][tile]. Kept between moves of the
+    /// game, halving the scores before each search so recent results count the most. Tasks of a parallel search
+    /// update it without locking; a lost update only changes the order moves are tried in.
+    private int[][] historyScores = new int[2][0];
+
+    // State for the search currently running, read by every task of a parallel search
+    private int depthLimit;
+    private long deadline;
+    private boolean timed;
+    private boolean solving;
+    private final AtomicLong nodes = new AtomicLong();
+    /// Stats of the search running now, which every searcher adds its own to when it finishes.
+    private SearchStats stats = new SearchStats();
+    private volatile SearchStats lastStats = null;
+    private volatile SplitPoint root;
+    /// Lower end of the window the root was last searched with.
+    private int rootAlpha;
+
+    /// Held by whatever is using the search state above, either a search for a move or pondering.
+    private final Object searchLock = new Object();
+    /// Root of the ponder search which is running or about to run, null if there is none.
+    private volatile SplitPoint ponderTop = null;
+    /// Set by stop() and cancel() and only cleared by reset(), so one which comes in before the search starts still
+    /// stops it.
+    private volatile boolean stopped = false;
+    private volatile boolean cancelled = false;
+
 
     /**
      * Constructs a ReversiMinimax problem to solve.
@@ -44,6 +189,230 @@ public class ReversiMinimax implements Runnable {
     }
 
 
+    /**
+     * Sets a wall-clock limit for each search. When set, the search deepens one ply at a time until it reaches
+     * MAX_DEPTH or runs out of time.
+     * @param millis Time allowed for each search in milliseconds, or 0 to go back to using the game's timer.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setTimeLimit(long millis) {
+        timeLimit = Math.max(0, millis);
+        return this;
+    }
+
+
+    /**
+     * @return The time limit given to each search in milliseconds, or 0 if none was set.
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+
+    /**
+     * Sets how close to the end of the game the exact endgame solver takes over. Once there are this many empty tiles
+     * or fewer, the search runs to the end of the game no matter what MAX_DEPTH is. Only two player games on an 8x8
+     * board are ever solved.
+     * @param empties Number of empty tiles, or 0 to always use the normal search.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setEndgameEmpties(int empties) {
+        endgameEmpties = Math.max(0, empties);
+        return this;
+    }
+
+
+    /**
+     * @return Number of empty tiles at or below which the endgame is solved exactly.
+     */
+    public int getEndgameEmpties() {
+        return endgameEmpties;
+    }
+
+
+    /**
+     * Sets how each position is searched. PVS usually visits fewer positions once the search is a few plies deep,
+     * since most moves only need a null window search to show that they are no better than the first one.
+     * @param mode Search mode to use.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setSearchMode(SearchMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+
+    /**
+     * @return How each position is searched.
+     */
+    public SearchMode getSearchMode() {
+        return mode;
+    }
+
+
+    /**
+     * Sets how other players are treated in games with more than two players. Two player games always use a normal
+     * search.
+     * @param strategy Strategy to use, or null to pick one from the number of players.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setMultiplayerStrategy(MultiplayerStrategy strategy) {
+        this.multiplayer = strategy;
+        return this;
+    }
+
+
+    /**
+     * @return How other players are treated, or null if this depends on the number of players.
+     */
+    public MultiplayerStrategy getMultiplayerStrategy() {
+        return multiplayer;
+    }
+
+
+    /**
+     * @return True if the game is searched with max-n rather than alpha-beta.
+     */
+    private boolean useMaxN() {
+        final int players = game.getPlayerCount();
+        if(players <= 2) return false;
+        return (multiplayer != null ? multiplayer : MultiplayerStrategy.forPlayers(players)) == MultiplayerStrategy.MAX_N;
+    }
+
+
+    /**
+     * Sets the evaluation used for positions where the search stops before the end of the game. The evaluator is
+     * shared by every thread of a parallel search.
+     * @param evaluator Evaluator to use.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        return this;
+    }
+
+
+    /**
+     * @return The evaluation used for positions where the search stops before the end of the game.
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+
+    /**
+     * Sets the opening book to play from. Whenever the position is in the book and the book move is valid, it is
+     * played straight away instead of searching.
+     * @param book Book to use, or null to always search.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setOpeningBook(OpeningBook book) {
+        this.book = book;
+        return this;
+    }
+
+
+    /**
+     * @return The opening book used by this search, or null if there is none.
+     */
+    public OpeningBook getOpeningBook() {
+        return book;
+    }
+
+
+    /**
+     * Replaces the transposition table used by this search, for example to use a larger one. The table should only be
+     * shared with other searches for the same player.
+     * @param table Table to use.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+        return this;
+    }
+
+
+    /**
+     * @return The transposition table used by this search.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+
+    /**
+     * Sets the pool the search runs on. Searches with a pool split the work between its threads; without one the
+     * search runs on the thread which asked for the move.
+     * @param pool Pool to use, or null to search on a single thread.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+
+    /**
+     * @return The pool the search runs on, or null if it only uses a single thread.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+
+    /**
+     * Turns the parallel search on or off using a pool shared by all searches, with one thread for every processor.
+     * Where there is no ForkJoinPool the search stays on a single thread.
+     * @param parallel True to search on every processor, false to use a single thread.
+     * @return This object for chaining.
+     */
+    public ReversiMinimax setParallel(boolean parallel) {
+        return setPool(parallel ? getSharedPool() : null);
+    }
+
+
+    /**
+     * @return The pool used by searches which were told to run in parallel without being given a pool, or null if
+     * this platform has no ForkJoinPool.
+     */
+    public static synchronized ForkJoinPool getSharedPool() {
+        if(sharedPool == null && isParallelSupported())
+            sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return sharedPool;
+    }
+
+
+    /**
+     * Checks if searches can run in parallel here. Android only has ForkJoinPool from API 21, and the app supports
+     * older versions than that.
+     * @return True if ForkJoinPool can be used.
+     */
+    public static boolean isParallelSupported() {
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+            return true;
+        } catch(ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * @return Number of positions visited by the last search.
+     */
+    public long getNodeCount() {
+        return nodes.get();
+    }
+
+
+    /**
+     * @return What the last call to getBestPlay() did, or null if it has not been called yet.
+     */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+
     /**
      * Calculate the best move in reversi by using the minimax algorithm.
      *
@@ -54,9 +423,10 @@ public class ReversiMinimax implements Runnable {
     public void run() {
         try {
             MoveCommand command = getBestMoveCommand();
+            if(cancelled) return;
 
             if(callback != null)
-                callback.call(getBestMoveCommand().position);
+                callback.call(command.position);
             else
                 game.acceptCommand(command);
         } catch (IndexOutOfBoundsException e) {
@@ -93,77 +463,414 @@ public class ReversiMinimax implements Runnable {
      * @throws IndexOutOfBoundsException If no moves can be made.
      */
     public BoardIndex getBestPlay() {
+        //the table and search state are shared with pondering, which has to finish first
+        stopPondering();
+        synchronized(searchLock) {
+            stats = new SearchStats();
+            final long start = System.nanoTime();
+            try {
+                return searchBestPlay();
+            } finally {
+                stats.setElapsedNanos(System.nanoTime() - start);
+                lastStats = stats;
+                SearchCounters.getInstance().record(stats);
+            }
+        }
+    }
+
+
+    /**
+     * Finds the index of the best play, once nothing else is searching.
+     */
+    private BoardIndex searchBestPlay() {
         final Board board = game.getBoard();
 
+        if(!(game.getGameLogic() instanceof ReversiLogic))
+            throw new IllegalStateException("Must be a game of reversi to use reversi-minimax.");
         final ReversiLogic logic = (ReversiLogic)game.getGameLogic();
-        if(logic == null) throw new IllegalStateException("Must be a game of reversi to use reversi-minimax.");
 
-        Set<BoardIndex> possibleMoves = logic.getValidMoves(aiID);
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
-        int bestScore = Integer.MIN_VALUE;
+        //moves come back in tile order, which keeps the search deterministic
+        int[] possibleMoves = new int[board.size * board.size];
+        final int count = logic.getValidMoves(game.getGameCache(), board, aiID, possibleMoves);
+        possibleMoves = Arrays.copyOf(possibleMoves, count);
+        nodes.set(0);
+        if(count == 0) return null;
 
-        BoardIndex bestMove = null;
-        for(BoardIndex i : possibleMoves) {
-            GameLogicCache subCache = game.getGameCache().duplicate();
-            Board subBoard = new Board(board);
-            logic.play(subCache, subBoard, new MoveCommand(aiID, i), false, false);
+        //the book can be wrong about a position if two of them hash the same, so only trust valid moves
+        if(book != null) {
+            final int move = book.probe(board, aiID);
+            for(int m : possibleMoves)
+                if(m == move) return toIndex(move, board);
+        }
+
+        if(useMaxN()) return toIndex(searchMaxN(board, possibleMoves[0]), board);
+
+        table.newSearch();
+        ageHistory(board.size * board.size);
+
+        //close enough to the end to search all of it with the solver
+        final int empty = board.size * board.size - board.getTotalPieces();
+        solving = empty <= endgameEmpties && canSolve(game.getGameCache(), board);
+        final int maxDepth = solving ? Math.max(MAX_DEPTH, empty) : MAX_DEPTH;
+
+        final long budget = getTimeBudget(board);
+        if(budget <= 0) {
+            //plain fixed depth search, expecting about what an earlier search found for this position
+            timed = false;
+            depthLimit = maxDepth;
+            final long entry = table.probe(board.getHash() ^ Zobrist.side(aiID));
+            try {
+                searchRoot(game.getGameCache(), board, possibleMoves, entry != 0, TranspositionTable.score(entry));
+            } catch(SearchTimeout e) {
+                //stopped part way through, which only leaves the best move of the moves searched so far
+                return toIndex(root.searched && root.bestScore > rootAlpha ? root.bestMove : possibleMoves[0], board);
+            }
+            stats.setCompletedDepth(depthLimit);
+            return toIndex(root.bestMove, board);
+        }
+
+        //iterative deepening; always keep the result of the deepest finished search
+        timed = true;
+        deadline = System.nanoTime() + budget * 1000000L;
+        int bestMove = possibleMoves[0];
+        int bestScore = 0;
+        for(depthLimit = 1; depthLimit <= maxDepth; depthLimit++) {
+            try {
+                searchRoot(game.getGameCache(), board, possibleMoves, depthLimit > 1, bestScore);
+            } catch(SearchTimeout e) {
+                //the previous best is searched first, so anything which beat it in the partial search is better;
+                //scores below the window are only bounds though, which cannot be compared
+                if(root.searched && root.bestScore > rootAlpha) bestMove = root.bestMove;
+                break;
+            }
+            bestMove = root.bestMove;
+            bestScore = root.bestScore;
+            stats.setCompletedDepth(depthLimit);
+
+            //search the best move first next time
+            moveToFront(possibleMoves, count, bestMove);
+
+            if(depthLimit >= empty) break; //searched to the end of the game already
+
+            //a quick search gives us a move to fall back on, then go straight to solving it
+            if(solving) depthLimit = Math.max(depthLimit, empty - 1);
+        }
+        return toIndex(bestMove, board);
+    }
+
+
+    /**
+     * Searches with max-n, at a fixed depth or deepening until time runs out like the normal search.
+     * @param fallback Tile number of the move to play if the search is stopped before it finds one.
+     * @return Tile number of the best move.
+     */
+    private int searchMaxN(Board board, int fallback) {
+        if(maxN == null) {
+            maxN = new MaxNSearch(game) {
+                @Override
+                protected void poll() {
+                    if(stopped || timed && System.nanoTime() - deadline > 0) throw SearchTimeout.INSTANCE;
+                }
+            };
+        }
 
-            final int childScore = getBestPlay(subCache.duplicate(), subBoard, game.getNextPlayerID(aiID), alpha, beta, 1);
-            if(childScore > bestScore) {
-                bestScore = childScore;
-                bestMove = i;
-                alpha = Math.max(alpha, childScore);
+        final GameLogicCache cache = game.getGameCache();
+        final long budget = getTimeBudget(board);
+        timed = budget > 0;
+        if(!timed) {
+            try {
+                final int move = maxN.search(cache, board, aiID, MAX_DEPTH);
+                stats.setCompletedDepth(MAX_DEPTH);
+                return move;
+            } catch(SearchTimeout e) {
+                return fallback;
+            } finally {
+                nodes.addAndGet(maxN.getNodeCount());
+                stats.addNodes(maxN.getNodeCount());
             }
+        }
 
-            if(beta <= alpha) break; //will not ever happen in this location
+        deadline = System.nanoTime() + budget * 1000000L;
+        final int empty = board.size * board.size - board.getTotalPieces();
+        int bestMove = fallback;
+        for(int depth = 1; depth <= MAX_DEPTH; depth++) {
+            try {
+                bestMove = maxN.search(cache, board, aiID, depth);
+                stats.setCompletedDepth(depth);
+            } catch(SearchTimeout e) {
+                break;
+            } finally {
+                nodes.addAndGet(maxN.getNodeCount());
+                stats.addNodes(maxN.getNodeCount());
+            }
+            if(depth >= empty) break;
         }
         return bestMove;
     }
 
+
     /**
-     * Find the best of the children to choose if our turn, and assume they choose the worst
-     * on their turn.
-     * @return A child of node which is the best state to go to.
+     * Prepares to search a position while another player is on move, so that once it is our turn most of the
+     * positions we could reach are already in the transposition table. The position is copied straight away, so the
+     * game is free to move on while the returned task runs.
+     *
+     * The task deepens one ply at a time, to one ply past MAX_DEPTH, which covers every reply to every move the other
+     * player could make. It stops early when stopPondering() is called, which getBestPlay() does before it starts.
+     * Only one ponder search runs at a time; asking for a new one stops the last. Once the search has been cancelled
+     * the task does nothing. isPondering() is true from the moment the task is made, so a caller which ends up not
+     * running it must call stopPondering().
+     * @param player Player ID which is on move.
+     * @return Task to run on another thread.
      */
-    private int getBestPlay(GameLogicCache cache, Board board, int player, int alpha, int beta, int depth) {
-        if(depth >= MAX_DEPTH)
-            return heuristicScore(cache, board, false);
+    public Runnable ponder(final int player) {
+        stopPondering();
+        //max-n does not use the table, so there is nothing to fill
+        if(cancelled || useMaxN()) return new Runnable() {
+            @Override
+            public void run() {}
+        };
 
-        final GameLogic logic = game.getGameLogic();
-        final boolean turn_skipping = game.getSettings().get(SettingsLoader.GAME_ALLOW_TURN_SKIPPING, Boolean.class);
-        final int start_player = player;
-
-        Set<BoardIndex> possibleMoves = logic.getValidMoves(cache, board, player);
-        while(possibleMoves.isEmpty()) { //can't move
-            player = game.getNextPlayerID(player);
-            if(player != start_player) //inc. player and make sure we have not looped
-                possibleMoves = logic.getValidMoves(cache, board, player);
-            else
-                return heuristicScore(cache, board, true);
+        final SplitPoint top = new SplitPoint(null, player == aiID, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, -1);
+        ponderTop = top;
+
+        final GameLogicCache cache = game.getGameCache();
+        final Board board = game.getBoard();
+        final int empty = board.size * board.size - board.getTotalPieces();
+        final boolean solve = empty <= endgameEmpties && canSolve(cache, board);
+        final Searcher searcher = new Searcher(top, null, cache, board);
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized(searchLock) {
+                    try {
+                        timed = false;
+                        solving = solve;
+                        if(historyScores[0].length != board.size * board.size) ageHistory(board.size * board.size);
+                        final int maxDepth = solve ? Math.max(MAX_DEPTH, empty) : MAX_DEPTH + 1;
+                        for(depthLimit = 1; depthLimit <= maxDepth && !top.timedOut; depthLimit++)
+                            searcher.search(player, Integer.MIN_VALUE, Integer.MAX_VALUE, 0);
+                    } catch(SearchTimeout e) {
+                        //stopped, everything searched so far is in the table
+                    } finally {
+                        if(ponderTop == top) ponderTop = null;
+                    }
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Stops the ponder search, if there is one. Does not wait for it to finish.
+     */
+    public void stopPondering() {
+        final SplitPoint top = ponderTop;
+        if(top != null) top.timedOut = true;
+    }
+
+
+    /**
+     * Stops the search for a move as soon as it can, and any pondering. The search returns the best move it has found
+     * so far, as if it had run out of time. Every later search stops straight away too, until reset() is called.
+     * Does not wait for the search to finish.
+     */
+    public void stop() {
+        stopped = true;
+        stopPondering();
+        final SplitPoint top = root;
+        if(top != null) top.timedOut = true;
+    }
+
+
+    /**
+     * Stops the search like stop(), and throws its result away: run() will not hand on any move until reset() is
+     * called.
+     */
+    public void cancel() {
+        cancelled = true;
+        stop();
+    }
+
+
+    /**
+     * Lets searches run again after stop() or cancel(). Call before starting a new search, not while one is running.
+     */
+    public void reset() {
+        stopped = false;
+        cancelled = false;
+    }
+
+
+    /**
+     * @return True if cancel() has been called since the last reset().
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+
+    /**
+     * @return True if a ponder search has been started and has not finished or been stopped.
+     */
+    public boolean isPondering() {
+        final SplitPoint top = ponderTop;
+        return top != null && !top.timedOut;
+    }
+
+
+    /**
+     * Searches all the moves at the root, leaving the result in the root split point. In PVS mode with an expected
+     * score, the search starts with a narrow window around it and widens whichever side the result falls outside of.
+     * @param moves Moves to search as tile numbers, in the order to search them.
+     * @param hasGuess True if there is an expected score.
+     * @param guess The expected score.
+     */
+    private void searchRoot(GameLogicCache cache, Board board, int[] moves, boolean hasGuess, int guess) {
+        int alpha = Integer.MIN_VALUE;
+        int beta = Integer.MAX_VALUE;
+        if(mode == SearchMode.PVS && hasGuess) {
+            alpha = (int)Math.max(Integer.MIN_VALUE, (long)guess - ASPIRATION_WINDOW);
+            beta = (int)Math.min(Integer.MAX_VALUE, (long)guess + ASPIRATION_WINDOW);
+        }
+
+        while(true) {
+            searchRoot(cache, board, moves, alpha, beta);
+            if(root.bestScore <= alpha && alpha != Integer.MIN_VALUE) alpha = Integer.MIN_VALUE;
+            else if(root.bestScore >= beta && beta != Integer.MAX_VALUE) beta = Integer.MAX_VALUE;
+            else break;
+        }
+    }
+
+
+    /**
+     * Searches all the moves at the root within a window.
+     */
+    private void searchRoot(final GameLogicCache cache, final Board board, final int[] moves, int alpha, int beta) {
+        root = new SplitPoint(null, true, alpha, beta, Integer.MIN_VALUE, -1);
+        rootAlpha = alpha;
+        if(stopped) root.timedOut = true;
+
+        if(pool == null) {
+            searchRootMoves(cache, board, moves);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    searchRootMoves(cache, board, moves);
+                }
+            });
         }
 
-        final boolean maximize = player == aiID;
-        int bestScore = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        final int bound = root.bestScore <= alpha ? TranspositionTable.UPPER :
+                (root.bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT);
+        table.store(board.getHash() ^ Zobrist.side(aiID), depthLimit, bound, root.bestScore, root.bestMove);
+    }
 
-        for(BoardIndex i : possibleMoves) {
-            GameLogicCache subCache = cache.duplicate();
-            Board subBoard = new Board(board);
-            logic.play(subCache, subBoard, new MoveCommand(player, i), false, false);
 
-            final int childScore = getBestPlay(subCache, subBoard, game.getNextPlayerID(player), alpha, beta, depth + 1);
-            if(maximize && childScore > bestScore) {
-                bestScore = childScore;
-                alpha = Math.max(alpha, childScore);
+    /**
+     * Searches the first root move, and then the rest of them either one at a time or all at once on the pool.
+     */
+    private void searchRootMoves(GameLogicCache cache, Board board, int[] moves) {
+        Searcher searcher = new Searcher(root, null, cache, board);
+        final long allocation = SearchStats.startAllocation();
+        try {
+            for(int n = 0; n < moves.length; n++) {
+                if(n > 0 && pool != null && depthLimit > MIN_SPLIT_DEPTH) {
+                    searcher.split(root, aiID, moves, n, moves.length, 0);
+                    break;
+                }
+
+                if(root.update(n == 0 ? searcher.searchMove(aiID, moves[n], root.alpha, root.beta, 0) :
+                        searcher.searchSibling(aiID, moves[n], root.alpha, root.beta, 0, true), moves[n]))
+                    searcher.stats.addCutoff(n);
+                root.searched = true;
             }
-            else if(!maximize && childScore < bestScore) {
-                bestScore = childScore;
-                beta = Math.min(beta, childScore);
+        } finally {
+            searcher.finish(allocation);
+        }
+    }
+
+
+    /**
+     * Moves a move to the front of a list of moves, keeping the rest of them in the same order.
+     * @param moves List of moves as tile numbers.
+     * @param count Number of moves in the list.
+     * @param move Move to put first; nothing happens if it is not in the list.
+     */
+    private static void moveToFront(int[] moves, int count, int move) {
+        for(int i = 0; i < count; i++) {
+            if(moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
             }
+        }
+    }
+
 
-            if(beta <= alpha) break;
+    /**
+     * Halves every history score, making room for the new search while remembering what worked before.
+     * @param tiles Number of tiles on the board.
+     */
+    private void ageHistory(int tiles) {
+        for(int side = 0; side < 2; side++) {
+            if(historyScores[side].length != tiles) historyScores[side] = new int[tiles];
+            else for(int i = 0; i < tiles; i++) historyScores[side][i] >>= 1;
         }
-        return bestScore;
+    }
+
+
+    /**
+     * Converts a tile number back into a board index.
+     * @return The index, or null if the tile is negative (no move).
+     */
+    private static BoardIndex toIndex(int tile, Board board) {
+        return tile < 0 ? null : new BoardIndex(tile / board.size, tile % board.size);
+    }
+
+
+    /**
+     * Divides, rounding towards negative infinity. Math.floorDiv does the same but is missing from older Android.
+     */
+    private static int floorDiv(int a, int b) {
+        final int q = a / b;
+        return (a % b != 0 && (a ^ b) < 0) ? q - 1 : q;
+    }
+
+
+    /**
+     * Checks if the endgame solver can be used for a position. It only handles two players, so it needs the bitboard.
+     * @return True if the position can be handed off to the EndgameSolver.
+     */
+    private boolean canSolve(GameLogicCache cache, Board board) {
+        if(game.getPlayerCount() != 2 || !(cache instanceof ReversiLogicCache)) return false;
+        ReversiBitboard bitboard = ((ReversiLogicCache)cache).getBitboard(board);
+        return bitboard != null && bitboard.supports(aiID) && bitboard.supports(game.getNextPlayerID(aiID));
+    }
+
+
+    /**
+     * Works out how long the next search is allowed to take. An explicit time limit takes priority, otherwise the
+     * time is split from what the player has left on the game's TurnTimer over the moves they likely still have to make.
+     * @param board Board being searched.
+     * @return Time budget in milliseconds, or 0 if the search should not be timed.
+     */
+    private long getTimeBudget(Board board) {
+        if(timeLimit > 0) return timeLimit;
+
+        final TurnTimer timer = game.getTurnTimer();
+        if(timer == null) return 0;
+
+        final long remaining = timer.getRemainingMillis(aiID);
+        final int empty = board.size * board.size - board.getTotalPieces();
+        final int movesLeft = Math.max(1, empty / Math.max(1, game.getPlayerCount()));
+
+        //spread the time out, but never bet more than half of what is left on one move
+        long budget = remaining / movesLeft + timer.getTurnIncrementMillis() * 3 / 4;
+        budget = Math.min(budget, remaining / 2);
+        return Math.max(budget, MIN_TIME_BUDGET);
     }
 
 
@@ -175,25 +882,511 @@ public class ReversiMinimax implements Runnable {
      */
     private int heuristicScore(GameLogicCache cache, Board board, boolean endgame) {
         final GameLogic logic = game.getGameLogic();
+        if(!endgame) return evaluator.evaluate(logic, cache, board, aiID);
 
         //ours - (all - ours) == ours * 2 - all
-        int score = (logic.getScore(cache, board, aiID) * 2) - board.getTotalPieces();
+        final int score = (logic.getScore(cache, board, aiID) * 2) - board.getTotalPieces();
+        return score * ENDGAME_WEIGHT; //weight the score
+    }
+
 
-        if(!endgame) {
-            int player = board.at(new BoardIndex(0, 0));
-            if(player >= 0) score += player == aiID ? 4 : -4;
+    /**
+     * Runs the search on a single thread. Every task running on the pool gets its own Searcher, so the node count and
+     * clock checks never need to be shared until the task finishes.
+     *
+     * A searcher works on its own copy of the board and cache, making and then taking back each move in place. If the
+     * search is cut short by an exception the board is left part way through, so the searcher must be thrown away.
+     */
+    private final class Searcher {
+        /// The root of the search this belongs to, which is marked once time runs out.
+        private final SplitPoint top;
+        /// The split point this searcher is working under, null if it is searching from the root.
+        private final SplitPoint split;
+        private final GameLogic logic;
+        private final GameLogicCache cache;
+        private final Board board;
+        /// One undo record, move command and move list for each ply, created as they are needed.
+        private MoveUndo[] undo = new MoveUndo[0];
+        private MoveCommand[] commands = new MoveCommand[0];
+        private int[][] moveLists = new int[0][];
+        private int[][] keyLists = new int[0][];
+        /// The last two moves which caused a cutoff at each ply, -1 if there are none yet.
+        private int[][] killers = new int[0][];
+        private EndgameSolver solver = null;
+        private long nodes = 0;
+        private final SearchStats stats = new SearchStats();
 
-            player = board.at(new BoardIndex(board.size - 1, 0));
-            if(player >= 0) score += player == aiID ? 4 : -4;
 
-            player = board.at(new BoardIndex(0, board.size - 1));
-            if(player >= 0) score += player == aiID ? 4 : -4;
+        /**
+         * @param cache Cache of the position to search from, which is copied.
+         * @param board Position to search from, which is copied.
+         */
+        Searcher(SplitPoint top, SplitPoint split, GameLogicCache cache, Board board) {
+            this.top = top;
+            this.split = split;
+            this.logic = game.getGameLogic();
+            this.cache = cache.duplicate();
+            this.board = new Board(board);
+        }
+
 
-            player = board.at(new BoardIndex(board.size - 1, board.size - 1));
-            if(player >= 0) score += player == aiID ? 4 : -4;
+        /**
+         * Adds what this searcher did to the search it is part of. Call once it is done, on the thread it ran on.
+         * @param allocation Value returned by SearchStats.startAllocation() when it started.
+         */
+        void finish(long allocation) {
+            stats.endAllocation(allocation);
+            stats.addNodes(nodes);
+            ReversiMinimax.this.nodes.addAndGet(nodes);
+            ReversiMinimax.this.stats.add(stats);
+        }
 
+
+        /**
+         * Plays a move, searches the position it leads to and then takes the move back.
+         * @param move Tile number of the move.
+         * @param depth Depth of the position the move is played from.
+         * @return Score of the position after the move.
+         */
+        int searchMove(int player, int move, int alpha, int beta, int depth) {
+            if(depth >= undo.length) {
+                undo = Arrays.copyOf(undo, depth + 8);
+                commands = Arrays.copyOf(commands, depth + 8);
+            }
+            if(undo[depth] == null) undo[depth] = logic.createUndo();
+
+            //the player on move at a ply only changes after a pass, so the command is almost always reused
+            MoveCommand command = commands[depth];
+            if(command == null || command.playerID != player)
+                command = commands[depth] = new MoveCommand(player, new BoardIndex());
+            command.position.row = move / board.size;
+            command.position.column = move % board.size;
+
+            logic.makeMove(cache, board, command, undo[depth]);
+            final int score = search(game.getNextPlayerID(player), alpha, beta, depth + 1);
+            logic.unmakeMove(cache, board, undo[depth]);
             return score;
         }
-        return score * 16; //weight the score
+
+
+        /**
+         * Searches a move which is not the first one of its position. In PVS mode the move is first checked with a
+         * null window against the best score so far, and only searched with the full window if it might be better.
+         * @param maximize True if the position being searched from is aiID's move.
+         * @return Score of the position after the move, or a bound on it if it is outside of (alpha, beta).
+         */
+        int searchSibling(int player, int move, int alpha, int beta, int depth, boolean maximize) {
+            if(mode != SearchMode.PVS || (long)beta - alpha <= 1)
+                return searchMove(player, move, alpha, beta, depth);
+
+            final int score = maximize ? searchMove(player, move, alpha, alpha + 1, depth) :
+                    searchMove(player, move, beta - 1, beta, depth);
+            if(score <= alpha || score >= beta) return score;
+            return searchMove(player, move, alpha, beta, depth);
+        }
+
+
+        /**
+         * Find the best of the children to choose if our turn, and assume they choose the worst
+         * on their turn.
+         * @return Score of the best child of this position.
+         */
+        int search(int player, int alpha, int beta, int depth) {
+            if(top.timedOut) throw SearchTimeout.INSTANCE;
+            if(split != null && split.isCancelled()) throw SearchCancelled.INSTANCE;
+            if(timed && (++nodes % CLOCK_CHECK_INTERVAL) == 0 && System.nanoTime() - deadline > 0) {
+                top.timedOut = true;
+                throw SearchTimeout.INSTANCE;
+            } else if(!timed)
+                nodes++;
+            stats.reachDepth(depth);
+
+            if(depth >= depthLimit) {
+                stats.addEvaluation();
+                return heuristicScore(cache, board, false);
+            }
+
+            //see if we have already searched this position deep enough
+            final int remaining = depthLimit - depth;
+            final long hash = board.getHash() ^ Zobrist.side(player);
+            final long entry = table.probe(hash);
+            stats.addProbe(entry != 0);
+            int tableMove = -1;
+            if(entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                if(TranspositionTable.depth(entry) >= remaining) {
+                    final int score = TranspositionTable.score(entry);
+                    switch(TranspositionTable.bound(entry)) {
+                        case TranspositionTable.EXACT: return score;
+                        case TranspositionTable.LOWER: if(score >= beta) return score; break;
+                        case TranspositionTable.UPPER: if(score <= alpha) return score; break;
+                    }
+                }
+            }
+
+            //the search would run to the end of the game anyway, so solve it exactly instead
+            if(solving) {
+                final ReversiBitboard bitboard = ((ReversiLogicCache)cache).getBitboard(board);
+                if(bitboard != null && Long.bitCount(bitboard.empty()) <= remaining) {
+                    final int score = solveEndgame(bitboard, player, alpha, beta);
+                    final int bound = score <= alpha ? TranspositionTable.UPPER :
+                            (score >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT);
+                    table.store(hash, TranspositionTable.MAX_DEPTH, bound, score, -1);
+                    return score;
+                }
+            }
+
+            final int start_player = player;
+
+            if(depth >= moveLists.length) {
+                moveLists = Arrays.copyOf(moveLists, depth + 8);
+                keyLists = Arrays.copyOf(keyLists, depth + 8);
+                killers = Arrays.copyOf(killers, depth + 8);
+            }
+            if(moveLists[depth] == null) {
+                moveLists[depth] = new int[board.size * board.size];
+                keyLists[depth] = new int[board.size * board.size];
+                killers[depth] = new int[] {-1, -1};
+            }
+            final int[] moves = moveLists[depth];
+
+            int count = logic.getValidMoves(cache, board, player, moves);
+            while(count == 0) { //can't move
+                player = game.getNextPlayerID(player);
+                if(player != start_player) //inc. player and make sure we have not looped
+                    count = logic.getValidMoves(cache, board, player, moves);
+                else {
+                    stats.addEvaluation();
+                    final int score = heuristicScore(cache, board, true);
+                    table.store(hash, TranspositionTable.MAX_DEPTH, TranspositionTable.EXACT, score, -1);
+                    return score;
+                }
+            }
+
+            final boolean maximize = player == aiID;
+            orderMoves(moves, count, tableMove, maximize, depth);
+            final int alphaStart = alpha;
+            final int betaStart = beta;
+            int bestScore = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int bestMove = -1;
+
+            for(int n = 0; n < count; n++) {
+                final int i = moves[n];
+
+                //the eldest brother has been searched, so the rest can go in parallel
+                if(n > 0 && remaining >= MIN_SPLIT_DEPTH && pool != null && ForkJoinTask.inForkJoinPool()) {
+                    SplitPoint sp = new SplitPoint(split, maximize, alpha, beta, bestScore, bestMove);
+                    split(sp, player, moves, n, count, depth);
+                    bestScore = sp.bestScore;
+                    bestMove = sp.bestMove;
+                    break;
+                }
+
+                final int childScore = n == 0 ? searchMove(player, i, alpha, beta, depth) :
+                        searchSibling(player, i, alpha, beta, depth, maximize);
+                if(maximize && childScore > bestScore) {
+                    bestScore = childScore;
+                    bestMove = i;
+                    alpha = Math.max(alpha, childScore);
+                }
+                else if(!maximize && childScore < bestScore) {
+                    bestScore = childScore;
+                    bestMove = i;
+                    beta = Math.min(beta, childScore);
+                }
+
+                if(beta <= alpha) {
+                    stats.addCutoff(n);
+                    break;
+                }
+            }
+
+            final int bound = bestScore <= alphaStart ? TranspositionTable.UPPER :
+                    (bestScore >= betaStart ? TranspositionTable.LOWER : TranspositionTable.EXACT);
+            table.store(hash, remaining, bound, bestScore, bestMove);
+            if(bestMove >= 0 && bound == (maximize ? TranspositionTable.LOWER : TranspositionTable.UPPER))
+                recordCutoff(bestMove, maximize, depth, remaining);
+            return bestScore;
+        }
+
+
+        /**
+         * Sorts moves so the ones most likely to cause a cutoff are searched first: the move from the table, then
+         * corners, then the killer moves of this ply, then everything else by history score. Ties keep tile order so
+         * the search stays deterministic.
+         * @param tableMove Best move stored in the table for this position, or -1.
+         */
+        private void orderMoves(int[] moves, int count, int tableMove, boolean maximize, int depth) {
+            final int[] keys = keyLists[depth];
+            final int[] killer = killers[depth];
+            final int[] scores = historyScores[maximize ? 0 : 1];
+            final int last = board.size - 1;
+            final int lastRow = board.size * last;
+
+            for(int n = 0; n < count; n++) {
+                final int m = moves[n];
+                final int column = m % board.size;
+                int key;
+                if(m == tableMove) key = TABLE_KEY;
+                else if((m < board.size || m >= lastRow) && (column == 0 || column == last)) key = CORNER_KEY;
+                else if(m == killer[0]) key = KILLER_KEY + 1;
+                else if(m == killer[1]) key = KILLER_KEY;
+                else key = scores[m];
+
+                //insertion sort, highest key first; lists are short
+                int i = n;
+                for(; i > 0 && keys[i - 1] < key; i--) {
+                    keys[i] = keys[i - 1];
+                    moves[i] = moves[i - 1];
+                }
+                keys[i] = key;
+                moves[i] = m;
+            }
+        }
+
+
+        /**
+         * Remembers a move which caused a cutoff as a killer for this ply, and adds to its history score. Deeper
+         * cutoffs prune more of the tree, so they are worth more.
+         */
+        private void recordCutoff(int move, boolean maximize, int depth, int remaining) {
+            final int[] killer = killers[depth];
+            if(killer[0] != move) {
+                killer[1] = killer[0];
+                killer[0] = move;
+            }
+
+            final int[] scores = historyScores[maximize ? 0 : 1];
+            if((scores[move] += remaining * remaining) >= HISTORY_LIMIT)
+                for(int i = 0; i < scores.length; i++) scores[i] >>= 1;
+        }
+
+
+        /**
+         * Solves a position with the endgame solver. The solver scores positions by disc margin for the player to
+         * move, so the window is converted to that and the result is converted back to a score for aiID, on the
+         * same scale as heuristicScore. The window is rounded outwards, which keeps a result outside of it a valid
+         * bound.
+         * @return Score of the position for aiID, or a bound on it if it is outside of (alpha, beta).
+         */
+        private int solveEndgame(ReversiBitboard bitboard, int player, int alpha, int beta) {
+            if(solver == null) {
+                solver = new EndgameSolver() {
+                    @Override
+                    protected void poll() {
+                        if(top.timedOut) throw SearchTimeout.INSTANCE;
+                        if(split != null && split.isCancelled()) throw SearchCancelled.INSTANCE;
+                        if(timed && System.nanoTime() - deadline > 0) {
+                            top.timedOut = true;
+                            throw SearchTimeout.INSTANCE;
+                        }
+                    }
+                };
+            }
+
+            final int limit = EndgameSolver.WORST * ENDGAME_WEIGHT;
+            final int a = Math.max(alpha, -limit);
+            final int b = Math.min(beta, limit);
+            final boolean ours = player == aiID;
+            final int lo = ours ? floorDiv(a, ENDGAME_WEIGHT) : floorDiv(-b, ENDGAME_WEIGHT);
+            final int hi = ours ? -floorDiv(-b, ENDGAME_WEIGHT) : -floorDiv(a, ENDGAME_WEIGHT);
+
+            final long before = solver.getNodeCount();
+            try {
+                final int margin = solver.solve(bitboard.discs(player), bitboard.opponentDiscs(player), lo,
+                        Math.max(hi, lo + 1));
+                return (ours ? margin : -margin) * ENDGAME_WEIGHT;
+            } finally {
+                nodes += solver.getNodeCount() - before;
+            }
+        }
+
+
+        /**
+         * Searches the remaining moves of a position in parallel and waits for all of them to finish. The results
+         * are collected in the split point. Every task is joined even once one of them has timed out or been cut
+         * off, so none are left writing to the table or the stats after the search has returned.
+         * @param sp Split point holding the bounds and best result found so far.
+         * @param moves List of moves as tile numbers.
+         * @param from Index of the first move which has not been searched yet.
+         * @param to Index after the last move to search.
+         * @param depth Depth of the position being split.
+         */
+        void split(SplitPoint sp, int player, int[] moves, int from, int to, int depth) {
+            //the tasks copy our board when they start, and we do not touch it until they are all done
+            List<MoveTask> tasks = new ArrayList<>(to - from);
+            for(int n = from; n < to; n++)
+                tasks.add(new MoveTask(top, sp, cache, board, player, moves[n], n, depth));
+            for(MoveTask task : tasks) task.fork();
+
+            //last forked is the most likely to still be ours to run, so join in reverse
+            RuntimeException stopped = null;
+            for(int i = tasks.size() - 1; i >= 0; i--) {
+                try {
+                    tasks.get(i).join();
+                } catch(SearchTimeout | SearchCancelled e) {
+                    if(stopped == null) stopped = e;
+                }
+            }
+            if(stopped != null) throw stopped;
+
+            //our own results are worthless if a split above us was cut off while we waited
+            if(top.timedOut) throw SearchTimeout.INSTANCE;
+            if(split != null && split.isCancelled()) throw SearchCancelled.INSTANCE;
+        }
+    }
+
+
+    /**
+     * Searches a single move of a split position on the pool.
+     */
+    private final class MoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SplitPoint top;
+        private final SplitPoint sp;
+        private final GameLogicCache cache;
+        private final Board board;
+        private final int player;
+        private final int move;
+        /// Index of the move in the order the moves of the position are searched.
+        private final int index;
+        private final int depth;
+
+
+        MoveTask(SplitPoint top, SplitPoint sp, GameLogicCache cache, Board board, int player, int move, int index,
+                 int depth) {
+            this.top = top;
+            this.sp = sp;
+            this.cache = cache;
+            this.board = board;
+            this.player = player;
+            this.move = move;
+            this.index = index;
+            this.depth = depth;
+        }
+
+
+        @Override
+        protected void compute() {
+            //tasks are often too small to reach a clock check of their own
+            if(timed && System.nanoTime() - deadline > 0) top.timedOut = true;
+            if(top.timedOut) throw SearchTimeout.INSTANCE;
+            if(sp.isCancelled()) return;
+
+            Searcher searcher = new Searcher(top, sp, cache, board);
+            final long allocation = SearchStats.startAllocation();
+            try {
+                //start from the tightest bounds known when this task gets to run
+                final int alpha, beta;
+                synchronized(sp) {
+                    alpha = sp.alpha;
+                    beta = sp.beta;
+                }
+                if(beta <= alpha) return;
+
+                if(sp.update(searcher.searchSibling(player, move, alpha, beta, depth, sp.maximize), move))
+                    searcher.stats.addCutoff(index);
+            } catch(SearchCancelled e) {
+                //a sibling caused a cutoff, this result is not needed
+            } finally {
+                searcher.finish(allocation);
+            }
+        }
+    }
+
+
+    /**
+     * A position whose children are being searched in parallel. The tasks searching each child share the bounds and
+     * best result through this; once one of them causes a cutoff, the split point is cancelled and any task under it
+     * gives up as soon as it notices.
+     */
+    private static final class SplitPoint {
+        private final SplitPoint parent;
+        private final boolean maximize;
+        private int alpha;
+        private int beta;
+        private int bestScore;
+        /// Tile number of the best move, -1 if none has been searched.
+        private int bestMove;
+        private volatile boolean cancelled = false;
+        /// True once at least one child has been searched to completion.
+        private volatile boolean searched = false;
+        /// Set on the root split point when the search runs out of time.
+        private volatile boolean timedOut = false;
+
+
+        SplitPoint(SplitPoint parent, boolean maximize, int alpha, int beta, int bestScore, int bestMove) {
+            this.parent = parent;
+            this.maximize = maximize;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.bestScore = bestScore;
+            this.bestMove = bestMove;
+        }
+
+
+        /**
+         * Records the score of a child, tightening the bounds and cancelling the other children on a cutoff.
+         * @return True if this score caused the cutoff.
+         */
+        synchronized boolean update(int score, int move) {
+            if(maximize && (score > bestScore || bestMove < 0)) {
+                bestScore = score;
+                bestMove = move;
+                alpha = Math.max(alpha, score);
+            }
+            else if(!maximize && (score < bestScore || bestMove < 0)) {
+                bestScore = score;
+                bestMove = move;
+                beta = Math.min(beta, score);
+            }
+            searched = true;
+
+            if(beta <= alpha && !cancelled) {
+                cancelled = true;
+                return true;
+            }
+            return false;
+        }
+
+
+        /**
+         * @return True if this or any split point above it has been cut off.
+         */
+        boolean isCancelled() {
+            for(SplitPoint s = this; s != null; s = s.parent)
+                if(s.cancelled) return true;
+            return false;
+        }
+    }
+
+
+    /**
+     * Thrown inside of a task to unwind it once a sibling has made its result useless.
+     */
+    private static final class SearchCancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final SearchCancelled INSTANCE = new SearchCancelled();
+
+        private SearchCancelled() {
+            super("Search was cut off", null, false, false);
+        }
+    }
+
+
+    /**
+     * Thrown from deep inside of a timed search to unwind it once the time is up. A single instance without a stack
+     * trace is used since it is part of normal operation.
+     */
+    private static final class SearchTimeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final SearchTimeout INSTANCE = new SearchTimeout();
+
+        private SearchTimeout() {
+            super("Search ran out of time", null, false, false);
+        }
     }
-}
\ No newline at end of file
+}
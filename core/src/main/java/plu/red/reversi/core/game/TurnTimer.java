@@ -84,6 +84,15 @@ public class TurnTimer {
      * @return The Player's remaining time for the game.
      */
     public int getRemainingTime(int player) {
+        return (int)(getRemainingMillis(player) / 1000);
+    }
+
+    /**
+     * Get the remaining time for a player in milliseconds.
+     * @param player A valid player.
+     * @return The Player's remaining time for the game in milliseconds.
+     */
+    public long getRemainingMillis(int player) {
         if(player < 0) return 0;
 
         Long t = playerTimes.get(player);
@@ -92,7 +101,14 @@ public class TurnTimer {
             //current player needs to account for time since their turn began as well
             time -= (System.currentTimeMillis() - lastSwitch);
 
-        return (int)(time / 1000);
+        return time;
+    }
+
+    /**
+     * @return The time given to a player after completing a turn in milliseconds.
+     */
+    public long getTurnIncrementMillis() {
+        return TURN_INC;
     }
 
     /**
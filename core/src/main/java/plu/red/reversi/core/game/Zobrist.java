@@ -0,0 +1,64 @@
+package plu.red.reversi.core.game;
+
+/**
+ * Zobrist hashing keys for board positions. A position hashes to the XOR of the key of every occupied tile, so a hash
+ * can be kept up to date by XORing keys in and out as tiles change instead of re-reading the whole board.
+ *
+ * Keys are generated from a fixed seed rather than at random, which means a hash stays the same between runs of the
+ * program and can safely be written to disk.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long SIDE_SEED = 0x1B873593CC9E2D51L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private Zobrist() {}
+
+
+    /**
+     * Retrieves the key for a player owning a tile.
+     * @param cell Tile number (row * size + column).
+     * @param player Player ID which owns the tile; empty tiles (negative IDs) have a key of 0.
+     * @return 64-bit key.
+     */
+    public static long key(int cell, int player) {
+        if(player < 0) return 0;
+        return mix(SEED + (((long)cell << 8) | (player & 0xFF)) * GOLDEN);
+    }
+
+
+    /**
+     * Retrieves the key for a player being the next to move. XOR this with a board's hash to tell positions apart
+     * which have the same tiles but a different player to move.
+     * @param player Player ID which is to move.
+     * @return 64-bit key.
+     */
+    public static long side(int player) {
+        return mix(SIDE_SEED + (player & 0xFF) * GOLDEN);
+    }
+
+
+    /**
+     * Computes the full hash of a board by reading every tile. Prefer Board.getHash(), which is kept up to date as
+     * the board changes.
+     * @param board Board to hash.
+     * @return 64-bit hash of the board.
+     */
+    public static long hash(Board board) {
+        long hash = 0;
+        int cell = 0;
+        for(BoardIndex index : board)
+            hash ^= key(cell++, board.at(index));
+        return hash;
+    }
+
+
+    /**
+     * The SplitMix64 finalizer; spreads the bits of the input over the whole output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
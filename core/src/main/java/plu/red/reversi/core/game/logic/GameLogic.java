@@ -6,6 +6,7 @@ import plu.red.reversi.core.command.SetCommand;
 import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.History;
 import plu.red.reversi.core.listener.IBoardUpdateListener;
 import plu.red.reversi.core.listener.IBoardUpdateListener.BoardUpdate;
 
@@ -114,6 +115,34 @@ public abstract class GameLogic {
     }
 
 
+    /**
+     * Tells all the board listeners to redraw the whole board, for changes too big to describe as a BoardUpdate.
+     * @see IBoardUpdateListener
+     * @return This object for chaining.
+     */
+    protected final GameLogic refreshBoardListeners() {
+        for (IBoardUpdateListener i : boardUpdateListeners)
+            i.onBoardRefresh();
+
+        return this;
+    }
+
+
+    /**
+     * Adds a command which has just been applied to the game's history. Every History.SNAPSHOT_INTERVAL commands a
+     * snapshot is taken as well, so the game can be loaded again without replaying all of it.
+     * @param cache Cache after the command.
+     * @param board Board after the command.
+     * @param command Command to add.
+     */
+    protected final void record(GameLogicCache cache, Board board, BoardCommand command) {
+        final History history = game.getHistory();
+        history.addCommand(command);
+        final int count = history.getNumBoardCommands();
+        if(count % History.SNAPSHOT_INTERVAL == 0) history.addSnapshot(count, board, cache);
+    }
+
+
     /**
      * @return The minimum number of players for the game.
      */
@@ -175,6 +204,59 @@ public abstract class GameLogic {
     }
 
 
+    /**
+     * Brings a board to the position after the start of a history, replaying it from the latest snapshot the history
+     * has instead of from the first command when possible. Snapshots are taken every History.SNAPSHOT_INTERVAL
+     * commands along the way, so the next replay of the same history can skip ahead.
+     * @param cache Cache to overwrite.
+     * @param board Board to overwrite.
+     * @param history History to replay.
+     * @param count Number of board commands from the history to apply.
+     * @param notify True if this should notify subscribed listeners of the commands replayed. When starting from a
+     *               snapshot they are told to refresh the whole board first.
+     * @return This object for chaining.
+     * @throws IndexOutOfBoundsException If the history does not have that many commands.
+     */
+    public final GameLogic replay(GameLogicCache cache, Board board, History history, int count, boolean notify)
+            throws IndexOutOfBoundsException {
+        if(count > history.getNumBoardCommands())
+            throw new IndexOutOfBoundsException("History only has " + history.getNumBoardCommands() + " commands");
+
+        History.Snapshot snapshot = history.getSnapshot(count);
+        int i = 0;
+        if(snapshot == null) {
+            board.copyFrom(new Board(board.size));
+            cache.invalidate();
+        } else {
+            snapshot.restore(this, cache, board);
+            i = snapshot.commands;
+            //the commands before the snapshot are skipped, so listeners have to catch up all at once
+            if(notify) refreshBoardListeners();
+        }
+
+        while(i < count) {
+            BoardCommand c = history.getBoardCommand(i++);
+            if(c instanceof MoveCommand)
+                play(cache, board, (MoveCommand)c, notify, false);
+            if(c instanceof SetCommand)
+                apply(cache, board, (SetCommand)c, notify, false);
+            if(i % History.SNAPSHOT_INTERVAL == 0 && (snapshot == null || snapshot.commands != i))
+                history.addSnapshot(i, board, cache);
+        }
+        return this;
+    }
+
+
+    /**
+     * Regenerates whatever a cache holds which can be worked out from the board alone, for a board which was set up
+     * without going through this logic (such as a restored snapshot). Anything which depends on how the board got
+     * there, like the score, is left as it is.
+     * @param cache Cache which has been invalidated.
+     * @param board Board the cache is for.
+     */
+    public void rebuildCache(GameLogicCache cache, Board board) {}
+
+
     /**
      * Initialize the board with the appropriate initial game state. Used for new games.
      * @return This object for chaining.
@@ -235,7 +317,7 @@ public abstract class GameLogic {
             update.added.add(command.position);
             updateBoardListeners(update);
         }
-        if(record) game.getHistory().addCommand(command);
+        if(record) record(cache, board, command);
 
         return this;
     }
@@ -264,6 +346,45 @@ public abstract class GameLogic {
     public abstract GameLogic play(GameLogicCache cache, Board board, MoveCommand command, boolean notify, boolean record) throws InvalidParameterException;
 
 
+    /**
+     * Constructs a new undo record of the appropriate subtype for makeMove and unmakeMove.
+     * @return A new MoveUndo of the appropriate subtype.
+     */
+    public MoveUndo createUndo() {
+        return new MoveUndo();
+    }
+
+
+    /**
+     * Make a move on the board, remembering what was changed so it can be taken back with unmakeMove. This will
+     * never notify listeners or update history, it is meant for searching through moves on a private board.
+     *
+     * By default this keeps a full copy of the board and cache in the undo record; game logics which can list the
+     * changes a move makes should override this and unmakeMove.
+     *
+     * @param command Represents the move which is to be played.
+     * @param board Board to apply commands to.
+     * @param undo Record to fill in; any previous contents are replaced.
+     * @throws InvalidParameterException If it is an invalid move, no move will be made.
+     */
+    public void makeMove(GameLogicCache cache, Board board, MoveCommand command, MoveUndo undo) throws InvalidParameterException {
+        undo.saveSnapshot(cache, board);
+        play(cache, board, command, false, false);
+    }
+
+
+    /**
+     * Take back a move made by makeMove. Moves must be taken back in the reverse order they were made, and the
+     * board and cache must not have been changed in any other way since.
+     *
+     * @param board Board the move was made on.
+     * @param undo Record filled in by makeMove.
+     */
+    public void unmakeMove(GameLogicCache cache, Board board, MoveUndo undo) {
+        undo.restoreSnapshot(cache, board);
+    }
+
+
     /**
      * Checks the board to see if the move attempted is valid.
      * Prefer calling play and handling an exception than checking
@@ -306,18 +427,65 @@ public abstract class GameLogic {
      * @return ArrayList moves
      */
     public Set<BoardIndex> getValidMoves(GameLogicCache cache, Board board, int player) {
+        int[] tiles = new int[board.size * board.size];
+        int count = getValidMoves(cache, board, player, tiles);
+
         //declare an array for possible moves method
         HashSet<BoardIndex> moves = new HashSet<>();
-
-        //Add all valid moves to the set
-        for(BoardIndex index : board)
-            if(isValidMove(cache, board, new MoveCommand(player, index)))
-                moves.add(index); //adds the valid move into the array of moves
+        for(int i = 0; i < count; i++)
+            moves.add(new BoardIndex(tiles[i] / board.size, tiles[i] % board.size));
 
         return moves;
     }
 
 
+    /**
+     * Find the different moves that could be made without creating a set of them. This is the version to use when
+     * searching; the same array can be passed in over and over.
+     *
+     * @param player Integer Player ID to check for
+     * @param board Board to apply commands to.
+     * @param moves Array the moves are written into as tile numbers (row * size + column), in ascending order. It
+     *              must have room for every tile on the board.
+     * @return Number of moves written into the array.
+     */
+    public int getValidMoves(GameLogicCache cache, Board board, int player, int[] moves) {
+        MoveCommand command = new MoveCommand(player, new BoardIndex());
+        int count = 0;
+        for(int row = 0; row < board.size; row++) {
+            for(int column = 0; column < board.size; column++) {
+                command.position.row = row;
+                command.position.column = column;
+                if(isValidMove(cache, board, command))
+                    moves[count++] = row * board.size + column;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Find the different moves that could be made as a mask, where bit <code>row * size + column</code> is set if
+     * that tile can be played on. Only works for boards with at most 64 tiles.
+     *
+     * @param player Integer Player ID to check for
+     * @param board Board to apply commands to.
+     * @return Mask of the valid moves.
+     * @throws IllegalArgumentException If the board has more than 64 tiles.
+     */
+    public long getValidMoveMask(GameLogicCache cache, Board board, int player) throws IllegalArgumentException {
+        if(board.size * board.size > 64)
+            throw new IllegalArgumentException("Board is too large for a move mask.");
+
+        int[] tiles = new int[board.size * board.size];
+        int count = getValidMoves(cache, board, player, tiles);
+        long mask = 0;
+        for(int i = 0; i < count; i++)
+            mask |= 1L << tiles[i];
+        return mask;
+    }
+
+
     /**
      * Checks if the given player has at least one available move. Prefer using this to getValidMoves as it can be
      * much more efficient when only checking true/false.
@@ -337,10 +505,10 @@ public abstract class GameLogic {
      * @return True if the player is able to play, else false.
      */
     public boolean canPlay(GameLogicCache cache, Board board, int player) {
-        BoardIndex index = new BoardIndex();
-        for(index.row = 0; index.row < board.size; index.row++)
-            for(index.column = 0; index.column < board.size; index.column++)
-                if(isValidMove(cache, board, new MoveCommand(player, index)))
+        MoveCommand command = new MoveCommand(player, new BoardIndex());
+        for(command.position.row = 0; command.position.row < board.size; command.position.row++)
+            for(command.position.column = 0; command.position.column < board.size; command.position.column++)
+                if(isValidMove(cache, board, command))
                     return true;
         return false;
     }
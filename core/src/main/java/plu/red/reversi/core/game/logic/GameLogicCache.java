@@ -1,6 +1,6 @@
 package plu.red.reversi.core.game.logic;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * This is a cache used to store information relevant to a specific game. The main cache will need to be created
@@ -8,14 +8,25 @@ import java.util.HashMap;
  * which will automatically be read if no alternative is specified.
  */
 public abstract class GameLogicCache {
-    public final HashMap<Integer, Integer> score;
+    /// Room for this many players before the score arrays have to grow, which covers every GameLogic's
+    /// maxPlayerCount().
+    private static final int INITIAL_PLAYERS = 8;
+
+    /// Player ID of each score slot, and the score in that slot. Only the first <code>players</code> slots are used;
+    /// a player without a slot has no score yet. There are only a handful of players, so finding a slot is a short
+    /// scan rather than a hash lookup, and nothing is boxed.
+    private int[] ids;
+    private int[] scores;
+    private int players;
 
 
     /**
      * Basic constructor which initializes values to their defaults.
      */
     public GameLogicCache() {
-        score = new HashMap<>();
+        ids = new int[INITIAL_PLAYERS];
+        scores = new int[INITIAL_PLAYERS];
+        players = 0;
     }
 
 
@@ -28,7 +39,27 @@ public abstract class GameLogicCache {
      * @param other The cache to copy.
      */
     public GameLogicCache(GameLogicCache other) {
-        this.score = new HashMap<>(other.score);
+        ids = other.ids.clone();
+        scores = other.scores.clone();
+        players = other.players;
+    }
+
+
+    /**
+     * Replaces the contents of this cache with a copy of another one, so a cache can be restored without creating a
+     * new one. The same rules apply as for the copy constructor.
+     *
+     * @param other The cache to copy, which should be of the same subtype.
+     */
+    public void copyFrom(GameLogicCache other) {
+        if(ids.length < other.players) {
+            ids = other.ids.clone();
+            scores = other.scores.clone();
+        } else {
+            System.arraycopy(other.ids, 0, ids, 0, other.players);
+            System.arraycopy(other.scores, 0, scores, 0, other.players);
+        }
+        players = other.players;
     }
 
 
@@ -37,7 +68,7 @@ public abstract class GameLogicCache {
      * of a game logic function.
      */
     public void invalidate() {
-        score.clear();
+        players = 0;
     }
 
 
@@ -61,9 +92,72 @@ public abstract class GameLogicCache {
      */
     public boolean addToScore(int player, int amount) {
         if(player < 0) return false;
-        Integer value = score.get(player);
-        //put the new value in, treating the old one as 0 if it was not in the cache
-        score.put(player, (value == null ? 0 : value) + amount);
+        //a player without a score yet starts from 0; find the slot first, as it may grow the array
+        final int slot = slot(player);
+        scores[slot] += amount;
         return true;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Retrieves the score a player has in the cache.
+     * @param player Player ID.
+     * @return The player's score, or 0 if they do not have one.
+     */
+    public int getScore(int player) {
+        for(int i = 0; i < players; i++)
+            if(ids[i] == player) return scores[i];
+        return 0;
+    }
+
+
+    /**
+     * Checks if a player has a score in the cache yet. Logic which can count the score from the board uses this to
+     * work it out lazily after the cache has been invalidated.
+     * @param player Player ID.
+     * @return True if the player has a score, even if it is 0.
+     */
+    public boolean hasScore(int player) {
+        for(int i = 0; i < players; i++)
+            if(ids[i] == player) return true;
+        return false;
+    }
+
+
+    /**
+     * Sets the score of a player, adding them to the cache if they are not in it. This will do nothing if the player
+     * id is < 0.
+     * @param player Player ID.
+     * @param value New score.
+     */
+    public void setScore(int player, int value) {
+        if(player < 0) return;
+        final int slot = slot(player);
+        scores[slot] = value;
+    }
+
+
+    /**
+     * @return IDs of the players who have a score in the cache, in the order they were added.
+     */
+    public int[] getScoredPlayers() {
+        return Arrays.copyOf(ids, players);
+    }
+
+
+    /**
+     * Finds the slot of a player's score, giving them one if they do not have one yet.
+     */
+    private int slot(int player) {
+        for(int i = 0; i < players; i++)
+            if(ids[i] == player) return i;
+
+        if(players == ids.length) {
+            ids = Arrays.copyOf(ids, players * 2);
+            scores = Arrays.copyOf(scores, players * 2);
+        }
+        ids[players] = player;
+        scores[players] = 0;
+        return players++;
+    }
+}
@@ -1,19 +1,16 @@
 package plu.red.reversi.core.game.logic;
 
-import com.surelogic.Nullable;
 import plu.red.reversi.core.command.MoveCommand;
 import plu.red.reversi.core.command.SetCommand;
 import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.Game;
 import plu.red.reversi.core.listener.IBoardUpdateListener.BoardUpdate;
-import plu.red.reversi.core.util.UnionFind;
+import plu.red.reversi.core.util.IntUnionFind;
 
 import java.security.InvalidParameterException;
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.Set;
-import java.util.TreeSet;
 
 
 /**
@@ -114,60 +111,68 @@ public class GoLogic extends GameLogic {
         if(board.at(command.position) >= 0)
             throw new InvalidParameterException("Invalid play by player " + command.playerID + " to " + command.position);
 
-        //This will be updated as we progress, and set to true if it is valid.
-        // Basically catch right before final actions if it is not a valid play.
-        boolean validPlay = tileHasLiberty(board, command.position);
-
-        //attempt to play the move and handle if it turns out to be invalid
-        Set<BoardIndex> adjGroups = findAdjGroups(gcache, board, command.position);
+        final int cell = board.cell(command.position.row, command.position.column);
+        final int[] adjGroups = findAdjGroups(gcache, board, cell, new int[4]);
+        if(!isValidMove(gcache, board, command.playerID, cell, adjGroups))
+            throw new InvalidParameterException("Invalid play by player " + command.playerID + " to " + command.position);
 
-        //Use these to keep track so we don't apply the change until we are 100% sure that we won't have to undo it
         BoardUpdate boardUpdate = new BoardUpdate();
         boardUpdate.player = command.playerID;
         boardUpdate.added.add(command.position);
-        Collection<BoardIndex> toUnion = new LinkedList<>();
-        Collection<BoardIndex> toRemove = new LinkedList<>();
-
-        //for all the groups, check if it will be unioned or removed
-        for(BoardIndex index : adjGroups) {
-            if(board.at(index) == command.playerID) {
-                //we will want to union with this
-                toUnion.add(index);
 
-                if(!validPlay) //if we are not sure yet that it is valid, see if this will make it valid
-                    validPlay = groupHasLiberty(gcache, board, index, command.position);
-            }
-            else { //it is not the current player
-                //if we will remove it
-                if(!groupHasLiberty(gcache, board, index, command.position)) {
-                    toRemove.add(index);
-                    //For sure a valid play because we are removing the piece
-                    validPlay = true;
-                }
-            }
+        //place the stone; it takes a liberty away from every group next to it, once for each stone it touches
+        final IntUnionFind groups = gcache.groups;
+        final int[] liberties = gcache.prepare(board);
+        apply(cache, board, new SetCommand(command), false, false);
+        groups.add(cell);
+        liberties[cell] = emptyNeighbours(board, cell);
+        for(int group : adjGroups)
+            if(group >= 0) liberties[group]--;
+
+        //merge this group with all surrounding groups of this player
+        for(int group : adjGroups) {
+            if(group < 0 || board.get(group) != command.playerID) continue;
+            //the representative found before an earlier merge may have changed since, so look it up again
+            final int ours = groups.getRep(cell);
+            final int theirs = groups.getRep(group);
+            if(ours == theirs) continue; //already joined through another side
+            final int total = liberties[ours] + liberties[theirs];
+            groups.union(theirs, ours);
+            liberties[groups.getRep(cell)] = total;
         }
 
-        if(!validPlay) //handle invalid play
-            throw new InvalidParameterException("Invalid play by player " + command.playerID + " to " + command.position);
+        //every other group left without liberties is removed, all at once
+        int[] removed = null;
+        int removedCount = 0;
+        for(int i = 0; i < adjGroups.length; i++) {
+            final int group = adjGroups[i];
+            if(group < 0 || board.get(group) == command.playerID || liberties[group] != 0) continue;
+            boolean seen = false;
+            for(int j = 0; j < i; j++)
+                if(group == adjGroups[j]) seen = true;
+            if(seen) continue;
+            if(removed == null) removed = new int[board.size * board.size];
+            removedCount += groups.removeSet(group, removed, removedCount);
+        }
 
-        //now we can apply the changes
-        apply(cache, board, new SetCommand(command), false, false);
-        gcache.groups.add(command.position);
-        for(BoardIndex index : toUnion)
-            //merge this group with all surrounding groups of this player
-            gcache.groups.union(index, command.position);
-        for(BoardIndex index : toRemove)
-            //this will remove the set and add all that was removed to the update
-            gcache.groups.removeSet(index, boardUpdate.removed);
-
-        //actually remove the pieces from the board
-        for(BoardIndex index : boardUpdate.removed)
+        //actually remove the pieces from the board, giving liberties back to the groups around them
+        for(int i = 0; i < removedCount; i++) {
+            final BoardIndex index = new BoardIndex(board.row(removed[i]), board.column(removed[i]));
+            boardUpdate.removed.add(index);
             apply(cache, board, new SetCommand(-1, index), false, false);
+        }
+        final int[] directions = board.getDirections();
+        for(int i = 0; i < removedCount; i++) {
+            for(int d = 0; d < 4; ++d) {
+                final int t = removed[i] + directions[d];
+                if(board.get(t) >= 0) liberties[groups.getRep(t)]++;
+            }
+        }
 
         cache.addToScore(command.playerID, boardUpdate.removed.size());
 
         if(record)
-            game.getHistory().addCommand(command);
+            record(cache, board, command);
         if(notify)
             updateBoardListeners(boardUpdate);
 
@@ -191,28 +196,100 @@ public class GoLogic extends GameLogic {
         //if a tile is already there, it cannot be valid
         if(board.at(command.position) >= 0) return false;
 
-        //Process in order of least intensive to most intensive checks, and stop when we know it must be valid
-        //Check if the tile has liberties
-        if(tileHasLiberty(board, command.position))
+        //Check if the tile has liberties before looking at any groups
+        final int cell = board.cell(command.position.row, command.position.column);
+        if(tileHasLiberty(board, command.position.row, command.position.column))
             return true;
 
-        //Check if the group it would be part of has liberties or if there will be liberties after playing (i.e. we
-        // cause other pieces to be removed).
-        //Could join groups, and we don't want to modify board or the disjoint-sets due to computational cost, so
-        // instead find all current groups that are of the same player in adjacent tiles
-        Set<BoardIndex> groups = findAdjGroups(gcache, board, command.position);
-        for(BoardIndex i: groups) {
-            //if it is current player, see if it has an opening
-            if(board.at(i) == command.playerID)
-                //check if the group has liberties excluding the current tile
-                if(groupHasLiberty(gcache, board, i, command.position))
-                    return true;
-
-            else //it's an opponent, see if it will have no liberties after the move
-                if(!groupHasLiberty(gcache, board, i, command.position))
-                    return true;
+        return isValidMove(gcache, board, command.playerID, cell, findAdjGroups(gcache, board, cell, new int[4]));
+    }
+
+
+    /**
+     * Checks if a move on an empty tile is valid: either the tile has a liberty, a group of the player's next to it
+     * has another liberty it will join, or it takes the last liberty of someone else's group (which is then removed).
+     * Only needs the liberty counts of the groups next to it.
+     *
+     * @param player Player making the move.
+     * @param cell Board cell of the tile.
+     * @param adjGroups Representatives of the groups next to the tile, from findAdjGroups.
+     * @return True if the move is valid.
+     */
+    private static boolean isValidMove(GoLogicCache cache, Board board, int player, int cell, int[] adjGroups) {
+        if(emptyNeighbours(board, cell) > 0) return true;
+
+        final int[] liberties = cache.prepare(board);
+        for(int i = 0; i < adjGroups.length; i++) {
+            final int group = adjGroups[i];
+            if(group < 0) continue;
+
+            //liberties other than this tile, which the group touches once for each side it is on
+            int others = liberties[group];
+            for(int other : adjGroups)
+                if(group == other) others--;
+
+            if(board.get(group) == player ? others > 0 : others == 0) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Find the different moves that could be made without creating a set of them. This is the version to use when
+     * searching; the same array can be passed in over and over.
+     *
+     * @param player Integer Player ID to check for
+     * @param board Board to apply commands to.
+     * @param moves Array the moves are written into as tile numbers (row * size + column), in ascending order. It
+     *              must have room for every tile on the board.
+     * @return Number of moves written into the array.
+     */
+    @Override
+    public int getValidMoves(GameLogicCache cache, Board board, int player, int[] moves) {
+        GoLogicCache gcache = (GoLogicCache)cache;
+        if(gcache == null) throw new InvalidParameterException("Incorrect cache type for Go's getValidMoves.");
+
+        //one pass over the board cells; only tiles without an empty neighbour need the groups around them
+        final int[] adjGroups = new int[4];
+        int count = 0;
+        for(int row = 0; row < board.size; row++) {
+            int cell = board.cell(row, 0);
+            for(int column = 0; column < board.size; column++, cell++) {
+                if(board.get(cell) != -1) continue;
+                if(emptyNeighbours(board, cell) == 0) {
+                    findAdjGroups(gcache, board, cell, adjGroups);
+                    if(!isValidMove(gcache, board, player, cell, adjGroups)) continue;
+                }
+                moves[count++] = row * board.size + column;
+            }
         }
+        return count;
+    }
 
+
+    /**
+     * Checks if the given player has at least one available move. Prefer this over getValidMoves as this can be
+     * much more efficient when only checking true/false.
+     * @param player The player to check.
+     * @param board Board to apply commands to.
+     * @return True if the player is able to play, else false.
+     */
+    @Override
+    public boolean canPlay(GameLogicCache cache, Board board, int player) {
+        GoLogicCache gcache = (GoLogicCache)cache;
+        if(gcache == null) throw new InvalidParameterException("Incorrect cache type for Go's canPlay.");
+
+        //any empty tile next to another empty tile will do, and nearly every board has one
+        final int[] adjGroups = new int[4];
+        for(int row = 0; row < board.size; row++) {
+            int cell = board.cell(row, 0);
+            for(int column = 0; column < board.size; column++, cell++) {
+                if(board.get(cell) != -1) continue;
+                if(emptyNeighbours(board, cell) > 0) return true;
+                findAdjGroups(gcache, board, cell, adjGroups);
+                if(isValidMove(gcache, board, player, cell, adjGroups)) return true;
+            }
+        }
         return false;
     }
 
@@ -228,8 +305,7 @@ public class GoLogic extends GameLogic {
     public int getScore(GameLogicCache cache, Board board, int player) {
         GoLogicCache c = (GoLogicCache)cache;
         if(c == null) throw new InvalidParameterException("Incorrect cache type for Go's getScore.");
-        Integer score = c.score.get(player);
-        return score == null ? 0 : score;
+        return c.getScore(player);
     }
 
 
@@ -247,14 +323,18 @@ public class GoLogic extends GameLogic {
 
 
     /**
-     * Assign every tile a group id value based on horizontal and vertical connections.
-     * Tiles will have the same ID if they are horizontally or vertically connected,
-     * and not if they are only connected by diagonal values.
+     * Rebuilds the groups and their liberties from the stones on the board in one pass, without replaying any moves.
+     * Tiles are in the same group if they are horizontally or vertically connected, and not if they are only connected
+     * diagonally. The captures which make up the score cannot be seen on the board, so they are left as they are.
+     * @param cache Cache which has been invalidated.
      * @param board Board to search for groups on.
-     * @return A board of group ids which line up with the main game board.
      */
-    private GoLogicCache getGroups(GoLogicCache cache, Board board) {
-        final UnionFind<BoardIndex> groups = cache.groups;
+    @Override
+    public void rebuildCache(GameLogicCache cache, Board board) {
+        GoLogicCache gcache = (GoLogicCache)cache;
+        if(gcache == null) throw new InvalidParameterException("Incorrect cache type for Go's rebuildCache.");
+        final IntUnionFind groups = gcache.groups;
+        final int[] liberties = gcache.prepare(board);
 
         //if we already have groups cached, clear them before re-scanning the board
         if(!groups.isEmpty()) groups.clear();
@@ -262,119 +342,86 @@ public class GoLogic extends GameLogic {
         //scan through the board from top left to bottom right, and union with top and left tiles iff they are the
         // same player and that player is not the null player
         for(int r = 0; r < board.size; ++r) {
-            for(int c = 0; c < board.size; ++c) {
-                //read player
-                BoardIndex t = new BoardIndex(r, c);
-                int p = board.at(t);
-
+            int t = board.cell(r, 0);
+            for(int c = 0; c < board.size; ++c, ++t) {
+                int p = board.get(t);
                 if(p < 0) continue; //verify they are not null
-                groups.add(t); //add them
-
-                //Check left and top; union if same player
-                if(r > 0) {
-                    BoardIndex t2 = new BoardIndex(r - 1, c);
-                    if(board.at(t2) == p)
-                        groups.union(t, t2);
-                } if(r > 0 && c > 0) {
-                    BoardIndex t2 = new BoardIndex(r - 1, c - 1);
-                    if(board.at(t2) == p)
-                        groups.union(t, t2);
-                }
+
+                groups.add(t);
+                liberties[t] = emptyNeighbours(board, t);
+
+                //the tiles above and to the left have already been scanned; the border is never a player
+                join(groups, liberties, board, t, t - board.stride, p);
+                join(groups, liberties, board, t, t - 1, p);
             }
         }
+    }
 
-        return cache;
+
+    /**
+     * Joins the group of a stone with the group on another tile if it belongs to the same player.
+     */
+    private static void join(IntUnionFind groups, int[] liberties, Board board, int cell, int other, int player) {
+        if(board.get(other) != player) return;
+        final int a = groups.getRep(cell);
+        final int b = groups.getRep(other);
+        if(a == b) return;
+        final int total = liberties[a] + liberties[b];
+        groups.union(a, b);
+        liberties[groups.getRep(a)] = total;
     }
 
 
     /**
      * Checks if a specific tile on the board has any liberties.
      * @param board Board used in for the check.
-     * @param index Index on the board to check.
-     * @return Number of liberties around a single tile.
+     * @param row Row of the tile to check.
+     * @param column Column of the tile to check.
+     * @return True if any of the four tiles next to it are empty.
      */
-    private static boolean tileHasLiberty(Board board, BoardIndex index) {
-        for(int i = 0; i < 4; ++i) {
-            //Get vector of direction
-            final int dr = getdr(i);
-            final int dc = getdc(i);
-
-            final BoardIndex p = new BoardIndex(index.row + dr, index.column + dc);
-            try {
-                if (board.at(p) < 0) return true;
-            } catch(ArrayIndexOutOfBoundsException e) { /* do nothing */ }
-
-        }
-
+    private static boolean tileHasLiberty(Board board, int row, int column) {
+        final int cell = board.cell(row, column);
+        final int[] directions = board.getDirections();
+        //the border is not empty (-1), so edge tiles need no special case
+        for(int i = 0; i < 4; ++i)
+            if(board.get(cell + directions[i]) == -1) return true;
         return false;
     }
 
 
-    private static boolean groupHasLiberty(GoLogicCache cache, Board board, BoardIndex group, @Nullable BoardIndex ignore) {
-        //Go through all tiles and check their adjacent spaces for openings which are not the ignore tile
-        // return true as soon as we find a valid opening.
-        Set<BoardIndex> tiles = cache.groups.getSet(group);
-
-        for(BoardIndex tile : tiles) {
-            for(int i = 0; i < 4; ++i) {
-                //Get vector of direction
-                final int dr = getdr(i);
-                final int dc = getdc(i);
-
-                final BoardIndex t = new BoardIndex(tile.row + dr, tile.column + dc);
-                try {
-                    if (board.at(t) < 0 && !t.equals(ignore)) return true;
-                } catch(ArrayIndexOutOfBoundsException e) { /* do nothing */ }
-            }
-        }
-        return false;
+    /**
+     * Counts the empty tiles next to a tile.
+     * @param board Board used in for the check.
+     * @param cell Board cell of the tile.
+     * @return Number of empty tiles among the four next to it.
+     */
+    private static int emptyNeighbours(Board board, int cell) {
+        final int[] directions = board.getDirections();
+        int count = 0;
+        for(int i = 0; i < 4; ++i)
+            if(board.get(cell + directions[i]) == -1) count++;
+        return count;
     }
 
 
     /**
-     * Find all groups adjacent to a tile given a move command of the player and the position. This will return a set
-     * of all the group representatives.
+     * Find the groups next to a tile, one for each side of it. A group touching the tile on more than one side shows up
+     * more than once, which is how the liberty checks know how many of its liberties the tile is.
      * @param board Board to search.
-     * @param location The tile to scan around
-     * @return A set of group representatives for all unique, adjacent groups.
+     * @param cell Board cell of the tile to scan around.
+     * @param groups Array of 4 the board cell of the group representative on each side is written into, or -1
+     *               where there is no stone.
+     * @return The groups array.
      */
-    private Set<BoardIndex> findAdjGroups(GoLogicCache cache, Board board, BoardIndex location) {
-        //Use a tree set because it does not have to allocate an array and we have a max of 4 things to insert
-        Set<BoardIndex> groups = new TreeSet<>();
+    private static int[] findAdjGroups(GoLogicCache cache, Board board, int cell, int[] groups) {
+        final int[] directions = board.getDirections();
         for(int i = 0; i < 4; ++i) {
-            //Get vector of direction
-            final int dr = getdr(i);
-            final int dc = getdc(i);
-
-            //tile to check
-            BoardIndex index = new BoardIndex(
-                location.row + dr,
-                location.column + dc
-            );
-
-            try {
-                //if there is a piece of same player, find group representative
-                if(board.at(index) >= 0)
-                    groups.add(cache.groups.getRep(index));
-            } catch(ArrayIndexOutOfBoundsException e) { /* do nothing */ }
-        }
-        return groups;
-    }
-
+            //tile to check; the border is < 0 so it is skipped like an empty tile
+            final int t = cell + directions[i];
 
-    private static int getdr(int i) {
-        switch(i) {
-            case 0: return 1;
-            case 1: return -1;
-            default: return 0;
-        }
-    }
-
-    private static int getdc(int i) {
-        switch(i) {
-            case 2: return 1;
-            case 3: return -1;
-            default: return 0;
+            //if there is a piece of any player, find group representative
+            groups[i] = board.get(t) >= 0 ? cache.groups.getRep(t) : -1;
         }
+        return groups;
     }
 }
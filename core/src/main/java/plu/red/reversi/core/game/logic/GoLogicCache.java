@@ -1,14 +1,23 @@
 package plu.red.reversi.core.game.logic;
 
+import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
-import plu.red.reversi.core.util.UnionFind;
+import plu.red.reversi.core.util.IntUnionFind;
+
+import java.util.Arrays;
 
 /**
  * Cached information specific to GoLogic.
  * @see GameLogicCache
  */
 public class GoLogicCache extends GameLogicCache {
-    public final UnionFind<BoardIndex> groups;
+    /// Groups of stones, by the board cell of each stone (see Board.cell).
+    public final IntUnionFind groups;
+
+    /// Pseudo liberties of each group, indexed by the board cell of its representative: the number of (stone, empty
+    /// neighbour) pairs in the group, counting an empty tile once for every stone of the group next to it. This is 0
+    /// exactly when the group has no liberties. Kept up to date by GoLogic as stones are placed, joined and captured.
+    int[] liberties;
 
 
     /**
@@ -16,7 +25,8 @@ public class GoLogicCache extends GameLogicCache {
      */
     public GoLogicCache() {
         super();
-        groups = new UnionFind<>();
+        groups = new IntUnionFind(0);
+        liberties = new int[0];
     }
 
 
@@ -30,7 +40,24 @@ public class GoLogicCache extends GameLogicCache {
      */
     public GoLogicCache(GoLogicCache other) {
         super(other);
-        groups = new UnionFind<>(other.groups);
+        groups = new IntUnionFind(other.groups);
+        liberties = other.liberties.clone();
+    }
+
+
+    /**
+     * Replaces the contents of this cache with a copy of another one, so a cache can be restored without creating a
+     * new one. The same rules apply as for the copy constructor.
+     *
+     * @param other The cache to copy, which should be of the same subtype.
+     */
+    @Override
+    public void copyFrom(GameLogicCache other) {
+        super.copyFrom(other);
+        GoLogicCache gother = (GoLogicCache)other;
+        groups.copyFrom(gother.groups);
+        if(liberties.length != gother.liberties.length) liberties = gother.liberties.clone();
+        else System.arraycopy(gother.liberties, 0, liberties, 0, liberties.length);
     }
 
 
@@ -41,6 +68,34 @@ public class GoLogicCache extends GameLogicCache {
     public void invalidate() {
         super.invalidate();
         groups.clear();
+        Arrays.fill(liberties, 0);
+    }
+
+
+    /**
+     * Makes room in the groups and liberty counts for every cell of a board. Only clears anything out the first time
+     * the cache is used, or if it is used with a board of a different size.
+     * @param board Board the cache is used with.
+     * @return Pseudo liberties indexed by the board cell of each group's representative.
+     */
+    int[] prepare(Board board) {
+        final int cells = (board.size + 2) * (board.size + 2);
+        if(groups.capacity() != cells) groups.setCapacity(cells);
+        if(liberties.length != cells) liberties = new int[cells];
+        return liberties;
+    }
+
+
+    /**
+     * Finds how many liberties a group has, counting a tile once for every stone of the group next to it.
+     * @param board Board the cache is used with.
+     * @param group Any stone in the group.
+     * @return Number of pseudo liberties, which is 0 exactly when the group has no liberties.
+     */
+    public int getLiberties(Board board, BoardIndex group) {
+        final int cell = board.cell(group.row, group.column);
+        if(!groups.contains(cell)) return 0;
+        return liberties[groups.getRep(cell)];
     }
 
 
@@ -0,0 +1,107 @@
+package plu.red.reversi.core.game.logic;
+
+import plu.red.reversi.core.game.Board;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what a move changed so that GameLogic.unmakeMove() can put the board and cache back the way they were.
+ * Searches keep one of these for each ply and reuse it for every move made at that ply, which lets them walk the
+ * game tree on a single board instead of copying the board and cache for every position.
+ *
+ * Game logics which know exactly what a move changes list the tiles and their old owners. Any other logic falls back
+ * to keeping a full copy of the board and cache, which is reused between moves so it is only allocated once.
+ *
+ * Create these with GameLogic.createUndo() so the record matches the logic it is used with.
+ */
+public class MoveUndo {
+    /// Cells changed by the move (see Board.cell()), and the player who owned each one before.
+    private int[] cells = new int[16];
+    private int[] owners = new int[16];
+    private int count = 0;
+
+    /// Full copies used by logics which do not list their changes.
+    private Board board = null;
+    private GameLogicCache cache = null;
+
+
+    /**
+     * Constructs an empty undo record.
+     */
+    public MoveUndo() {}
+
+
+    /**
+     * Forgets the changes of the last move so the record can be used again.
+     */
+    void clear() {
+        count = 0;
+    }
+
+
+    /**
+     * Remembers that a tile is about to be changed.
+     * @param cell Cell position of the tile, see Board.cell().
+     * @param owner Player who owns the tile before the change, -1 if it was empty.
+     */
+    void addTile(int cell, int owner) {
+        if(count == cells.length) {
+            cells = Arrays.copyOf(cells, count * 2);
+            owners = Arrays.copyOf(owners, count * 2);
+        }
+        cells[count] = cell;
+        owners[count] = owner;
+        count++;
+    }
+
+
+    /**
+     * @return Number of tiles which were changed by the move.
+     */
+    public int getTileCount() {
+        return count;
+    }
+
+
+    /**
+     * @param i Which change to get, in the order they were made.
+     * @return Cell position of the change, see Board.cell().
+     */
+    public int getCell(int i) {
+        return cells[i];
+    }
+
+
+    /**
+     * @param i Which change to get, in the order they were made.
+     * @return Player who owned the tile before the move, -1 if it was empty.
+     */
+    public int getOwner(int i) {
+        return owners[i];
+    }
+
+
+    /**
+     * Keeps a full copy of the board and cache, reusing the copies from the last move if there are any.
+     */
+    void saveSnapshot(GameLogicCache cache, Board board) {
+        if(this.board == null || this.board.size != board.size)
+            this.board = new Board(board);
+        else
+            this.board.copyFrom(board);
+
+        if(this.cache == null || this.cache.getClass() != cache.getClass())
+            this.cache = cache.duplicate();
+        else
+            this.cache.copyFrom(cache);
+    }
+
+
+    /**
+     * Copies the board and cache saved by saveSnapshot() back over the ones given.
+     */
+    void restoreSnapshot(GameLogicCache cache, Board board) {
+        board.copyFrom(this.board);
+        cache.copyFrom(this.cache);
+    }
+}
@@ -0,0 +1,340 @@
+package plu.red.reversi.core.game.logic;
+
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+
+/**
+ * A Reversi position for an 8x8 board with exactly two players, stored as one 64-bit mask per player. Bit
+ * <code>row * 8 + column</code> is set in a player's mask if they own that tile.
+ *
+ * Move generation and flip calculation are done by shifting whole masks at once instead of walking the tiles one at a
+ * time. The static functions work directly on a pair of masks so they can be used by the search code without needing
+ * an instance; the instance keeps track of which player ID owns which mask.
+ *
+ * ReversiLogic will create one of these inside of ReversiLogicCache automatically when it can be used, so there is no
+ * need to construct this outside of the game logic.
+ */
+public final class ReversiBitboard {
+    public static final int SIZE = 8;
+    public static final int SQUARES = SIZE * SIZE;
+
+    /// Mask of every tile not in the first or last column. Runs across the board which move sideways can only pass
+    /// over these tiles, which stops shifts from wrapping to the next row.
+    private static final long NOT_EDGE_COLUMNS = 0x7E7E7E7E7E7E7E7EL;
+
+    /// The two player IDs which own the masks, -1 if the slot has not been claimed yet.
+    private final int[] players = {-1, -1};
+    /// The tiles owned by each player slot.
+    private final long[] discs = new long[2];
+
+
+    /**
+     * Constructs an empty bitboard with no players assigned to it yet.
+     */
+    public ReversiBitboard() {}
+
+
+    /**
+     * Copy constructor.
+     * @param other Bitboard to copy.
+     */
+    public ReversiBitboard(ReversiBitboard other) {
+        copyFrom(other);
+    }
+
+
+    /**
+     * Overwrites this bitboard with the contents of another one.
+     * @param other Bitboard to copy.
+     */
+    void copyFrom(ReversiBitboard other) {
+        players[0] = other.players[0];
+        players[1] = other.players[1];
+        discs[0] = other.discs[0];
+        discs[1] = other.discs[1];
+    }
+
+
+    /**
+     * Builds a bitboard from the current state of a board.
+     * @param board An 8x8 board to read.
+     * @return A bitboard of the same state, or null if the board is not 8x8 or contains more than two players.
+     */
+    public static ReversiBitboard fromBoard(Board board) {
+        if(board.size != SIZE) return null;
+
+        ReversiBitboard bitboard = new ReversiBitboard();
+        BoardIndex index = new BoardIndex();
+        for(index.row = 0; index.row < SIZE; index.row++)
+            for(index.column = 0; index.column < SIZE; index.column++)
+                if(!bitboard.set(square(index), board.at(index)))
+                    return null;
+
+        return bitboard;
+    }
+
+
+    /**
+     * Finds which mask belongs to a player.
+     * @param player Player ID to look for.
+     * @return The slot (0 or 1) of the player, or -1 if they do not have one.
+     */
+    public int slot(int player) {
+        if(player < 0) return -1;
+        if(players[0] == player) return 0;
+        if(players[1] == player) return 1;
+        return -1;
+    }
+
+
+    /**
+     * Finds which mask belongs to a player, and claims an open one for them if they do not have one.
+     * @param player Player ID to look for.
+     * @return The slot (0 or 1) of the player, or -1 if both slots belong to other players.
+     */
+    private int claimSlot(int player) {
+        int s = slot(player);
+        if(s >= 0) return s;
+        if(players[0] < 0) s = 0;
+        else if(players[1] < 0) s = 1;
+        else return -1;
+        players[s] = player;
+        return s;
+    }
+
+
+    /**
+     * Checks if the bitboard is able to represent a player. This is true as long as there is not already two other
+     * players using the masks.
+     * @param player Player ID to check.
+     * @return True if the player has, or could be given, a mask.
+     */
+    public boolean supports(int player) {
+        return player >= 0 && (slot(player) >= 0 || players[0] < 0 || players[1] < 0);
+    }
+
+
+    /**
+     * Sets the owner of a single tile.
+     * @param square Tile to change, in the range [0, 64).
+     * @param player New owner of the tile, or -1 to clear it.
+     * @return False if the player could not be represented (a third player), in which case nothing is changed.
+     */
+    public boolean set(int square, int player) {
+        final long bit = 1L << square;
+        if(player < 0) {
+            discs[0] &= ~bit;
+            discs[1] &= ~bit;
+            return true;
+        }
+
+        int s = claimSlot(player);
+        if(s < 0) return false;
+        discs[s] |= bit;
+        discs[1 - s] &= ~bit;
+        return true;
+    }
+
+
+    /**
+     * Retrieves the tiles owned by a player.
+     * @param player Player ID.
+     * @return Mask of the tiles owned by the player, 0 if they are not represented.
+     */
+    public long discs(int player) {
+        int s = slot(player);
+        return s < 0 ? 0 : discs[s];
+    }
+
+
+    /**
+     * Retrieves the tiles owned by the opponent of a player.
+     * @param player Player ID.
+     * @return Mask of the tiles owned by the other player.
+     */
+    public long opponentDiscs(int player) {
+        int s = slot(player);
+        return s < 0 ? (discs[0] | discs[1]) : discs[1 - s];
+    }
+
+
+    /**
+     * @return Mask of all empty tiles.
+     */
+    public long empty() {
+        return ~(discs[0] | discs[1]);
+    }
+
+
+    /**
+     * Retrieves the ID of the other player in the game.
+     * @param player Player ID.
+     * @return ID of the opponent, or -1 if it is not known yet.
+     */
+    public int opponent(int player) {
+        int s = slot(player);
+        return s < 0 ? -1 : players[1 - s];
+    }
+
+
+    /**
+     * Calculates all the valid moves of a player.
+     * @param player Player ID.
+     * @return Mask of the tiles the player could play on.
+     */
+    public long moves(int player) {
+        return moves(discs(player), opponentDiscs(player));
+    }
+
+
+    /**
+     * Calculates which tiles would be flipped if a player played on a tile.
+     * @param player Player ID.
+     * @param square Tile to play on, in the range [0, 64).
+     * @return Mask of the tiles which would be flipped, 0 if it is not a valid move.
+     */
+    public long flips(int player, int square) {
+        return flips(discs(player), opponentDiscs(player), square);
+    }
+
+
+    /**
+     * Counts the number of tiles a player owns.
+     * @param player Player ID.
+     * @return Number of tiles owned by the player.
+     */
+    public int count(int player) {
+        return Long.bitCount(discs(player));
+    }
+
+
+    /**
+     * Plays a move for a player. This does not check that the move is valid.
+     * @param player Player making the move.
+     * @param square Tile being played on.
+     * @param flips Tiles to flip, as returned by flips().
+     */
+    public void play(int player, int square, long flips) {
+        int s = claimSlot(player);
+        discs[s] |= flips | (1L << square);
+        discs[1 - s] &= ~flips;
+    }
+
+
+    /**
+     * Converts a board index to the bit used for it.
+     * @param index Index on an 8x8 board.
+     * @return Square in the range [0, 64).
+     */
+    public static int square(BoardIndex index) {
+        return index.row * SIZE + index.column;
+    }
+
+
+    /**
+     * Converts a bit position back to a board index.
+     * @param square Square in the range [0, 64).
+     * @return Matching board index.
+     */
+    public static BoardIndex index(int square) {
+        return new BoardIndex(square / SIZE, square % SIZE);
+    }
+
+
+    /**
+     * Calculates all valid moves for the owner of <code>own</code>.
+     * @param own Tiles of the player to move.
+     * @param opp Tiles of their opponent.
+     * @return Mask of the tiles which can be played on.
+     */
+    public static long moves(long own, long opp) {
+        //run along each direction from our own tiles while we are on top of opponent tiles
+        final long inner = opp & NOT_EDGE_COLUMNS;
+        final long moves =
+                runUp(own, inner, 1) | runDown(own, inner, 1) |   //east and west
+                runUp(own, opp, 8) | runDown(own, opp, 8) |       //south and north
+                runUp(own, inner, 7) | runDown(own, inner, 7) |   //south-west and north-east
+                runUp(own, inner, 9) | runDown(own, inner, 9);    //south-east and north-west
+        return moves & ~(own | opp);
+    }
+
+
+    /**
+     * Finds the tiles just past a run of <code>over</code> tiles which starts next to one of the <code>from</code>
+     * tiles, moving <code>n</code> bits up at a time.
+     */
+    private static long runUp(long from, long over, int n) {
+        long t = (from << n) & over;
+        t |= (t << n) & over;
+        t |= (t << n) & over;
+        t |= (t << n) & over;
+        t |= (t << n) & over;
+        t |= (t << n) & over;
+        return t << n;
+    }
+
+
+    /**
+     * Finds the tiles just past a run of <code>over</code> tiles which starts next to one of the <code>from</code>
+     * tiles, moving <code>n</code> bits down at a time.
+     */
+    private static long runDown(long from, long over, int n) {
+        long t = (from >>> n) & over;
+        t |= (t >>> n) & over;
+        t |= (t >>> n) & over;
+        t |= (t >>> n) & over;
+        t |= (t >>> n) & over;
+        t |= (t >>> n) & over;
+        return t >>> n;
+    }
+
+
+    /**
+     * Calculates which tiles would be flipped by playing on <code>square</code>.
+     * @param own Tiles of the player to move.
+     * @param opp Tiles of their opponent.
+     * @param square Tile being played on.
+     * @return Mask of the tiles which would be flipped, 0 if it is not a valid move.
+     */
+    public static long flips(long own, long opp, int square) {
+        final long origin = 1L << square;
+        if(((own | opp) & origin) != 0) return 0;
+
+        final long inner = opp & NOT_EDGE_COLUMNS;
+        return lineUp(origin, own, inner, 1) | lineDown(origin, own, inner, 1) |
+                lineUp(origin, own, opp, 8) | lineDown(origin, own, opp, 8) |
+                lineUp(origin, own, inner, 7) | lineDown(origin, own, inner, 7) |
+                lineUp(origin, own, inner, 9) | lineDown(origin, own, inner, 9);
+    }
+
+
+    /**
+     * Finds the run of <code>over</code> tiles next to <code>origin</code> moving <code>n</code> bits up at a time.
+     * @return The run, or 0 if it is not capped by one of the <code>own</code> tiles.
+     */
+    private static long lineUp(long origin, long own, long over, int n) {
+        long line = 0;
+        long t = origin << n;
+        while((t & over) != 0) {
+            line |= t;
+            t <<= n;
+        }
+        //only counts if the line is capped by one of our own
+        return (t & own) != 0 ? line : 0;
+    }
+
+
+    /**
+     * Finds the run of <code>over</code> tiles next to <code>origin</code> moving <code>n</code> bits down at a time.
+     * @return The run, or 0 if it is not capped by one of the <code>own</code> tiles.
+     */
+    private static long lineDown(long origin, long own, long over, int n) {
+        long line = 0;
+        long t = origin >>> n;
+        while((t & over) != 0) {
+            line |= t;
+            t >>>= n;
+        }
+        return (t & own) != 0 ? line : 0;
+    }
+}
@@ -26,6 +26,9 @@ import java.util.List;
  *
  * For any change made to the board, the registered IBoardUpdateListeners will be updated
  * by default, and you can manually specify otherwise in each case.
+ *
+ * Two player games on an 8x8 board are automatically run on a ReversiBitboard kept in the
+ * ReversiLogicCache; all other games walk the board directly.
  */
 public class ReversiLogic extends GameLogic {
     public final static int[] VALID_PLAYER_COUNTS = {2, 4};
@@ -109,6 +112,8 @@ public class ReversiLogic extends GameLogic {
         rcache.addToScore(board.at(command.position), -1); //decrement score of old player
         rcache.addToScore(command.playerID, 1); //inc new player score
 
+        syncBitboard(rcache, ReversiBitboard.square(command.position), command.playerID);
+
         return super.apply(cache, board, command, notify, record);
     }
 
@@ -124,7 +129,10 @@ public class ReversiLogic extends GameLogic {
      */
     @Override
     public GameLogic play(GameLogicCache cache, Board board, MoveCommand command, boolean notify, boolean record) throws InvalidParameterException {
-        Collection<BoardIndex> indexes = calculateFlipsFromBoard(command.position, command.playerID, board);
+        ReversiBitboard bitboard = getBitboard(cache, board, command.playerID);
+        Collection<BoardIndex> indexes = bitboard != null ?
+                toIndexes(bitboard.flips(command.playerID, ReversiBitboard.square(command.position))) :
+                calculateFlipsFromBoard(command.position, command.playerID, board);
 
         if(indexes.isEmpty())
             throw new InvalidParameterException("Invalid play by player " + command.playerID + " to " + command.position);
@@ -142,12 +150,103 @@ public class ReversiLogic extends GameLogic {
             update.added.add(command.position);
             updateBoardListeners(update);
         }
-        if(record) game.getHistory().addCommand(command);
+        if(record) record(cache, board, command);
 
         return this;
     }
 
 
+    /**
+     * Constructs a new undo record of the appropriate subtype for makeMove and unmakeMove.
+     * @return A new MoveUndo of the appropriate subtype.
+     */
+    @Override
+    public MoveUndo createUndo() {
+        return new ReversiMoveUndo();
+    }
+
+
+    /**
+     * Make a move on the board, remembering what was changed so it can be taken back with unmakeMove. This will
+     * never notify listeners or update history, it is meant for searching through moves on a private board.
+     *
+     * @param command Represents the move which is to be played.
+     * @param board Board to apply commands to.
+     * @param undo Record to fill in, created by createUndo; any previous contents are replaced.
+     * @throws InvalidParameterException If it is an invalid move, no move will be made.
+     */
+    @Override
+    public void makeMove(GameLogicCache cache, Board board, MoveCommand command, MoveUndo undo) throws InvalidParameterException {
+        ReversiLogicCache rcache = (ReversiLogicCache)cache;
+        ReversiMoveUndo rundo = (ReversiMoveUndo)undo;
+        if(rcache == null || rundo == null) throw new InvalidParameterException("Invalid cache or undo passed to makeMove in ReversiLogic.");
+
+        final int player = command.playerID;
+        final BoardIndex position = command.position;
+        ReversiBitboard bitboard = getBitboard(cache, board, player);
+        rundo.clear();
+        rundo.saveBitboard(rcache);
+
+        if(bitboard != null) {
+            final int square = ReversiBitboard.square(position);
+            final long flips = bitboard.flips(player, square);
+            if(flips == 0)
+                throw new InvalidParameterException("Invalid play by player " + player + " to " + position);
+
+            //play the whole move on the bitboard at once, then bring the board up to date
+            bitboard.play(player, square, flips);
+            setTile(rcache, board, rundo, board.tileToCell(square), player);
+            for(long mask = flips; mask != 0; mask &= mask - 1)
+                setTile(rcache, board, rundo, board.tileToCell(Long.numberOfTrailingZeros(mask)), player);
+            return;
+        }
+
+        final int origin = board.cell(position.row, position.column);
+        if(board.at(position) != -1 || !hasFlips(board, origin, player))
+            throw new InvalidParameterException("Invalid play by player " + player + " to " + position);
+
+        setTile(rcache, board, rundo, origin, player);
+        syncBitboard(rcache, board.cellToTile(origin), player);
+        for(int direction : board.getDirections()) {
+            //find the end of the run of other players pieces, if it is capped by one of ours
+            int end = origin + direction;
+            int v;
+            while((v = board.get(end)) >= 0 && v != player) end += direction;
+            if(v != player) continue;
+
+            for(int cell = origin + direction; cell != end; cell += direction) {
+                setTile(rcache, board, rundo, cell, player);
+                syncBitboard(rcache, board.cellToTile(cell), player);
+            }
+        }
+    }
+
+
+    /**
+     * Take back a move made by makeMove. Moves must be taken back in the reverse order they were made, and the
+     * board and cache must not have been changed in any other way since.
+     *
+     * @param board Board the move was made on.
+     * @param undo Record filled in by makeMove.
+     */
+    @Override
+    public void unmakeMove(GameLogicCache cache, Board board, MoveUndo undo) {
+        ReversiLogicCache rcache = (ReversiLogicCache)cache;
+        ReversiMoveUndo rundo = (ReversiMoveUndo)undo;
+        if(rcache == null || rundo == null) throw new InvalidParameterException("Invalid cache or undo passed to unmakeMove in ReversiLogic.");
+
+        for(int i = rundo.getTileCount() - 1; i >= 0; i--) {
+            final int cell = rundo.getCell(i);
+            final int owner = rundo.getOwner(i);
+
+            rcache.addToScore(board.get(cell), -1);
+            rcache.addToScore(owner, 1);
+            board.set(cell, owner);
+        }
+        rundo.restoreBitboard(rcache);
+    }
+
+
     /**
      * Checks the board to see if the move attempted is valid.
      * Prefer calling play and handling an exception than checking
@@ -158,13 +257,86 @@ public class ReversiLogic extends GameLogic {
      */
     @Override
     public boolean isValidMove(GameLogicCache cache, Board board, MoveCommand command) {
+        ReversiBitboard bitboard = getBitboard(cache, board, command.playerID);
+        if(bitboard != null)
+            return bitboard.flips(command.playerID, ReversiBitboard.square(command.position)) != 0;
+
         return (
                 board.at(command.position) == -1 &&
-                !calculateFlipsFromBoard(command.position, command.playerID, board).isEmpty()
+                hasFlips(board, board.cell(command.position.row, command.position.column), command.playerID)
         );
     }
 
 
+    /**
+     * Find the different moves that could be made without creating a set of them. This is the version to use when
+     * searching; the same array can be passed in over and over.
+     *
+     * @param player Integer Player ID to check for
+     * @param board Board to apply commands to.
+     * @param moves Array the moves are written into as tile numbers (row * size + column), in ascending order. It
+     *              must have room for every tile on the board.
+     * @return Number of moves written into the array.
+     */
+    @Override
+    public int getValidMoves(GameLogicCache cache, Board board, int player, int[] moves) {
+        int count = 0;
+        ReversiBitboard bitboard = getBitboard(cache, board, player);
+        if(bitboard != null) {
+            for(long mask = bitboard.moves(player); mask != 0; mask &= mask - 1)
+                moves[count++] = Long.numberOfTrailingZeros(mask);
+            return count;
+        }
+
+        for(int row = 0, tile = 0; row < board.size; row++) {
+            final int start = board.cell(row, 0);
+            for(int cell = start; cell < start + board.size; cell++, tile++)
+                if(board.get(cell) == -1 && hasFlips(board, cell, player))
+                    moves[count++] = tile;
+        }
+        return count;
+    }
+
+
+    /**
+     * Find the different moves that could be made as a mask, where bit <code>row * size + column</code> is set if
+     * that tile can be played on. Only works for boards with at most 64 tiles.
+     *
+     * @param player Integer Player ID to check for
+     * @param board Board to apply commands to.
+     * @return Mask of the valid moves.
+     * @throws IllegalArgumentException If the board has more than 64 tiles.
+     */
+    @Override
+    public long getValidMoveMask(GameLogicCache cache, Board board, int player) throws IllegalArgumentException {
+        ReversiBitboard bitboard = getBitboard(cache, board, player);
+        if(bitboard == null) return super.getValidMoveMask(cache, board, player);
+        return bitboard.moves(player);
+    }
+
+
+    /**
+     * Checks if the given player has at least one available move. Prefer this over getValidMoves as this can be
+     * much more efficient when only checking true/false.
+     * @param player The player to check.
+     * @param board Board to apply commands to.
+     * @return True if the player is able to play, else false.
+     */
+    @Override
+    public boolean canPlay(GameLogicCache cache, Board board, int player) {
+        ReversiBitboard bitboard = getBitboard(cache, board, player);
+        if(bitboard != null) return bitboard.moves(player) != 0;
+
+        for(int row = 0; row < board.size; row++) {
+            final int start = board.cell(row, 0);
+            for(int cell = start; cell < start + board.size; cell++)
+                if(board.get(cell) == -1 && hasFlips(board, cell, player))
+                    return true;
+        }
+        return false;
+    }
+
+
     /**
      * Returns the score of the Player ID passed in
      *
@@ -179,10 +351,9 @@ public class ReversiLogic extends GameLogic {
         if(rcache == null) throw new InvalidParameterException("Invalid cache passed to getScore in ReversiLogic.");
 
         //see if the cache has the score
-        Integer value = rcache.score.get(player);
-        if(value != null) return value;
+        if(rcache.hasScore(player)) return rcache.getScore(player);
         //make sure we set the value to prevent searching with future calls even if the tile does not exist
-        cache.score.put(player, 0);
+        rcache.setScore(player, 0);
 
         //go ahead and calculate the score for all players
         for(BoardIndex i : board) {
@@ -190,7 +361,7 @@ public class ReversiLogic extends GameLogic {
             if(v < 0) continue; //skip if invalid
             rcache.addToScore(v, 1);
         }
-        return cache.score.get(player);
+        return rcache.getScore(player);
     }
 
 
@@ -241,29 +412,97 @@ public class ReversiLogic extends GameLogic {
      */
     protected Collection<BoardIndex> calculateFlipsFromBoard(BoardIndex origin, int playerId, Board board) {
         List<BoardIndex> flipped = new LinkedList<>();
+        final int start = board.cell(origin.row, origin.column);
 
-        for(int i = 0; i < 8; i++) {
-            List<BoardIndex> rowFlipped = new LinkedList<>();
-            int dr = i < 3 ? -1 : (i > 4 ? 1 : 0);  //change in row
-            int dc = i % 3 == 0 ? -1 : (i % 3 == 1 ? 1 : 0); //change in column
-
-            try {
-                int move = 1;
-                BoardIndex index = new BoardIndex(origin.row + dr, origin.column + dc);
-                while(board.at(index) != playerId) {
-                    if(board.at(index) == -1)
-                        throw new Throwable();
-                    rowFlipped.add(index);
-                    move++;
-                    index = new BoardIndex(origin.row + dr * move, origin.column + dc * move);
-                }
-                flipped.addAll(rowFlipped);
-            }
-            catch(Throwable e) {
-                // deliberately empty
-            }
+        //walk out until we leave the other players pieces; the border and empty tiles are both < 0
+        for(int direction : board.getDirections()) {
+            int end = start + direction;
+            int v;
+            while((v = board.get(end)) >= 0 && v != playerId) end += direction;
+            if(v != playerId) continue;
+
+            for(int cell = start + direction; cell != end; cell += direction)
+                flipped.add(new BoardIndex(board.row(cell), board.column(cell)));
         }
 
         return flipped;
     }
+
+
+    /**
+     * Checks if placing a piece on a tile would flip anything, by walking out from it in every direction. This is the
+     * same check as calculateFlipsFromBoard without building the list of flips.
+     * @param origin Cell position of the tile being played on.
+     * @param player The player placing the piece.
+     * @return True if at least one piece would be flipped.
+     */
+    private static boolean hasFlips(Board board, int origin, int player) {
+        for(int direction : board.getDirections()) {
+            //skip over the other players pieces and see if one of ours is at the end
+            int cell = origin + direction;
+            int v = board.get(cell);
+            if(v < 0 || v == player) continue;
+            do {
+                cell += direction;
+                v = board.get(cell);
+            } while(v >= 0 && v != player);
+            if(v == player) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Changes a tile for makeMove, keeping the score up to date and remembering the old owner. The bitboard is left
+     * alone.
+     */
+    private static void setTile(ReversiLogicCache cache, Board board, MoveUndo undo, int cell, int player) {
+        final int old = board.get(cell);
+        undo.addTile(cell, old);
+        cache.addToScore(old, -1);
+        cache.addToScore(player, 1);
+        board.set(cell, player);
+    }
+
+
+    /**
+     * Keeps the bitboard in sync with a tile changed outside of the bitboard, and stops using it if a third player
+     * shows up.
+     * @param square Tile number of the change, which is the bitboard square on an 8x8 board.
+     */
+    private static void syncBitboard(ReversiLogicCache cache, int square, int player) {
+        if(cache.bitboard != null && !cache.bitboard.set(square, player)) {
+            cache.bitboard = null;
+            cache.bitboardUnsupported = true;
+        }
+    }
+
+
+    /**
+     * Retrieves the bitboard for a position if it is able to be used for the given player.
+     * @param cache Cache belonging to the board.
+     * @param board Board being checked.
+     * @param player Player who will be moving.
+     * @return The bitboard, or null if the plain board should be used instead.
+     */
+    private static ReversiBitboard getBitboard(GameLogicCache cache, Board board, int player) {
+        if(!(cache instanceof ReversiLogicCache)) return null;
+        ReversiBitboard bitboard = ((ReversiLogicCache)cache).getBitboard(board);
+        return bitboard != null && bitboard.supports(player) ? bitboard : null;
+    }
+
+
+    /**
+     * Converts a mask of tiles into a list of board indexes.
+     * @param mask Mask of an 8x8 board.
+     * @return The board indexes of the set bits.
+     */
+    private static List<BoardIndex> toIndexes(long mask) {
+        List<BoardIndex> list = new LinkedList<>();
+        while(mask != 0) {
+            list.add(ReversiBitboard.index(Long.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+        return list;
+    }
 }
@@ -1,15 +1,41 @@
 package plu.red.reversi.core.game.logic;
 
+import plu.red.reversi.core.game.Board;
+
 /**
  * Cached information specific to Reversi.
+ *
+ * For two player games on an 8x8 board, this also keeps a ReversiBitboard in sync with the board which ReversiLogic
+ * will use instead of walking the board tile by tile.
  * @see GameLogicCache
  */
 public class ReversiLogicCache extends GameLogicCache {
+    /// Whether the bitboard is allowed to be used at all.
+    private final boolean allowBitboard;
+    /// The bitboard, null if it has not been built yet or if it cannot be used for the current board.
+    ReversiBitboard bitboard;
+    /// True if the board was found to not be representable as a bitboard, so we do not keep re-scanning it.
+    boolean bitboardUnsupported;
+
+
     /**
      * Basic constructor which initializes values to their defaults.
      */
     public ReversiLogicCache() {
+        this(true);
+    }
+
+
+    /**
+     * Constructor which allows turning off the bitboard. This is mostly useful to compare against the plain board
+     * implementation.
+     * @param allowBitboard False to never use a bitboard with this cache.
+     */
+    public ReversiLogicCache(boolean allowBitboard) {
         super();
+        this.allowBitboard = allowBitboard;
+        bitboard = null;
+        bitboardUnsupported = false;
     }
 
 
@@ -23,6 +49,56 @@ public class ReversiLogicCache extends GameLogicCache {
      */
     public ReversiLogicCache(ReversiLogicCache other) {
         super(other);
+        allowBitboard = other.allowBitboard;
+        bitboard = other.bitboard == null ? null : new ReversiBitboard(other.bitboard);
+        bitboardUnsupported = other.bitboardUnsupported;
+    }
+
+
+    /**
+     * Replaces the contents of this cache with a copy of another one, so a cache can be restored without creating a
+     * new one. The same rules apply as for the copy constructor.
+     *
+     * @param other The cache to copy, which should be of the same subtype.
+     */
+    @Override
+    public void copyFrom(GameLogicCache other) {
+        super.copyFrom(other);
+        ReversiLogicCache rother = (ReversiLogicCache)other;
+        if(rother.bitboard == null)
+            bitboard = null;
+        else if(bitboard == null)
+            bitboard = new ReversiBitboard(rother.bitboard);
+        else
+            bitboard.copyFrom(rother.bitboard);
+        bitboardUnsupported = rother.bitboardUnsupported;
+    }
+
+
+    /**
+     * Invalidate the cache. Clears it out and forces it to be regenerated. Use this if the board is changed outside
+     * of a game logic function.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        bitboard = null;
+        bitboardUnsupported = false;
+    }
+
+
+    /**
+     * Retrieves the bitboard for the board this cache belongs to, building it if needed.
+     * @param board Board this cache is for.
+     * @return The bitboard, or null if the board cannot be represented by one.
+     */
+    public ReversiBitboard getBitboard(Board board) {
+        if(bitboard != null) return bitboard;
+        if(!allowBitboard || bitboardUnsupported) return null;
+
+        bitboard = ReversiBitboard.fromBoard(board);
+        bitboardUnsupported = bitboard == null;
+        return bitboard;
     }
 
 
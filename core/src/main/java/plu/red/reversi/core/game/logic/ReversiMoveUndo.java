@@ -0,0 +1,40 @@
+package plu.red.reversi.core.game.logic;
+
+/**
+ * Undo record for ReversiLogic. On top of the changed tiles, this keeps the state of the cache's bitboard so it can
+ * be restored in one step instead of un-flipping it tile by tile.
+ * @see MoveUndo
+ */
+public class ReversiMoveUndo extends MoveUndo {
+    /// The cache's bitboard before the move, or null if it did not have one.
+    private ReversiBitboard bitboard = null;
+    private boolean bitboardUnsupported = false;
+    /// Contents of the bitboard before the move.
+    private final ReversiBitboard saved = new ReversiBitboard();
+
+
+    /**
+     * Constructs an empty undo record.
+     */
+    public ReversiMoveUndo() {}
+
+
+    /**
+     * Remembers the bitboard state of a cache.
+     */
+    void saveBitboard(ReversiLogicCache cache) {
+        bitboard = cache.bitboard;
+        bitboardUnsupported = cache.bitboardUnsupported;
+        if(bitboard != null) saved.copyFrom(bitboard);
+    }
+
+
+    /**
+     * Puts back the bitboard state saved by saveBitboard().
+     */
+    void restoreBitboard(ReversiLogicCache cache) {
+        cache.bitboard = bitboard;
+        cache.bitboardUnsupported = bitboardUnsupported;
+        if(bitboard != null) bitboard.copyFrom(saved);
+    }
+}
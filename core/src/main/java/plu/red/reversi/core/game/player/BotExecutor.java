@@ -0,0 +1,355 @@
+package plu.red.reversi.core.game.player;
+
+import plu.red.reversi.core.SettingsLoader;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.util.DataMap;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the searches of every BotPlayer on a fixed number of worker threads, instead of a new thread for each move.
+ * Searches which cannot start straight away wait in a queue of limited length, and submitting to a full queue is
+ * rejected so a busy server cannot pile up work without end.
+ *
+ * Searches are stopped cooperatively: each one comes with hooks to stop it (keeping the best move found so far) and
+ * to cancel it (throwing its result away), which the search polls for. A search may also be given a deadline, after
+ * which it is stopped; the deadline counts from when a worker starts it, so time spent waiting in the queue does not
+ * eat into it.
+ *
+ * Searches which are only worth running on an idle worker, like pondering, give their worker up to a real search
+ * which would otherwise have to wait: the oldest of them is cancelled to make room.
+ *
+ * The processors are split evenly between the workers. Each worker has a ForkJoinPool of processors / workers threads
+ * for its search to split the work on (see getSearchPool()), so however many searches run at once they never use
+ * more threads than there are processors. With the default of one worker per processor every search runs on its
+ * worker alone; fewer workers run fewer searches at once, but each of them searches faster.
+ *
+ * The workers are daemon threads, so they never keep the program running.
+ */
+public class BotExecutor {
+    /// Number of searches which can wait for a worker when none is set in the client settings.
+    public static final int DEFAULT_QUEUE_DEPTH = 64;
+
+    private static BotExecutor shared = null;
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledThreadPoolExecutor timer;
+    /// Searches started by submitIfIdle which have not finished, oldest first.
+    private final Queue<Search> idleSearches = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Creates an executor with its own threads. Most code should use getShared() instead.
+     * @param workers Number of searches which can run at once.
+     * @param queueDepth Number of searches which can wait for a worker.
+     */
+    public BotExecutor(int workers, int queueDepth) {
+        workers = Math.max(1, workers);
+        timer = new ScheduledThreadPoolExecutor(1, threadFactory("bot-deadline-"));
+        try {
+            timer.setRemoveOnCancelPolicy(true);
+        } catch(NoSuchMethodError e) {
+            //Android before API 21 keeps cancelled deadlines queued until they would have gone off, which is harmless
+        }
+        final int searchThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+        final AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueDepth)),
+                task -> new Worker(task, "bot-search-" + count.incrementAndGet(), searchThreads)) {
+            @Override
+            protected void terminated() {
+                //searches still queued at shutdown need the timer for their deadlines, so it goes last
+                timer.shutdown();
+            }
+        };
+    }
+
+
+    /**
+     * Gets the executor shared by every BotPlayer, creating it the first time it is asked for. Its size comes from the
+     * client settings: GLOBAL_BOT_WORKERS (0 for one worker per processor) and GLOBAL_BOT_QUEUE_DEPTH.
+     * @return The shared executor.
+     */
+    public static synchronized BotExecutor getShared() {
+        if(shared == null) {
+            final DataMap settings = SettingsLoader.INSTANCE.getClientSettings();
+            int workers = settings.get(SettingsLoader.GLOBAL_BOT_WORKERS, 0);
+            if(workers <= 0) workers = Runtime.getRuntime().availableProcessors();
+            shared = new BotExecutor(workers, settings.get(SettingsLoader.GLOBAL_BOT_QUEUE_DEPTH, DEFAULT_QUEUE_DEPTH));
+        }
+        return shared;
+    }
+
+
+    /**
+     * Replaces the shared executor, such as to resize it. Searches already running on the old one carry on, but it
+     * takes no more.
+     * @param executor Executor for every BotPlayer to use from now on.
+     */
+    public static synchronized void setShared(BotExecutor executor) {
+        if(shared != null && shared != executor) shared.shutdown();
+        shared = executor;
+    }
+
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    /**
+     * Gets the pool a search running on a worker should split its work on, as its share of the processors. Searches
+     * should ask for it once they are running rather than when they are submitted, since it belongs to the worker
+     * which runs them.
+     * @return The pool of the worker this is called from, or null if the search should stay on a single thread: when
+     * there is a worker for every processor, when this platform has no ForkJoinPool, or when this is not a worker.
+     */
+    public static ForkJoinPool getSearchPool() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Worker ? ((Worker)thread).getSearchPool() : null;
+    }
+
+
+    /**
+     * Queues a search to run on the next free worker. If every worker is busy and one of them is running a search
+     * from submitIfIdle, that search is cancelled to make room.
+     * @param task The search, which should return once either hook has been called.
+     * @param stop Called if the deadline passes while the search is running, to finish it early.
+     * @param cancel Called by Search.cancel() while the search is running or queued, to abandon it.
+     * @param deadlineMillis Time the search is allowed once it starts in milliseconds, or 0 for no limit.
+     * @return Handle to cancel the search with.
+     * @throws RejectedExecutionException If the queue is full or the executor has been shut down.
+     */
+    public Search submit(Runnable task, Runnable stop, Runnable cancel, long deadlineMillis)
+            throws RejectedExecutionException {
+        if(isBusy()) {
+            final Search idle = idleSearches.poll();
+            if(idle != null) idle.cancel();
+        }
+        return start(new Search(stop, cancel, null), task, deadlineMillis);
+    }
+
+
+    /**
+     * Hands a search to the pool.
+     */
+    private Search start(final Search search, final Runnable task, final long deadlineMillis) {
+        search.future = pool.submit(() -> {
+            try {
+                if(deadlineMillis > 0) search.startDeadline(timer, deadlineMillis);
+                task.run();
+            } finally {
+                search.finish();
+            }
+        });
+        return search;
+    }
+
+
+    /**
+     * @return True if a new search would have to wait for a worker.
+     */
+    private boolean isBusy() {
+        return pool.getActiveCount() + pool.getQueue().size() >= pool.getMaximumPoolSize();
+    }
+
+
+    /**
+     * Queues a search only if a worker is free to start it straight away, for searches which are only worth doing
+     * when there is nothing else to do, like pondering. The search is cancelled if a search from submit() needs its
+     * worker.
+     * @param task The search, which should return once cancel has been called.
+     * @param cancel Called by Search.cancel() while the search is running, to abandon it.
+     * @return Handle to cancel the search with, or null if every worker is busy.
+     */
+    public Search submitIfIdle(Runnable task, Runnable cancel) {
+        if(isBusy()) return null;
+        final Search search;
+        try {
+            search = start(new Search(cancel, cancel, idleSearches), task, 0);
+        } catch(RejectedExecutionException e) {
+            return null;
+        }
+        //only added once it has a future, since submit() on another thread may cancel it as soon as it is in
+        idleSearches.add(search);
+        //finish() takes it out, but may already have run before it went in
+        if(search.isDone()) idleSearches.remove(search);
+        return search;
+    }
+
+
+    /**
+     * @return Number of workers.
+     */
+    public int getWorkers() {
+        return pool.getMaximumPoolSize();
+    }
+
+
+    /**
+     * @return Number of searches which are running right now.
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+
+    /**
+     * @return Number of searches waiting for a worker.
+     */
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+
+    /**
+     * Stops taking searches. Those already queued or running are left to finish, still with their deadlines.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+
+    /**
+     * Thread which runs searches, with the pool they split their work on.
+     */
+    private static final class Worker extends Thread {
+        private final int searchThreads;
+        /// Only used from this thread, so needs no locking.
+        private ForkJoinPool searchPool = null;
+
+
+        private Worker(Runnable task, String name, int searchThreads) {
+            super(task, name);
+            this.searchThreads = searchThreads;
+            setDaemon(true);
+        }
+
+
+        private ForkJoinPool getSearchPool() {
+            if(searchPool == null && searchThreads > 1 && ReversiMinimax.isParallelSupported())
+                searchPool = new ForkJoinPool(searchThreads);
+            return searchPool;
+        }
+
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                if(searchPool != null) searchPool.shutdown();
+            }
+        }
+    }
+
+
+    /**
+     * A search which has been submitted to a BotExecutor.
+     */
+    public static final class Search {
+        private final Runnable stop;
+        private final Runnable cancel;
+        /// Queue of idle searches this one is in, or null if it is a normal search.
+        private final Queue<Search> idle;
+        private volatile Future<?> future;
+        private volatile ScheduledFuture<?> deadline = null;
+        private volatile boolean cancelled = false;
+        private volatile boolean expired = false;
+        private volatile boolean finished = false;
+
+
+        private Search(Runnable stop, Runnable cancel, Queue<Search> idle) {
+            this.stop = stop;
+            this.cancel = cancel;
+            this.idle = idle;
+        }
+
+
+        /**
+         * Abandons the search. If it has not started it never will; if it is running it is told to stop and throw its
+         * result away. Does not wait for it to finish.
+         */
+        public void cancel() {
+            if(cancelled || finished) return;
+            cancelled = true;
+            if(idle != null) idle.remove(this);
+            final ScheduledFuture<?> d = deadline;
+            if(d != null) d.cancel(false);
+            future.cancel(false);
+            cancel.run();
+        }
+
+
+        /**
+         * Called by the worker as the search starts, to start counting down its deadline.
+         */
+        private void startDeadline(ScheduledThreadPoolExecutor timer, long deadlineMillis) {
+            final ScheduledFuture<?> d = timer.schedule(this::expire, deadlineMillis, TimeUnit.MILLISECONDS);
+            deadline = d;
+            //cancelled while the deadline was being set up, which would have missed it
+            if(cancelled) d.cancel(false);
+        }
+
+
+        /**
+         * Called when the deadline passes.
+         */
+        private void expire() {
+            if(cancelled || finished) return;
+            expired = true;
+            stop.run();
+        }
+
+
+        /**
+         * Called by the worker once the search has returned.
+         */
+        private void finish() {
+            finished = true;
+            if(idle != null) idle.remove(this);
+            final ScheduledFuture<?> d = deadline;
+            if(d != null) d.cancel(false);
+        }
+
+
+        /**
+         * @return True if cancel() was called before the search finished.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+
+        /**
+         * @return True if the search was stopped because its deadline passed.
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+
+        /**
+         * @return True if the search has returned, or was cancelled before it started.
+         */
+        public boolean isDone() {
+            return finished || future.isCancelled();
+        }
+    }
+}
@@ -6,20 +6,44 @@ import org.codehaus.jettison.json.JSONObject;
 import plu.red.reversi.core.command.MoveCommand;
 import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.GoMonteCarlo;
 import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.search.OpeningBook;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.listener.ISearchListener;
 import plu.red.reversi.core.util.Color;
 import plu.red.reversi.core.util.Looper;
 
+import java.util.HashSet;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Glory to the Red Team.
  * An instance of a player which the computer can play as (basically an AI)
- * It utilizes the reversi minimax algorithm to compute the best move, and then execute it.
+ * It utilizes the reversi minimax algorithm to compute the best move, and then execute it. In games of Go it uses
+ * Monte Carlo tree search instead.
  */
 public class BotPlayer extends Player implements Looper.LooperCallback<BoardIndex> {
 
-    // TODO: Keep track of threads and stop them all if a Game is halted
-    private Thread thread;
+    /// Difficulty from which principal variation search is used by default.
+    public static final int PVS_DIFFICULTY = 4;
+    /// Longest a search for a move may take by default, in milliseconds, before it is stopped and plays the best move
+    /// it has found.
+    public static final long DEFAULT_SEARCH_DEADLINE = 60000;
+
+    private BotExecutor executor = null;
+    private volatile BotExecutor.Search search = null;
+    private volatile BotExecutor.Search ponderSearch = null;
+    private long searchDeadline = DEFAULT_SEARCH_DEADLINE;
+    /// Set once the bot is done with its game, after which it never searches again.
+    private volatile boolean cancelled = false;
+    /// Hands moves found on other threads back to the thread which created this BotPlayer.
+    private Looper.LooperCall<BoardIndex> callback = null;
     private ReversiMinimax minimax;
+    private GoMonteCarlo monteCarlo;
+    private boolean pondering = true;
+    private final HashSet<ISearchListener> searchListeners = new HashSet<>();
 
     /**
      * New Game Constructor. Creates a BotPlayer belonging to a newly created Game object. BotPlayer is automatically registered to
@@ -31,14 +55,14 @@ public class BotPlayer extends Player implements Looper.LooperCallback<BoardInde
      */
     public BotPlayer(Game game, Color color, int difficulty) {
         super(game, color);
-        thread = null;
-        minimax = new ReversiMinimax(game, getID(), difficulty, Looper.getLooper(Thread.currentThread()).getCall(this));
+        minimax = createMinimax(difficulty);
+        monteCarlo = createMonteCarlo(difficulty);
     }
 
     public BotPlayer(Game game, int playerID, Color color, int difficulty) {
         super(game, playerID, color);
-        thread = null;
-        minimax = new ReversiMinimax(game, getID(), difficulty, Looper.getLooper(Thread.currentThread()).getCall(this));
+        minimax = createMinimax(difficulty);
+        monteCarlo = createMonteCarlo(difficulty);
     }
 
     /**
@@ -51,9 +75,57 @@ public class BotPlayer extends Player implements Looper.LooperCallback<BoardInde
      */
     public BotPlayer(Game game, JSONObject json) throws JSONException {
         super(game, json);
-        thread = null;
         int difficulty = json.getInt("difficulty");
-        minimax = new ReversiMinimax(game, getID(), difficulty, Looper.getLooper(Thread.currentThread()).getCall(this));
+        minimax = createMinimax(difficulty);
+        monteCarlo = createMonteCarlo(difficulty);
+        if(json.has("searchMode"))
+            minimax.setSearchMode(ReversiMinimax.SearchMode.valueOf(json.getString("searchMode")));
+    }
+
+    /**
+     * Creates the search used to pick moves, set up for the given difficulty.
+     *
+     * @param difficulty Integer specifying how deep the Minimax tree should search
+     * @return New ReversiMinimax for this BotPlayer
+     */
+    private ReversiMinimax createMinimax(int difficulty) {
+        ReversiMinimax minimax = new ReversiMinimax(game, getID(), difficulty, getLooperCall());
+        minimax.setOpeningBook(OpeningBook.getDefault());
+        minimax.setSearchMode(searchModeFor(difficulty));
+        return minimax;
+    }
+
+    /**
+     * Creates the search used to pick moves in games of Go, with more playouts for higher difficulties.
+     *
+     * @param difficulty Integer specifying how hard the bot should be
+     * @return New GoMonteCarlo for this BotPlayer
+     */
+    private GoMonteCarlo createMonteCarlo(int difficulty) {
+        GoMonteCarlo monteCarlo = new GoMonteCarlo(game, getID(), difficulty * GoMonteCarlo.PLAYOUTS_PER_LEVEL,
+                getLooperCall());
+        return monteCarlo;
+    }
+
+    /**
+     * Retrieves the call every search hands its move back through, creating it for the current thread the first time.
+     *
+     * @return LooperCall for this BotPlayer
+     */
+    private Looper.LooperCall<BoardIndex> getLooperCall() {
+        if(callback == null) callback = Looper.getLooper(Thread.currentThread()).getCall(this);
+        return callback;
+    }
+
+    /**
+     * Picks the default search mode for a difficulty level. Principal variation search only pays for its extra
+     * re-searches once the tree is a few plies deep.
+     *
+     * @param difficulty Integer specifying how deep the Minimax tree should search
+     * @return SearchMode to use
+     */
+    public static ReversiMinimax.SearchMode searchModeFor(int difficulty) {
+        return difficulty >= PVS_DIFFICULTY ? ReversiMinimax.SearchMode.PVS : ReversiMinimax.SearchMode.ALPHA_BETA;
     }
 
     /**
@@ -66,6 +138,7 @@ public class BotPlayer extends Player implements Looper.LooperCallback<BoardInde
     public JSONObject toJSON() throws JSONException {
         JSONObject json = super.toJSON();
         json.put("difficulty", this.minimax.MAX_DEPTH);
+        json.put("searchMode", this.minimax.getSearchMode().name());
         json.put("type", 1);
         return json;
     }
@@ -79,16 +152,222 @@ public class BotPlayer extends Player implements Looper.LooperCallback<BoardInde
         return minimax.MAX_DEPTH;
     }
 
+    /**
+     * Retrieves how this BotPlayer's search treats each position.
+     *
+     * @return SearchMode in use
+     */
+    public ReversiMinimax.SearchMode getSearchMode() {
+        return minimax.getSearchMode();
+    }
+
+    /**
+     * Overrides the search mode picked for this BotPlayer's difficulty.
+     *
+     * @param mode SearchMode to use
+     */
+    public void setSearchMode(ReversiMinimax.SearchMode mode) {
+        minimax.setSearchMode(mode);
+    }
+
+    /**
+     * Retrieves whether this BotPlayer searches while other players are on move.
+     *
+     * @return True if pondering is enabled
+     */
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    /**
+     * Sets whether this BotPlayer searches while other players are on move. The search fills the transposition
+     * table, so whatever move they make most of the work for the reply has already been done. Enabled by default.
+     *
+     * @param pondering True to search during other players' turns
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if(!pondering) minimax.stopPondering();
+    }
+
+    /**
+     * Sets the executor to run searches on, instead of the shared one. Searches only run in parallel with the share of
+     * the processors the executor gives each of its workers.
+     *
+     * @param executor BotExecutor to use, or null for the shared one
+     */
+    public void setExecutor(BotExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieves the longest a search for a move may take before it is stopped.
+     *
+     * @return Deadline in milliseconds, or 0 for none
+     */
+    public long getSearchDeadline() {
+        return searchDeadline;
+    }
+
+    /**
+     * Sets the longest a search for a move may take, counting from when a worker starts it. Once it passes the search
+     * is stopped and plays the best move it has found so far. Defaults to DEFAULT_SEARCH_DEADLINE.
+     *
+     * @param millis Deadline in milliseconds, or 0 for none
+     */
+    public void setSearchDeadline(long millis) {
+        this.searchDeadline = Math.max(0, millis);
+    }
+
+    /**
+     * Stops any search this BotPlayer has running or queued, throwing its result away, and keeps it from searching
+     * again. Called once the bot is done with its game, such as when it surrenders or the game is cleaned up.
+     */
+    public void cancel() {
+        cancelled = true;
+        minimax.cancel();
+        monteCarlo.cancel();
+        final BotExecutor.Search s = search;
+        if(s != null) s.cancel();
+        final BotExecutor.Search p = ponderSearch;
+        if(p != null) p.cancel();
+    }
+
+    /**
+     * Retrieves whether cancel() has been called.
+     *
+     * @return True if this BotPlayer will not search again
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a listener to be told what the search did every time this BotPlayer picks a move.
+     *
+     * @param listener ISearchListener to add
+     */
+    public void addSearchListener(ISearchListener listener) {
+        synchronized(searchListeners) {
+            searchListeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregisters a listener added with addSearchListener. If it is not registered, nothing happens.
+     *
+     * @param listener ISearchListener to remove
+     */
+    public void removeSearchListener(ISearchListener listener) {
+        synchronized(searchListeners) {
+            searchListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Tells every registered ISearchListener what the last search did.
+     *
+     * @param stats Stats of the search, or null if there was no search
+     */
+    private void notifySearchListeners(SearchStats stats) {
+        if(stats == null) return;
+        synchronized(searchListeners) {
+            for(ISearchListener listener : searchListeners)
+                listener.onSearchFinished(this, stats);
+        }
+    }
+
+    /**
+     * Tells every registered ISearchListener that the executor had no room for a search.
+     */
+    private void notifySearchRejected() {
+        synchronized(searchListeners) {
+            for(ISearchListener listener : searchListeners)
+                listener.onSearchRejected(this);
+        }
+    }
+
     @Override
     public void nextTurn(boolean yours) {
-        if(!yours) return;
+        if(cancelled) return;
+        final BotExecutor executor = this.executor != null ? this.executor : BotExecutor.getShared();
+
+        if(!yours) {
+            //think about the position while the other player does, if there is a worker to spare
+            Player current = game.getCurrentPlayer();
+            if(pondering && current != null && !game.isGameOver() && !isGo()) {
+                final Runnable ponder = minimax.ponder(current.getID());
+                ponderSearch = executor.submitIfIdle(() -> {
+                    minimax.setPool(BotExecutor.getSearchPool());
+                    ponder.run();
+                }, minimax::stopPondering);
+                //every worker is busy, so the task was dropped; it must not look like it is still coming
+                if(ponderSearch == null) minimax.stopPondering();
+                else if(cancelled) ponderSearch.cancel();
+            }
+            return;
+        }
+
+        //pondering is only worth it until the real search can start, so give its worker up
+        minimax.stopPondering();
+        final BotExecutor.Search ponder = ponderSearch;
+        if(ponder != null) ponder.cancel();
+
+        final boolean go = isGo();
+        try {
+            if(go) {
+                monteCarlo.reset();
+                search = executor.submit(() -> {
+                    monteCarlo.setPool(BotExecutor.getSearchPool());
+                    monteCarlo.run();
+                    if(!monteCarlo.isCancelled()) notifySearchListeners(monteCarlo.getLastStats());
+                }, monteCarlo::stop, monteCarlo::cancel, searchDeadline);
+            } else {
+                minimax.reset();
+                search = executor.submit(() -> {
+                    minimax.setPool(BotExecutor.getSearchPool());
+                    minimax.run();
+                    if(!minimax.isCancelled()) notifySearchListeners(minimax.getLastStats());
+                }, minimax::stop, minimax::cancel, searchDeadline);
+            }
+        } catch(RejectedExecutionException e) {
+            //too many bots are searching to take on another, so make a cheap move here rather than hold the game up
+            notifySearchRejected();
+            playQuickMove();
+            return;
+        }
+
+        //cancel() may have come in after the check at the top, and before there was a search for it to cancel
+        if(cancelled) search.cancel();
+    }
 
-        thread = new Thread(minimax);
-        thread.start();
+    /**
+     * Picks a move with a search one ply deep on the calling thread, for when the executor has no room for the real
+     * search. The move is handed on through the looper like any other.
+     */
+    private void playQuickMove() {
+        if(isGo()) {
+            new GoMonteCarlo(game, getID(), GoMonteCarlo.PLAYOUTS_PER_LEVEL, getLooperCall()).run();
+        } else {
+            new ReversiMinimax(game, getID(), 1, getLooperCall())
+                    .setEndgameEmpties(0)
+                    .setOpeningBook(minimax.getOpeningBook())
+                    .setTranspositionTable(minimax.getTranspositionTable())
+                    .run();
+        }
+    }
+
+    /**
+     * @return True if the game is Go, which needs the Monte Carlo search instead of minimax
+     */
+    private boolean isGo() {
+        return game.getGameLogic() instanceof GoLogic;
     }
 
     @Override
     public void onLooperCallback(BoardIndex result) {
+        //a move which was found just before the bot was cancelled may still be waiting in the looper
+        if(cancelled) return;
         game.acceptCommand(new MoveCommand(getID(), result));
     }
 }
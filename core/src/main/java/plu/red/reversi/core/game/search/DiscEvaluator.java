@@ -0,0 +1,31 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+
+/**
+ * The simplest evaluation: the disc margin, plus a bonus of 4 for each corner owned. Works for any size of board and
+ * any number of players, but needs a deep search to make up for how little it knows.
+ */
+public class DiscEvaluator implements Evaluator {
+
+    @Override
+    public int evaluate(GameLogic logic, GameLogicCache cache, Board board, int player) {
+        //ours - (all - ours) == ours * 2 - all
+        int score = (logic.getScore(cache, board, player) * 2) - board.getTotalPieces();
+
+        final int last = board.size - 1;
+        score += corner(board.at(0, 0), player);
+        score += corner(board.at(last, 0), player);
+        score += corner(board.at(0, last), player);
+        score += corner(board.at(last, last), player);
+        return score;
+    }
+
+
+    private static int corner(int owner, int player) {
+        if(owner < 0) return 0;
+        return owner == player ? 4 : -4;
+    }
+}
@@ -0,0 +1,455 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.logic.ReversiBitboard;
+
+/**
+ * Solves two player 8x8 Reversi positions exactly by searching every move to the end of the game. The result is the
+ * disc margin (own discs - opponent discs) the player to move can force with perfect play from both sides. Empty
+ * tiles are not given to either player, which matches how the game itself is scored.
+ *
+ * The solver works directly on the pair of masks used by ReversiBitboard and never touches a Board, which makes it
+ * far faster than the general minimax once the game is close enough to the end to search all of it. It is a negamax
+ * search with a few endgame specific tricks:
+ * <ul>
+ *     <li>Moves are searched fastest-first, meaning moves which leave the opponent with the fewest replies come
+ *     first. This finds cutoffs early and keeps the tree narrow.</li>
+ *     <li>Ties are broken by parity: the board is split into quadrants, and moves into a quadrant with an odd number
+ *     of empty tiles are preferred so we are the one to get the last move there. Near the very end only parity is
+ *     used since counting replies costs more than it saves.</li>
+ *     <li>Only the first move of a position is searched with the full window. The rest are searched with a null
+ *     window which just proves they are no better, and only searched again if one turns out to be.</li>
+ *     <li>The result itself is found with MTD(f), a series of null window searches which close in on it from the
+ *     current disc margin. Positions with many empty tiles left remember the bounds found for them and their best
+ *     move in a small hash table, so each search mostly retraces the last one.</li>
+ *     <li>Discs which can no longer be flipped put a ceiling on the result, which cuts off positions that cannot
+ *     possibly reach the window.</li>
+ * </ul>
+ *
+ * A solver is not thread safe, so each search thread should have its own.
+ */
+public class EndgameSolver {
+    /// Scores are always inside of (-WORST, WORST).
+    public static final int WORST = ReversiBitboard.SQUARES + 1;
+
+    /// Number of nodes between calls to poll().
+    private static final int POLL_INTERVAL = 1024;
+    /// Positions with fewer empty tiles than this only use parity to order their moves.
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+    /// Positions with fewer empty tiles than this are not put in the hash table.
+    private static final int HASH_EMPTIES = 7;
+    /// Default number of hash table entries, 20 bytes each.
+    public static final int DEFAULT_HASH_SIZE = 1 << 16;
+
+    /// The four corners of the board.
+    private static final long CORNERS = 0x8100000000000081L;
+    /// Tiles on the edges of the board.
+    private static final long EDGE_COLUMNS = 0x8181818181818181L;
+    private static final long EDGE_ROWS = 0xFF000000000000FFL;
+    private static final long EDGES = EDGE_COLUMNS | EDGE_ROWS;
+    /// Every line running from the top left to the bottom right, and from the top right to the bottom left.
+    private static final long[] DIAGONALS = new long[2 * ReversiBitboard.SIZE - 1];
+    private static final long[] ANTI_DIAGONALS = new long[2 * ReversiBitboard.SIZE - 1];
+    static {
+        for(int row = 0; row < ReversiBitboard.SIZE; row++) {
+            for(int column = 0; column < ReversiBitboard.SIZE; column++) {
+                final long bit = 1L << (row * ReversiBitboard.SIZE + column);
+                DIAGONALS[column - row + ReversiBitboard.SIZE - 1] |= bit;
+                ANTI_DIAGONALS[column + row] |= bit;
+            }
+        }
+    }
+    /// The four quadrants of the board, used to work out parity.
+    private static final long[] QUADRANTS = {
+            0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+            0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    /// Buffers used to sort the moves of each position, indexed by the number of empty tiles in it.
+    private final int[][] moveLists = new int[ReversiBitboard.SQUARES + 1][];
+    private final int[][] moveKeys = new int[ReversiBitboard.SQUARES + 1][];
+
+    /// Hash table of positions in buckets of two. The data packs the number of empty tiles, lower bound, upper bound
+    /// and best move of each one, and is never 0 for a slot which is in use.
+    private final long[] hashOwn;
+    private final long[] hashOpp;
+    private final int[] hashData;
+    private final int hashMask;
+
+    private long nodes = 0;
+    private int bestMove = -1;
+
+
+    /**
+     * Constructs a new solver with the default hash table size.
+     */
+    public EndgameSolver() {
+        this(DEFAULT_HASH_SIZE);
+    }
+
+
+    /**
+     * Constructs a new solver.
+     * @param hashSize Number of positions the hash table can hold, rounded up to a power of two.
+     */
+    public EndgameSolver(int hashSize) {
+        final int size = hashSize <= 2 ? 2 : Integer.highestOneBit(hashSize - 1) << 1;
+        hashOwn = new long[size];
+        hashOpp = new long[size];
+        hashData = new int[size];
+        hashMask = size - 1;
+    }
+
+
+    /**
+     * Finds the exact result of a position.
+     * @param own Tiles of the player to move.
+     * @param opp Tiles of their opponent.
+     * @return Disc margin for the player to move with perfect play.
+     */
+    public int solve(long own, long opp) {
+        return solve(own, opp, -WORST, WORST);
+    }
+
+
+    /**
+     * Searches a position within a window. If the result is inside of the window it is exact, otherwise it is a
+     * bound: a result <= alpha means the real value is at most that, and a result >= beta means it is at least that.
+     * @param own Tiles of the player to move.
+     * @param opp Tiles of their opponent.
+     * @param alpha Lower end of the window (exclusive).
+     * @param beta Upper end of the window (exclusive), must be greater than alpha.
+     * @return Disc margin for the player to move, or a bound on it.
+     */
+    public int solve(long own, long opp, int alpha, int beta) {
+        if(alpha >= beta) throw new IllegalArgumentException("Window is empty: (" + alpha + ", " + beta + ")");
+        alpha = Math.max(alpha, -WORST);
+        beta = Math.min(beta, WORST);
+
+        //MTD(f): close in on the result with null window searches, starting from the current disc margin. Each one
+        // either raises the lower bound or drops the upper bound, and the hash table keeps what they found.
+        int guess = Math.min(Math.max(Long.bitCount(own) - Long.bitCount(opp), alpha + 1), beta);
+        int lower = -WORST;
+        int upper = WORST;
+        int move = -1;
+        while(lower < upper) {
+            final int test = Math.max(guess, lower + 1);
+            bestMove = -1;
+            guess = search(own, opp, test - 1, test, true);
+            if(guess < test) {
+                upper = guess;
+                if(upper <= alpha) break;
+            } else {
+                lower = guess;
+                move = bestMove;
+                if(lower >= beta) break;
+            }
+        }
+
+        //the best move is the one which proved the lower bound
+        if(move >= 0) bestMove = move;
+        return lower >= beta || lower == upper ? lower : upper;
+    }
+
+
+    /**
+     * Checks if the player to move can get a margin of at least <code>score</code>, using a single null window
+     * search. This is much cheaper than finding the exact result.
+     * @param own Tiles of the player to move.
+     * @param opp Tiles of their opponent.
+     * @param score Margin to test for.
+     * @return True if the player to move can reach the margin.
+     */
+    public boolean test(long own, long opp, int score) {
+        return solve(own, opp, score - 1, score) >= score;
+    }
+
+
+    /**
+     * @return Best move found by the last call to solve() as a square in [0, 64), or -1 if the player to move had to
+     * pass or the game was over. Only reliable when the result was exact or a lower bound.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+
+    /**
+     * @return Number of positions visited by this solver so far.
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+
+    /**
+     * Called every so often during a search. Override this to stop a search which has run too long or is no longer
+     * needed by throwing an unchecked exception; the solver keeps no state between calls, so it can be used again
+     * afterwards.
+     */
+    protected void poll() {}
+
+
+    /**
+     * Fail-soft negamax search of a position.
+     * @param root True for the position solve() was called on, so its best move is remembered.
+     */
+    private int search(long own, long opp, int alpha, int beta, boolean root) {
+        if((++nodes % POLL_INTERVAL) == 0) poll();
+
+        final long empty = ~(own | opp);
+        final int empties = Long.bitCount(empty);
+        if(empties == 1 && !root) return lastEmpty(own, opp, Long.numberOfTrailingZeros(empty));
+
+        //we can never do better than taking every tile the opponent could still lose
+        if(alpha >= ReversiBitboard.SQUARES - 2 * Long.bitCount(opp)) {
+            final int upper = ReversiBitboard.SQUARES - 2 * Long.bitCount(stableDiscs(opp, ~empty));
+            if(upper <= alpha) return upper;
+            if(upper < beta) beta = upper;
+        }
+
+        long moves = ReversiBitboard.moves(own, opp);
+        if(moves == 0) {
+            if(ReversiBitboard.moves(opp, own) == 0)
+                return Long.bitCount(own) - Long.bitCount(opp); //game over
+            return -search(opp, own, -beta, -alpha, false); //pass
+        }
+
+        //narrow the window with what we found last time we were here
+        int hashMove = -1;
+        if(empties >= HASH_EMPTIES) {
+            final int slot = findSlot(own, opp);
+            if(slot >= 0) {
+                final int data = hashData[slot];
+                final int lower = lower(data);
+                final int upper = upper(data);
+                hashMove = move(data);
+                //the root has to search its moves properly to know which one is best
+                if(!root) {
+                    if(lower >= beta) return lower;
+                    if(upper <= alpha) return upper;
+                    if(lower == upper) return lower;
+                    alpha = Math.max(alpha, lower);
+                    beta = Math.min(beta, upper);
+                }
+            }
+        }
+
+        //moves into quadrants with an odd number of empty tiles come first
+        long odd = 0;
+        for(long quadrant : QUADRANTS)
+            if((Long.bitCount(empty & quadrant) & 1) != 0) odd |= quadrant;
+
+        if(empties < FASTEST_FIRST_EMPTIES) {
+            int best = -WORST;
+            boolean first = true;
+            //parity only; odd quadrants on the first pass, the rest on the second
+            for(int pass = 0; pass < 2; pass++) {
+                for(long mask = moves & (pass == 0 ? odd : ~odd); mask != 0; mask &= mask - 1) {
+                    final int square = Long.numberOfTrailingZeros(mask);
+                    final int score = searchMove(own, opp, square, alpha, beta, first);
+                    first = false;
+                    if(score > best) {
+                        best = score;
+                        if(root) bestMove = square;
+                        if(score > alpha) {
+                            alpha = score;
+                            if(alpha >= beta) return best;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        //fastest-first: sort by how many replies the opponent would have, with parity breaking ties
+        if(moveLists[empties] == null) {
+            moveLists[empties] = new int[ReversiBitboard.SQUARES];
+            moveKeys[empties] = new int[ReversiBitboard.SQUARES];
+        }
+        final int[] list = moveLists[empties];
+        final int[] keys = moveKeys[empties];
+        int count = 0;
+        for(; moves != 0; moves &= moves - 1) {
+            final int square = Long.numberOfTrailingZeros(moves);
+            final long bit = 1L << square;
+            final int key;
+            if(square == hashMove) {
+                key = -1; //the best move last time always goes first
+            } else {
+                final long flips = ReversiBitboard.flips(own, opp, square);
+                final long replies = ReversiBitboard.moves(opp & ~flips, own | flips | bit);
+                //corners count twice since giving one away is worse than any other reply
+                key = (Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * 2 + ((odd & bit) != 0 ? 0 : 1);
+            }
+
+            //insertion sort, there are only ever a handful of moves
+            int i = count++;
+            while(i > 0 && keys[i - 1] > key) {
+                keys[i] = keys[i - 1];
+                list[i] = list[i - 1];
+                i--;
+            }
+            keys[i] = key;
+            list[i] = square;
+        }
+
+        final int alphaStart = alpha;
+        int best = -WORST;
+        int move = -1;
+        for(int n = 0; n < count; n++) {
+            final int square = list[n];
+            final int score = searchMove(own, opp, square, alpha, beta, n == 0);
+            if(score > best) {
+                best = score;
+                move = square;
+                if(root) bestMove = square;
+                if(score > alpha) {
+                    alpha = score;
+                    if(alpha >= beta) break;
+                }
+            }
+        }
+
+        if(empties >= HASH_EMPTIES) store(own, opp, empties, alphaStart, beta, best, move);
+        return best;
+    }
+
+
+    /**
+     * Scores a position with a single empty tile without generating any moves. The player to move takes it if they
+     * can, otherwise the opponent does if they can, otherwise the game ends with it empty.
+     */
+    private static int lastEmpty(long own, long opp, int square) {
+        final int score = Long.bitCount(own) - Long.bitCount(opp);
+        long flips = ReversiBitboard.flips(own, opp, square);
+        if(flips != 0) return score + 2 * Long.bitCount(flips) + 1;
+        flips = ReversiBitboard.flips(opp, own, square);
+        if(flips != 0) return score - 2 * Long.bitCount(flips) - 1;
+        return score;
+    }
+
+
+    /**
+     * Finds discs which can never be flipped again. A disc is stable if along each of the four lines through it, the
+     * line is full, or the disc is on the edge of the board, or the disc next to it on that line is stable and of
+     * the same colour. This misses some stable discs but never includes one which is not.
+     * @param discs Discs of the player to check.
+     * @param filled Every tile which is not empty.
+     * @return Mask of stable discs.
+     */
+    static long stableDiscs(long discs, long filled) {
+        //find the full lines in each direction
+        long fullRows = 0;
+        for(int row = 0; row < ReversiBitboard.SIZE; row++) {
+            final long mask = 0xFFL << (row * ReversiBitboard.SIZE);
+            if((filled & mask) == mask) fullRows |= mask;
+        }
+        long columns = filled & (filled >>> 32);
+        columns &= columns >>> 16;
+        columns &= columns >>> 8;
+        final long fullColumns = (columns & 0xFF) * 0x0101010101010101L;
+        long fullDiagonals = 0;
+        long fullAntiDiagonals = 0;
+        for(long mask : DIAGONALS)
+            if((filled & mask) == mask) fullDiagonals |= mask;
+        for(long mask : ANTI_DIAGONALS)
+            if((filled & mask) == mask) fullAntiDiagonals |= mask;
+
+        //grow the stable discs out from the edges until nothing changes; bits which wrap around the board always
+        // land on an edge tile, which is allowed on every line anyway
+        long stable = 0;
+        while(true) {
+            final long next = discs
+                    & (fullRows | EDGE_COLUMNS | (stable << 1) | (stable >>> 1))
+                    & (fullColumns | EDGE_ROWS | (stable << 8) | (stable >>> 8))
+                    & (fullDiagonals | EDGES | (stable << 9) | (stable >>> 9))
+                    & (fullAntiDiagonals | EDGES | (stable << 7) | (stable >>> 7));
+            if(next == stable) return stable;
+            stable = next;
+        }
+    }
+
+
+    /**
+     * Picks the first of the two hash table slots a position can be stored in.
+     */
+    private int bucket(long own, long opp) {
+        long h = own * 0x9E3779B97F4A7C15L + opp;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int)(h ^ (h >>> 32)) & hashMask & ~1;
+    }
+
+
+    /**
+     * Looks up a position in the hash table.
+     * @return Slot holding the position, or -1 if it is not there.
+     */
+    private int findSlot(long own, long opp) {
+        final int i = bucket(own, opp);
+        if(hashOwn[i] == own && hashOpp[i] == opp && hashData[i] != 0) return i;
+        if(hashOwn[i + 1] == own && hashOpp[i + 1] == opp && hashData[i + 1] != 0) return i + 1;
+        return -1;
+    }
+
+
+    /**
+     * Remembers the result of searching a position. If it is already in the table the bounds are tightened,
+     * otherwise it replaces whichever entry of its bucket has the fewest empty tiles, as that is the cheapest to
+     * search again.
+     */
+    private void store(long own, long opp, int empties, int alpha, int beta, int best, int move) {
+        int lower = -ReversiBitboard.SQUARES;
+        int upper = ReversiBitboard.SQUARES;
+        int slot = findSlot(own, opp);
+        if(slot >= 0) {
+            lower = lower(hashData[slot]);
+            upper = upper(hashData[slot]);
+        } else {
+            final int i = bucket(own, opp);
+            slot = empties(hashData[i]) <= empties(hashData[i + 1]) ? i : i + 1;
+        }
+
+        if(best < beta) upper = Math.min(upper, best);
+        if(best > alpha) lower = Math.max(lower, best);
+        hashOwn[slot] = own;
+        hashOpp[slot] = opp;
+        hashData[slot] = (empties << 24) | ((lower + WORST) << 16) | ((upper + WORST) << 8) | (move + 1);
+    }
+
+    private static int empties(int data) {
+        return data >>> 24;
+    }
+
+    private static int lower(int data) {
+        return ((data >>> 16) & 0xFF) - WORST;
+    }
+
+    private static int upper(int data) {
+        return ((data >>> 8) & 0xFF) - WORST;
+    }
+
+    private static int move(int data) {
+        return (data & 0xFF) - 1;
+    }
+
+
+    /**
+     * Plays a move and searches the position after it. Every move except the first is searched with a null window
+     * first, and only searched again with the full window if it turns out to be better than alpha.
+     * @param first True if this is the first move searched from the position.
+     * @return Score of the move for the player making it.
+     */
+    private int searchMove(long own, long opp, int square, int alpha, int beta, boolean first) {
+        final long flips = ReversiBitboard.flips(own, opp, square);
+        final long nextOwn = opp & ~flips;
+        final long nextOpp = own | flips | (1L << square);
+
+        if(first) return -search(nextOwn, nextOpp, -beta, -alpha, false);
+
+        int score = -search(nextOwn, nextOpp, -alpha - 1, -alpha, false);
+        if(score > alpha && score < beta)
+            score = -search(nextOwn, nextOpp, -beta, -alpha, false);
+        return score;
+    }
+}
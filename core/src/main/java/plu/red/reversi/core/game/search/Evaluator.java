@@ -0,0 +1,25 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+
+/**
+ * Scores positions at the leaves of a search which has not reached the end of the game.
+ *
+ * ReversiMinimax scores finished games as the disc margin times 16, so an evaluation which estimates the final margin
+ * should use the same scale. One evaluator is shared by every thread of a parallel search, so implementations must
+ * not keep any state between calls.
+ */
+public interface Evaluator {
+
+    /**
+     * Scores a position from the point of view of one player.
+     * @param logic Logic of the game being searched.
+     * @param cache Cache matching <code>board</code>.
+     * @param board Position to score.
+     * @param player Player ID to score the position for; higher is better for them.
+     * @return Score of the position.
+     */
+    int evaluate(GameLogic logic, GameLogicCache cache, Board board, int player);
+}
@@ -0,0 +1,401 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.Board;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A Go board built for playing thousands of random games a second. It follows the same rules as GoLogic (a move is
+ * valid if it ends up with a liberty or captures something, and every player's groups can be captured by anyone) but
+ * keeps everything in flat int arrays instead of going through MoveCommands, BoardIndexes and sets.
+ *
+ * Each group is a circular list of its stones, and the group's root stone holds its size and its pseudo liberties:
+ * the number of (stone, empty neighbour) pairs, which is zero exactly when the group has no liberties. Playing a stone
+ * only touches its four neighbours, and a capture only touches the stones captured.
+ *
+ * Players are stored by their index in the turn order rather than their ID, so a board can be shared between games
+ * with any IDs.
+ */
+public class GoPlayoutBoard {
+    public static final int EMPTY = -1;
+    public static final int BORDER = -2;
+    /// Returned instead of a tile when a player has nothing to play.
+    public static final int PASS = -1;
+
+    public final int size;
+    private final int stride;
+    private final int players;
+    private final int[] directions;
+    private final int[] diagonals;
+
+    /// What is on each point, with a border around the board.
+    private final int[] color;
+    /// Root stone of the group each stone belongs to.
+    private final int[] group;
+    /// Next stone in the same group, forming a circle.
+    private final int[] next;
+    /// Pseudo liberties and number of stones, only valid for root stones.
+    private final int[] liberties;
+    private final int[] stones;
+
+    /// Every empty point, and where each point is in that list.
+    private final int[] empties;
+    private final int[] emptyIndex;
+    private int emptyCount = 0;
+
+    /// Stones each player has captured.
+    private final int[] captures;
+    /// Groups taken by the move being played.
+    private final int[] captured = new int[4];
+
+
+    /**
+     * Constructs an empty board.
+     * @param size Width and height of the board.
+     * @param players Number of players, at most the number GoLogic allows.
+     */
+    public GoPlayoutBoard(int size, int players) {
+        this.size = size;
+        this.players = players;
+        stride = size + 2;
+        directions = new int[] {-stride, -1, 1, stride};
+        diagonals = new int[] {-stride - 1, -stride + 1, stride - 1, stride + 1};
+
+        final int points = stride * stride;
+        color = new int[points];
+        group = new int[points];
+        next = new int[points];
+        liberties = new int[points];
+        stones = new int[points];
+        empties = new int[size * size];
+        emptyIndex = new int[points];
+        captures = new int[players];
+
+        Arrays.fill(color, BORDER);
+        for(int row = 0; row < size; row++)
+            for(int column = 0; column < size; column++) {
+                final int p = point(row, column);
+                color[p] = EMPTY;
+                addEmpty(p);
+            }
+    }
+
+
+    /**
+     * Copies a position from a game.
+     * @param board Board to copy, which may only hold the players in <code>order</code>.
+     * @param order Player IDs in the order they move; a player's index in this array is how the copy refers to them.
+     * @param captures Stones captured by each player, in the same order.
+     * @return A new board holding the position.
+     */
+    public static GoPlayoutBoard fromBoard(Board board, int[] order, int[] captures) {
+        final GoPlayoutBoard result = new GoPlayoutBoard(board.size, order.length);
+        for(int row = 0; row < board.size; row++) {
+            for(int column = 0; column < board.size; column++) {
+                final int id = board.at(row, column);
+                if(id < 0) continue;
+                int player = 0;
+                while(player < order.length && order[player] != id) player++;
+                if(player == order.length)
+                    throw new IllegalArgumentException("Stone of player " + id + " who is not in the turn order");
+                result.place(player, result.point(row, column));
+            }
+        }
+        System.arraycopy(captures, 0, result.captures, 0, order.length);
+        return result;
+    }
+
+
+    /**
+     * Overwrites this board with another one of the same size and number of players.
+     * @param other Board to copy.
+     */
+    public void copyFrom(GoPlayoutBoard other) {
+        System.arraycopy(other.color, 0, color, 0, color.length);
+        System.arraycopy(other.group, 0, group, 0, group.length);
+        System.arraycopy(other.next, 0, next, 0, next.length);
+        System.arraycopy(other.liberties, 0, liberties, 0, liberties.length);
+        System.arraycopy(other.stones, 0, stones, 0, stones.length);
+        System.arraycopy(other.empties, 0, empties, 0, other.emptyCount);
+        System.arraycopy(other.emptyIndex, 0, emptyIndex, 0, emptyIndex.length);
+        System.arraycopy(other.captures, 0, captures, 0, captures.length);
+        emptyCount = other.emptyCount;
+    }
+
+
+    /**
+     * @return Number of players taking part.
+     */
+    public int getPlayers() {
+        return players;
+    }
+
+
+    /**
+     * @param player Index of the player.
+     * @return Number of stones the player has captured.
+     */
+    public int getCaptures(int player) {
+        return captures[player];
+    }
+
+
+    /**
+     * Finds what is on a point.
+     * @param p Point to read.
+     * @return Index of the player with a stone there, EMPTY, or BORDER.
+     */
+    public int get(int p) {
+        return color[p];
+    }
+
+
+    /**
+     * Converts a tile number (row * size + column) to a point on this board.
+     */
+    public int point(int tile) {
+        return point(tile / size, tile % size);
+    }
+
+
+    private int point(int row, int column) {
+        return (row + 1) * stride + column + 1;
+    }
+
+
+    /**
+     * Converts a point on this board back to a tile number.
+     */
+    public int tile(int point) {
+        return (point / stride - 1) * size + point % stride - 1;
+    }
+
+
+    /**
+     * Checks if a player may play on a point, using the same rules as GoLogic.
+     * @param player Index of the player.
+     * @param p Point to play on.
+     * @return True if the move is valid.
+     */
+    public boolean isLegal(int player, int p) {
+        if(color[p] != EMPTY) return false;
+        for(int d : directions)
+            if(color[p + d] == EMPTY) return true;
+
+        for(int d : directions) {
+            final int q = p + d;
+            if(color[q] < 0) continue;
+            final int g = group[q];
+            //liberties the group has other than this point
+            final int others = liberties[g] - touching(g, p);
+            if(color[q] == player ? others > 0 : others == 0) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Checks if a point is an eye of a player: every neighbour is theirs, and the diagonals are theirs closely enough
+     * that the eye cannot be broken. Random games which fill their own eyes throw away groups which are alive, so
+     * playouts never play here.
+     * @param player Index of the player.
+     * @param p Point to check.
+     * @return True if the point is an eye.
+     */
+    public boolean isEye(int player, int p) {
+        for(int d : directions) {
+            final int c = color[p + d];
+            if(c != player && c != BORDER) return false;
+        }
+
+        int enemies = 0;
+        boolean edge = false;
+        for(int d : diagonals) {
+            final int c = color[p + d];
+            if(c == BORDER) edge = true;
+            else if(c >= 0 && c != player) enemies++;
+        }
+        return enemies < (edge ? 1 : 2);
+    }
+
+
+    /**
+     * Lists the moves a player could make.
+     * @param player Index of the player.
+     * @param moves Array to write points into, with room for every tile on the board.
+     * @param eyes True to include moves which fill the player's own eyes.
+     * @return Number of moves written.
+     */
+    public int getMoves(int player, int[] moves, boolean eyes) {
+        int count = 0;
+        for(int i = 0; i < emptyCount; i++) {
+            final int p = empties[i];
+            if(isLegal(player, p) && (eyes || !isEye(player, p))) moves[count++] = p;
+        }
+        return count;
+    }
+
+
+    /**
+     * Picks a random move which is valid and does not fill one of the player's eyes.
+     * @param player Index of the player.
+     * @param random Source of the choice.
+     * @return The point to play, or PASS if there is none.
+     */
+    public int randomMove(int player, Random random) {
+        if(emptyCount == 0) return PASS;
+        //start at a random empty point and take the first one which will do
+        final int start = random.nextInt(emptyCount);
+        for(int i = start; i < emptyCount; i++)
+            if(isLegal(player, empties[i]) && !isEye(player, empties[i])) return empties[i];
+        for(int i = 0; i < start; i++)
+            if(isLegal(player, empties[i]) && !isEye(player, empties[i])) return empties[i];
+        return PASS;
+    }
+
+
+    /**
+     * Plays a move, capturing whatever it leaves without liberties. The move must be legal.
+     * @param player Index of the player.
+     * @param p Point to play on.
+     */
+    public void play(int player, int p) {
+        place(player, p);
+
+        //like GoLogic, every group left without liberties is taken at once, even if taking one of them would give
+        //another a liberty back
+        int dead = 0;
+        for(int d : directions) {
+            final int q = p + d;
+            if(color[q] >= 0 && color[q] != player && liberties[group[q]] == 0) {
+                final int g = group[q];
+                boolean seen = false;
+                for(int i = 0; i < dead; i++)
+                    if(captured[i] == g) seen = true;
+                if(!seen) captured[dead++] = g;
+            }
+        }
+        for(int i = 0; i < dead; i++)
+            captures[player] += capture(captured[i]);
+    }
+
+
+    /**
+     * Plays random moves until every player passes in a row or the move limit is reached.
+     * @param player Index of the player to move first.
+     * @param random Source of the moves.
+     * @param maxMoves Most moves to play; GoLogic has no ko rule, so a game can otherwise go on forever.
+     * @return Number of moves played.
+     */
+    public int playout(int player, Random random, int maxMoves) {
+        int passes = 0;
+        int moves = 0;
+        while(passes < players && moves < maxMoves) {
+            final int p = randomMove(player, random);
+            if(p == PASS) passes++;
+            else {
+                play(player, p);
+                passes = 0;
+                moves++;
+            }
+            player = (player + 1) % players;
+        }
+        return moves;
+    }
+
+
+    /**
+     * Puts down a stone and joins it up with its neighbours, without looking for captures.
+     */
+    private void place(int player, int p) {
+        removeEmpty(p);
+        color[p] = player;
+        group[p] = p;
+        next[p] = p;
+        stones[p] = 1;
+        liberties[p] = 0;
+
+        for(int d : directions) {
+            final int q = p + d;
+            if(color[q] == EMPTY) liberties[p]++;
+            else if(color[q] >= 0) liberties[group[q]]--;
+        }
+        for(int d : directions) {
+            final int q = p + d;
+            if(color[q] == player && group[q] != group[p]) merge(group[p], group[q]);
+        }
+    }
+
+
+    /**
+     * Joins two groups, relabelling the smaller one.
+     */
+    private void merge(int a, int b) {
+        if(stones[a] < stones[b]) {
+            final int t = a;
+            a = b;
+            b = t;
+        }
+
+        int s = b;
+        do {
+            group[s] = a;
+            s = next[s];
+        } while(s != b);
+
+        //splice the two circles together
+        final int t = next[a];
+        next[a] = next[b];
+        next[b] = t;
+
+        stones[a] += stones[b];
+        liberties[a] += liberties[b];
+    }
+
+
+    /**
+     * Takes a group off the board.
+     * @return Number of stones removed.
+     */
+    private int capture(int g) {
+        final int count = stones[g];
+        int s = g;
+        do {
+            final int following = next[s];
+            color[s] = EMPTY;
+            addEmpty(s);
+            for(int d : directions) {
+                final int q = s + d;
+                if(color[q] >= 0) liberties[group[q]]++;
+            }
+            s = following;
+        } while(s != g);
+        return count;
+    }
+
+
+    /**
+     * Counts how many of a point's neighbours are in a group.
+     */
+    private int touching(int g, int p) {
+        int count = 0;
+        for(int d : directions)
+            if(color[p + d] >= 0 && group[p + d] == g) count++;
+        return count;
+    }
+
+
+    private void addEmpty(int p) {
+        emptyIndex[p] = emptyCount;
+        empties[emptyCount++] = p;
+    }
+
+
+    private void removeEmpty(int p) {
+        final int last = empties[--emptyCount];
+        final int index = emptyIndex[p];
+        empties[index] = last;
+        emptyIndex[last] = index;
+    }
+}
@@ -0,0 +1,315 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.MoveUndo;
+
+import java.util.Arrays;
+
+/**
+ * Max-n search for games of reversi with more than two players. Instead of a single score, every position is scored
+ * with a vector holding a score for each player, and whoever is on move picks the child which is best for themselves.
+ * This models opponents which play for their own gain, rather than assuming they all gang up on one player like a
+ * paranoid alpha-beta search does.
+ *
+ * Each player scores the number of discs they own plus a bonus for every corner. Scores are never negative, and
+ * since every move adds one disc and corners never change hands, the total of the scores below any position is known
+ * in advance. This allows shallow pruning: once the player on move has found a child worth so much to them that what
+ * is left could not beat what the player before them already has, the rest of the children cannot change that
+ * player's choice and are skipped. This needs the two players to hold nearly all of the board between them, so with
+ * four players it seldom fires, while with two it cuts the search down a lot.
+ *
+ * The search copies the position it is given, so it can be interrupted at any time by throwing from poll().
+ */
+public class MaxNSearch {
+    /// Score of a single disc.
+    public static final int DISC = 16;
+    /// Extra score for owning a corner.
+    public static final int CORNER = 4 * DISC;
+
+    private static final int POLL_INTERVAL = 1024;
+
+    private final Game game;
+    private final GameLogic logic;
+    private boolean shallowPruning = true;
+
+    /// The IDs of the players, and the index of each ID's score in a score vector.
+    private int[] players = new int[0];
+    private int[] slots = new int[0];
+
+    // State of the search running right now
+    private GameLogicCache cache;
+    private Board board;
+    /// Number of discs and of taken corners on the board.
+    private int pieces;
+    private int corners;
+    private MoveUndo[] undo = new MoveUndo[0];
+    private MoveCommand[] commands = new MoveCommand[0];
+    private int[][] moveLists = new int[0][];
+    private int[] playedMoves = new int[0];
+    /// Score vector of the best child found so far at each ply.
+    private int[][] vectors = new int[0][];
+    private long nodes = 0;
+
+    private int bestMove = -1;
+    private int[] bestScores = new int[0];
+
+
+    /**
+     * Constructs a search for positions in a game. The players in the game are read at the start of every search.
+     * @param game Game to search, which decides the order players move in.
+     */
+    public MaxNSearch(Game game) {
+        this.game = game;
+        this.logic = game.getGameLogic();
+    }
+
+
+    /**
+     * Turns shallow pruning on or off. Pruning never changes the result, this is only useful for testing.
+     * @param enabled True to prune, which is the default.
+     * @return This object for chaining.
+     */
+    public MaxNSearch setShallowPruning(boolean enabled) {
+        shallowPruning = enabled;
+        return this;
+    }
+
+
+    /**
+     * Searches a position to a fixed depth.
+     * @param cache Cache of the position, which is copied.
+     * @param board Position to search from, which is copied.
+     * @param player Player ID which is on move.
+     * @param depth Number of moves to search ahead, at least 1.
+     * @return Tile number of the best move for <code>player</code>, or -1 if they cannot move.
+     */
+    public int search(GameLogicCache cache, Board board, int player, int depth) {
+        this.cache = cache.duplicate();
+        this.board = new Board(board);
+        nodes = 0;
+        setupPlayers();
+        countPieces();
+
+        final int[] moves = moves(0);
+        final int count = logic.getValidMoves(this.cache, this.board, player, moves);
+        if(count == 0) {
+            bestMove = -1;
+            return -1;
+        }
+
+        //search the best move of the last search first, so it wins any ties
+        for(int i = 1; i < count; i++) {
+            if(moves[i] == bestMove) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = bestMove;
+                break;
+            }
+        }
+
+        final int slot = slots[player];
+        int best = -1;
+        final int[] scores = vector(0);
+        for(int n = 0; n < count; n++) {
+            playMove(player, moves[n], 0);
+            search(game.getNextPlayerID(player), depth - 1, 1, slot, best < 0 ? 0 : scores[slot]);
+            unplayMove(0);
+
+            final int[] child = vectors[1];
+            if(best < 0 || child[slot] > scores[slot]) {
+                best = moves[n];
+                System.arraycopy(child, 0, scores, 0, scores.length);
+            }
+        }
+
+        bestMove = best;
+        bestScores = Arrays.copyOf(scores, scores.length);
+        return best;
+    }
+
+
+    /**
+     * @return Tile number of the move found by the last search, -1 if there was none.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+
+    /**
+     * Retrieves what the last search expects a player to end up with after the best move.
+     * @param player Player ID.
+     * @return Score for the player, 0 if they were not part of the search.
+     */
+    public int getScore(int player) {
+        return player >= 0 && player < slots.length && slots[player] >= 0 && slots[player] < bestScores.length ?
+                bestScores[slots[player]] : 0;
+    }
+
+
+    /**
+     * @return Number of positions visited by the last search.
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+
+    /**
+     * Called every so often while searching. Override and throw an unchecked exception to stop a search early.
+     */
+    protected void poll() {}
+
+
+    /**
+     * Searches a position, leaving its score vector in <code>vectors[ply]</code>.
+     * @param parentSlot Score slot of the player who moved into this position, -1 to never prune.
+     * @param parentBest Best score that player has been able to find so far.
+     */
+    private void search(int player, int depth, int ply, int parentSlot, int parentBest) {
+        if((++nodes % POLL_INTERVAL) == 0) poll();
+
+        final int[] scores = vector(ply);
+        if(depth <= 0) {
+            evaluate(scores);
+            return;
+        }
+
+        final int[] moves = moves(ply);
+        int count = logic.getValidMoves(cache, board, player, moves);
+        for(int passes = 1; count == 0; passes++) {
+            if(passes >= players.length) { //nobody can move
+                evaluate(scores);
+                return;
+            }
+            player = game.getNextPlayerID(player);
+            count = logic.getValidMoves(cache, board, player, moves);
+        }
+
+        final int slot = slots[player];
+        //what the player before us can still get is whatever we leave over
+        final boolean canPrune = shallowPruning && parentSlot >= 0 && parentSlot != slot;
+        final int maxSum = canPrune ? (pieces + depth) * DISC + Math.min(4, corners + depth) * CORNER : 0;
+        boolean first = true;
+        for(int n = 0; n < count; n++) {
+            playMove(player, moves[n], ply);
+            search(game.getNextPlayerID(player), depth - 1, ply + 1, slot, first ? 0 : scores[slot]);
+            unplayMove(ply);
+
+            final int[] child = vectors[ply + 1];
+            if(first || child[slot] > scores[slot]) {
+                System.arraycopy(child, 0, scores, 0, scores.length);
+                first = false;
+            }
+
+            if(canPrune && scores[slot] >= maxSum - parentBest) break;
+        }
+    }
+
+
+    /**
+     * Scores the board for every player.
+     */
+    private void evaluate(int[] scores) {
+        Arrays.fill(scores, 0);
+        final int last = board.size - 1;
+        for(int row = 0; row < board.size; row++) {
+            for(int col = 0; col < board.size; col++) {
+                final int owner = board.at(row, col);
+                if(owner < 0 || owner >= slots.length || slots[owner] < 0) continue;
+                scores[slots[owner]] += DISC;
+                if((row == 0 || row == last) && (col == 0 || col == last)) scores[slots[owner]] += CORNER;
+            }
+        }
+    }
+
+
+    /**
+     * Counts the discs and taken corners on the board.
+     */
+    private void countPieces() {
+        final int last = board.size - 1;
+        pieces = board.getTotalPieces();
+        corners = 0;
+        for(int row = 0; row <= last; row += last)
+            for(int col = 0; col <= last; col += last)
+                if(board.at(row, col) >= 0) corners++;
+    }
+
+
+    private boolean isCorner(int move) {
+        final int last = board.size - 1;
+        final int row = move / board.size;
+        final int col = move % board.size;
+        return (row == 0 || row == last) && (col == 0 || col == last);
+    }
+
+
+    private void playMove(int player, int move, int ply) {
+        if(undo[ply] == null) undo[ply] = logic.createUndo();
+        //players take turns in order, so a ply's command only changes player after a pass
+        MoveCommand command = commands[ply];
+        if(command == null || command.playerID != player)
+            command = commands[ply] = new MoveCommand(player, new BoardIndex());
+        command.position.row = move / board.size;
+        command.position.column = move % board.size;
+        logic.makeMove(cache, board, command, undo[ply]);
+        pieces++;
+        if(isCorner(move)) corners++;
+        playedMoves[ply] = move;
+    }
+
+
+    private void unplayMove(int ply) {
+        logic.unmakeMove(cache, board, undo[ply]);
+        pieces--;
+        if(isCorner(playedMoves[ply])) corners--;
+    }
+
+
+    /**
+     * Retrieves the move list for a ply, growing the per ply buffers as needed.
+     */
+    private int[] moves(int ply) {
+        if(ply >= moveLists.length) {
+            moveLists = Arrays.copyOf(moveLists, ply + 8);
+            undo = Arrays.copyOf(undo, ply + 8);
+            commands = Arrays.copyOf(commands, ply + 8);
+            playedMoves = Arrays.copyOf(playedMoves, ply + 8);
+        }
+        if(moveLists[ply] == null) moveLists[ply] = new int[board.size * board.size];
+        return moveLists[ply];
+    }
+
+
+    private int[] vector(int ply) {
+        if(ply >= vectors.length) vectors = Arrays.copyOf(vectors, ply + 8);
+        if(vectors[ply] == null || vectors[ply].length != players.length) vectors[ply] = new int[players.length];
+        return vectors[ply];
+    }
+
+
+    /**
+     * Reads the players from the game.
+     */
+    private void setupPlayers() {
+        final Integer[] used = game.getUsedPlayers();
+        if(used.length != players.length) {
+            players = new int[used.length];
+            vectors = new int[0][];
+        }
+
+        int maxID = 0;
+        for(int i = 0; i < used.length; i++) {
+            players[i] = used[i];
+            maxID = Math.max(maxID, used[i]);
+        }
+        slots = new int[maxID + 1];
+        Arrays.fill(slots, -1);
+        for(int i = 0; i < players.length; i++) slots[players[i]] = i;
+    }
+}
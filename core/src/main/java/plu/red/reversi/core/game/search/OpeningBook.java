@@ -0,0 +1,160 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.Zobrist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only book of opening moves for Reversi, keyed by the hash of a position and the player to move.
+ *
+ * The book is stored in a flat file of fixed-size entries sorted by key, which is memory mapped when opened instead
+ * of being read into the heap; looking up a position is a binary search over the mapped file and does not create any
+ * objects. Books are written by OpeningBookBuilder.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *     int magic, int version, int entry count, int reserved
+ *     entry count * { long key, int move, int weight }
+ * </pre>
+ * A key may have more than one entry, one for each move seen in that position; the one with the highest weight is
+ * the move the book plays.
+ */
+public class OpeningBook {
+    /// Identifies a book file ("RBOK").
+    public static final int MAGIC = 0x52424F4B;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 16;
+
+    /// Where the bots look for a book if one is not given to them.
+    public static File bookFile = new File("OpeningBook.dat");
+
+    /// Mixed into keys so boards of different sizes never share entries.
+    private static final long SIZE_SALT = 0x9E3779B97F4A7C15L;
+
+    private static OpeningBook defaultBook = null;
+    private static boolean defaultLoaded = false;
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+
+    /**
+     * Wraps a buffer holding the contents of a book file.
+     * @param buffer Buffer positioned anywhere; only absolute reads are used.
+     * @throws IOException If the buffer does not hold a valid book.
+     */
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not an opening book");
+        if(buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported opening book version " + buffer.getInt(4));
+        count = buffer.getInt(8);
+        if(count < 0 || buffer.capacity() < HEADER_SIZE + (long)count * ENTRY_SIZE)
+            throw new IOException("Opening book is truncated");
+        this.buffer = buffer;
+    }
+
+
+    /**
+     * Opens a book by memory mapping its file.
+     * @param file Book file to open.
+     * @return The opened book.
+     * @throws IOException If the file cannot be read or is not a valid book.
+     */
+    public static OpeningBook open(File file) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel()) {
+            //the mapping stays valid after the channel is closed
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+
+    /**
+     * Retrieves the book stored in <code>bookFile</code>, opening it the first time this is called.
+     * @return The default book, or null if there is no book file or it could not be read.
+     */
+    public static synchronized OpeningBook getDefault() {
+        if(!defaultLoaded) {
+            defaultLoaded = true;
+            if(bookFile.exists()) {
+                try {
+                    defaultBook = open(bookFile);
+                } catch(IOException e) {
+                    System.err.println("Could not load opening book: " + e.getMessage());
+                }
+            }
+        }
+        return defaultBook;
+    }
+
+
+    /**
+     * Calculates the key a position is stored under.
+     * @param board Board to look up.
+     * @param player Player ID which is to move.
+     * @return 64-bit book key.
+     */
+    public static long key(Board board, int player) {
+        return board.getHash() ^ Zobrist.side(player) ^ (board.size * SIZE_SALT);
+    }
+
+
+    /**
+     * Looks up the move to play in a position.
+     * @param board Board to look up.
+     * @param player Player ID which is to move.
+     * @return Tile number (row * size + column) of the book move, or -1 if the position is not in the book.
+     */
+    public int probe(Board board, int player) {
+        return probe(key(board, player));
+    }
+
+
+    /**
+     * Looks up the move to play for a key.
+     * @param key Key calculated by key().
+     * @return Tile number of the book move, or -1 if the key is not in the book.
+     */
+    public int probe(long key) {
+        //find the first entry with the key
+        int lo = 0;
+        int hi = count;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(keyAt(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+
+        int move = -1;
+        int weight = Integer.MIN_VALUE;
+        for(int i = lo; i < count && keyAt(i) == key; i++) {
+            int offset = HEADER_SIZE + i * ENTRY_SIZE;
+            int w = buffer.getInt(offset + 12);
+            if(w > weight) {
+                weight = w;
+                move = buffer.getInt(offset + 8);
+            }
+        }
+        return move;
+    }
+
+
+    /**
+     * @return Number of entries in the book.
+     */
+    public int size() {
+        return count;
+    }
+
+
+    private long keyAt(int i) {
+        return buffer.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,276 @@
+package plu.red.reversi.core.game.search;
+
+import org.codehaus.jettison.json.JSONObject;
+import plu.red.reversi.core.Client;
+import plu.red.reversi.core.Controller;
+import plu.red.reversi.core.IMainGUI;
+import plu.red.reversi.core.SettingsLoader;
+import plu.red.reversi.core.command.BoardCommand;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.command.SetCommand;
+import plu.red.reversi.core.db.DBUtilities;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.History;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.util.Color;
+import plu.red.reversi.core.util.DataMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Collects the opening moves of finished Reversi games and writes them out as an OpeningBook.
+ *
+ * Games can come from any History, from the saved games in the database, or from games the bot plays against itself.
+ * For every position in the first few moves of a game the builder counts how often each move was played and how well
+ * it turned out for the player who made it; a move is worth two points for a win and one for a draw. When the book is
+ * written, the points become the weight of the move, so moves which were both popular and successful are preferred.
+ *
+ * Can also be run from the command line:
+ * <pre>
+ *     OpeningBookBuilder [output file] [self-play games] [search depth] [plies]
+ * </pre>
+ */
+public class OpeningBookBuilder {
+    /// Default number of moves from the start of each game which are added to the book.
+    public static final int DEFAULT_PLIES = 20;
+
+    /// Points for each (position, move) pair; the value is {games, points}.
+    private final Map<Long, Map<Integer, int[]>> lines = new HashMap<>();
+    private int minGames = 1;
+    private int gamesAdded = 0;
+
+
+    /**
+     * Sets how many games a move must have been seen in before it is written to the book. Defaults to 1.
+     * @param games Minimum number of games.
+     * @return This builder for chaining.
+     */
+    public OpeningBookBuilder setMinGames(int games) {
+        this.minGames = Math.max(1, games);
+        return this;
+    }
+
+
+    /**
+     * @return Number of games which have been added to the book so far.
+     */
+    public int getGamesAdded() {
+        return gamesAdded;
+    }
+
+
+    /**
+     * Replays a game of reversi and adds its opening moves to the book.
+     * @param history History of the game, including the commands which set up the board.
+     * @param size Size of the board the game was played on.
+     * @param plies Number of moves from the start of the game to add.
+     * @return False if the history could not be replayed, in which case nothing is added.
+     */
+    public boolean addHistory(History history, int size, int plies) {
+        final GameLogic logic = new ReversiLogic(null);
+        final GameLogicCache cache = logic.createCache();
+        final Board board = new Board(size);
+
+        //{key, move, player} of each move to credit once the result is known
+        List<long[]> seen = new ArrayList<>();
+        List<Integer> players = new ArrayList<>();
+        try {
+            for(int i = 0; i < history.getNumBoardCommands(); i++) {
+                BoardCommand c = history.getBoardCommand(i);
+                if(!players.contains(c.playerID)) players.add(c.playerID);
+
+                if(c instanceof SetCommand)
+                    logic.apply(cache, board, (SetCommand)c, false, false);
+                else if(c instanceof MoveCommand) {
+                    if(seen.size() < plies)
+                        seen.add(new long[] {
+                                OpeningBook.key(board, c.playerID),
+                                c.position.row * size + c.position.column,
+                                c.playerID});
+                    logic.play(cache, board, (MoveCommand)c, false, false);
+                }
+            }
+        } catch(InvalidParameterException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        if(players.size() != 2) return false;
+
+        //games which were saved before the end count as draws, so they only add to how popular a move is
+        boolean over = true;
+        for(int player : players)
+            if(logic.canPlay(cache, board, player)) over = false;
+
+        int best = Integer.MIN_VALUE;
+        int winners = 0;
+        Map<Integer, Integer> scores = new HashMap<>();
+        for(int player : players) {
+            int score = logic.getScore(cache, board, player);
+            scores.put(player, score);
+            if(score > best) {
+                best = score;
+                winners = 1;
+            } else if(score == best) winners++;
+        }
+
+        for(long[] s : seen) {
+            int player = (int)s[2];
+            int points = !over || winners > 1 ? 1 : scores.get(player) == best ? 2 : 0;
+            int[] stats = lines.computeIfAbsent(s[0], k -> new HashMap<>()).computeIfAbsent((int)s[1], k -> new int[2]);
+            stats[0]++;
+            stats[1] += points;
+        }
+        gamesAdded++;
+        return true;
+    }
+
+
+    /**
+     * Adds every saved game of reversi in the database to the book.
+     * @param db Database to read from.
+     * @param plies Number of moves from the start of each game to add.
+     * @return Number of games which were added.
+     */
+    public int addDatabase(DBUtilities db, int plies) {
+        String[][] games = db.getGames();
+        if(games == null) return 0;
+
+        int added = 0;
+        for(String[] g : games) {
+            int id;
+            try {
+                id = Integer.parseInt(g[1]);
+            } catch(NumberFormatException e) {
+                continue;
+            }
+            if(db.loadGameType(id) != GameLogic.Type.REVERSI.ordinal()) continue;
+
+            JSONObject json = db.loadGameSettings(id);
+            Integer size = json == null ? null : new DataMap(json).get(SettingsLoader.GAME_BOARD_SIZE, Integer.class);
+            History history = db.loadGame(id);
+            if(history != null && addHistory(history, size == null ? 8 : size, plies)) added++;
+        }
+        return added;
+    }
+
+
+    /**
+     * Plays a game of reversi between two bots and adds its opening moves to the book. The first few moves are
+     * picked at random so that repeated games explore different openings.
+     * @param game A newly initialized game of reversi with two players.
+     * @param depth How deep the bots search.
+     * @param randomPlies Number of moves at the start of the game to pick at random.
+     * @param plies Number of moves from the start of the game to add.
+     * @param random Source of the random moves.
+     * @return False if the game could not be added.
+     */
+    public boolean addSelfPlay(Game game, int depth, int randomPlies, int plies, Random random) {
+        if(!(game.getGameLogic() instanceof ReversiLogic))
+            throw new IllegalArgumentException("Self play needs a game of reversi");
+        Integer[] players = game.getUsedPlayers();
+        if(players.length != 2)
+            throw new IllegalArgumentException("Self play needs exactly two players");
+
+        final GameLogic logic = game.getGameLogic();
+        final GameLogicCache cache = game.getGameCache();
+        final Board board = game.getBoard();
+        final int[] moves = new int[board.size * board.size];
+
+        int player = game.getCurrentPlayer().getID();
+        for(int ply = 0; ; ply++) {
+            if(!logic.canPlay(cache, board, player)) {
+                player = player == players[0] ? players[1] : players[0];
+                if(!logic.canPlay(cache, board, player)) break;
+            }
+
+            BoardIndex index;
+            if(ply < randomPlies) {
+                int count = logic.getValidMoves(cache, board, player, moves);
+                int cell = moves[random.nextInt(count)];
+                index = new BoardIndex(cell / board.size, cell % board.size);
+            } else index = new ReversiMinimax(game, player, depth).getBestPlay();
+
+            logic.play(cache, board, new MoveCommand(player, index), false, true);
+            player = player == players[0] ? players[1] : players[0];
+        }
+
+        return addHistory(game.getHistory(), board.size, plies);
+    }
+
+
+    /**
+     * Writes everything collected so far out as a book file which can be read by OpeningBook.
+     * @param file File to write.
+     * @return Number of entries written.
+     * @throws IOException If the file cannot be written.
+     */
+    public int write(File file) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for(Map.Entry<Long, Map<Integer, int[]>> position : lines.entrySet())
+            for(Map.Entry<Integer, int[]> move : position.getValue().entrySet())
+                if(move.getValue()[0] >= minGames)
+                    entries.add(new long[] {position.getKey(), move.getKey(), move.getValue()[1]});
+        entries.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(0);
+            for(long[] e : entries) {
+                out.writeLong(e[0]);
+                out.writeInt((int)e[1]);
+                out.writeInt((int)e[2]);
+            }
+        }
+        return entries.size();
+    }
+
+
+    /**
+     * Builds a book from the saved games in the database plus some self play.
+     * @param args [output file] [self-play games] [search depth] [plies]
+     * @throws IOException If the book cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = args.length > 0 ? new File(args[0]) : OpeningBook.bookFile;
+        int selfPlay = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int plies = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PLIES;
+
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        System.out.println("Added " + builder.addDatabase(DBUtilities.INSTANCE, plies) + " saved games");
+
+        if(selfPlay > 0) {
+            Controller.init(new Client(null, null, null, null));
+            Random random = new Random();
+            for(int i = 0; i < selfPlay; i++) {
+                Game game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+                game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                        .setLogic(new ReversiLogic(game));
+                new NullPlayer(game, Color.BLACK);
+                new NullPlayer(game, Color.WHITE);
+                game.initialize();
+                builder.addSelfPlay(game, depth, 6, plies, random);
+            }
+            System.out.println("Added " + selfPlay + " self play games");
+        }
+
+        System.out.println("Wrote " + builder.write(file) + " entries to " + file);
+    }
+}
@@ -0,0 +1,228 @@
+package plu.red.reversi.core.game.search;
+
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
+import plu.red.reversi.core.game.logic.ReversiLogicCache;
+
+/**
+ * Evaluates Reversi positions on an 8x8 board using tables of precomputed pattern scores, plus mobility and frontier
+ * terms.
+ *
+ * Every edge, main diagonal and 3x3 corner region is a pattern; the tiles of a pattern are read straight out of the
+ * bitboard into a base 3 index (empty, ours, theirs) which is looked up in a table built when the class is loaded.
+ * The tables know about things which are expensive to work out one tile at a time, such as discs anchored to a corner
+ * being stable, or tiles next to an empty corner giving it away. A leaf therefore costs a handful of shifts, a dozen
+ * table reads and two move generations, no matter what the position looks like.
+ *
+ * Scores estimate the final disc margin at 16 per disc, the same scale ReversiMinimax uses for finished games.
+ * Positions which cannot be held in a bitboard (other board sizes, or more than two players) are scored by a
+ * DiscEvaluator instead.
+ */
+public class PatternEvaluator implements Evaluator {
+    // Weights of the different terms, at 16 per disc
+    private static final int CORNER = 64;
+    private static final int X_SQUARE = 32;
+    private static final int C_SQUARE = 12;
+    private static final int STABLE = 20;
+    private static final int NEAR_CORNER = 6;
+    private static final int DIAGONAL_RUN = 6;
+    private static final int A_B_SQUARE = 2;
+    private static final int MOBILITY = 10;
+    private static final int FRONTIER = 5;
+
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    /// Multiplying the first column by this gathers it into the top byte, with bit i holding row i.
+    private static final long COLUMN_GATHER = 0x0102040810204080L;
+    private static final long MAIN_DIAGONAL = 0x8040201008040201L;
+    private static final long ANTI_DIAGONAL = 0x0102040810204080L;
+    private static final long NOT_FIRST_COLUMN = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_LAST_COLUMN = 0x7F7F7F7F7F7F7F7FL;
+
+    /// Base 3 value of up to 9 bits, so ours + 2 * theirs is the index of a pattern.
+    private static final int[] BASE3 = new int[512];
+    /// Score of an edge, with the corners at either end.
+    private static final int[] EDGE = new int[6561];
+    /// Score of a main diagonal, with the corners at either end.
+    private static final int[] DIAGONAL = new int[6561];
+    /// Score of the 3x3 region in a corner, indexed by row * 3 + column with the corner tile first.
+    private static final int[] CORNER_REGION = new int[19683];
+
+    static {
+        for(int bits = 0; bits < BASE3.length; bits++) {
+            int value = 0;
+            for(int i = 8; i >= 0; i--)
+                value = value * 3 + ((bits >>> i) & 1);
+            BASE3[bits] = value;
+        }
+
+        //build each table as our credit minus theirs, which keeps every score symmetric between the players
+        int[] line = new int[9];
+        for(int index = 0; index < EDGE.length; index++) {
+            decode(index, line, 8);
+            EDGE[index] = edgeCredit(line, 1) - edgeCredit(line, 2);
+            DIAGONAL[index] = diagonalCredit(line, 1) - diagonalCredit(line, 2);
+        }
+        for(int index = 0; index < CORNER_REGION.length; index++) {
+            decode(index, line, 9);
+            CORNER_REGION[index] = cornerCredit(line, 1) - cornerCredit(line, 2);
+        }
+    }
+
+    private final DiscEvaluator fallback = new DiscEvaluator();
+
+
+    @Override
+    public int evaluate(GameLogic logic, GameLogicCache cache, Board board, int player) {
+        final ReversiBitboard bitboard = cache instanceof ReversiLogicCache ?
+                ((ReversiLogicCache)cache).getBitboard(board) : null;
+        if(bitboard == null) return fallback.evaluate(logic, cache, board, player);
+        return evaluate(bitboard.discs(player), bitboard.opponentDiscs(player));
+    }
+
+
+    /**
+     * Scores a position held in a pair of masks.
+     * @param own Tiles of the player to score for.
+     * @param opp Tiles of their opponent.
+     * @return Score of the position for the owner of <code>own</code>.
+     */
+    public static int evaluate(long own, long opp) {
+        int score = 0;
+
+        //edges, read as rows and gathered columns
+        score += EDGE[index(own & 0xFF, opp & 0xFF)];
+        score += EDGE[index(own >>> 56, opp >>> 56)];
+        score += EDGE[index(column(own), column(opp))];
+        score += EDGE[index(column(own >>> 7), column(opp >>> 7))];
+
+        //diagonals
+        score += DIAGONAL[index(gather(own & MAIN_DIAGONAL), gather(opp & MAIN_DIAGONAL))];
+        score += DIAGONAL[index(gather(own & ANTI_DIAGONAL), gather(opp & ANTI_DIAGONAL))];
+
+        //corner regions; flipping the board brings each corner to the first tile
+        score += CORNER_REGION[index(region(own), region(opp))];
+        long ownFlip = Long.reverseBytes(own);
+        long oppFlip = Long.reverseBytes(opp);
+        score += CORNER_REGION[index(region(ownFlip), region(oppFlip))];
+        score += CORNER_REGION[index(region(Long.reverse(ownFlip)), region(Long.reverse(oppFlip)))];
+        score += CORNER_REGION[index(region(Long.reverse(own)), region(Long.reverse(opp)))];
+
+        //having more moves than the opponent, and fewer discs next to empty tiles, both keep options open
+        score += MOBILITY * (Long.bitCount(ReversiBitboard.moves(own, opp)) -
+                Long.bitCount(ReversiBitboard.moves(opp, own)));
+        final long frontier = around(~(own | opp));
+        score -= FRONTIER * (Long.bitCount(own & frontier) - Long.bitCount(opp & frontier));
+
+        return score;
+    }
+
+
+    private static int index(long own, long opp) {
+        return BASE3[(int)own] + 2 * BASE3[(int)opp];
+    }
+
+
+    /**
+     * Gathers the first column into the bits of a byte.
+     */
+    private static long column(long discs) {
+        return ((discs & FIRST_COLUMN) * COLUMN_GATHER) >>> 56;
+    }
+
+
+    /**
+     * Gathers a diagonal (with one tile in each row and column) into the bits of a byte, ordered by column.
+     */
+    private static long gather(long diagonal) {
+        return (diagonal * FIRST_COLUMN) >>> 56;
+    }
+
+
+    /**
+     * Gathers the 3x3 region in the first corner into 9 bits.
+     */
+    private static long region(long discs) {
+        return (discs & 0x7) | ((discs >>> 5) & 0x38) | ((discs >>> 10) & 0x1C0);
+    }
+
+
+    /**
+     * Finds every tile next to one of the given tiles, including the tiles themselves.
+     */
+    private static long around(long tiles) {
+        long row = tiles | ((tiles << 1) & NOT_FIRST_COLUMN) | ((tiles >>> 1) & NOT_LAST_COLUMN);
+        return row | (row << 8) | (row >>> 8);
+    }
+
+
+    /**
+     * Splits a pattern index back into its tiles: 0 for empty, 1 for ours, 2 for theirs.
+     */
+    private static void decode(int index, int[] tiles, int length) {
+        for(int i = 0; i < length; i++) {
+            tiles[i] = index % 3;
+            index /= 3;
+        }
+    }
+
+
+    /**
+     * Scores an edge for one side. Discs running along the edge from a corner they own are stable, as is every disc
+     * on a full edge. Taking a tile next to an empty corner is a risk.
+     */
+    private static int edgeCredit(int[] line, int c) {
+        int credit = 0;
+
+        boolean full = true;
+        for(int i = 0; i < 8; i++)
+            if(line[i] == 0) full = false;
+
+        if(full) {
+            for(int i = 1; i < 7; i++)
+                if(line[i] == c) credit += STABLE;
+        } else {
+            if(line[0] == c)
+                for(int i = 1; i < 7 && line[i] == c; i++) credit += STABLE;
+            if(line[7] == c)
+                for(int i = 6; i > 0 && line[i] == c; i--) credit += STABLE;
+        }
+
+        if(line[0] == 0 && line[1] == c) credit -= C_SQUARE;
+        if(line[7] == 0 && line[6] == c) credit -= C_SQUARE;
+
+        for(int i = 2; i < 6; i++)
+            if(line[i] == c) credit += A_B_SQUARE;
+        return credit;
+    }
+
+
+    /**
+     * Scores a main diagonal for one side. Discs running along it from a corner they own are hard to take back.
+     */
+    private static int diagonalCredit(int[] line, int c) {
+        int credit = 0;
+        if(line[0] == c)
+            for(int i = 1; i < 7 && line[i] == c; i++) credit += DIAGONAL_RUN;
+        if(line[7] == c)
+            for(int i = 6; i > 0 && line[i] == c; i--) credit += DIAGONAL_RUN;
+        return credit;
+    }
+
+
+    /**
+     * Scores a 3x3 corner region for one side. Owning the corner is worth a lot, and makes the discs around it safer;
+     * the tile diagonally next to an empty corner is the one which most often gives it away.
+     */
+    private static int cornerCredit(int[] region, int c) {
+        int credit = 0;
+        if(region[0] == c) {
+            credit += CORNER;
+            for(int i = 1; i < 9; i++)
+                if(region[i] == c) credit += NEAR_CORNER;
+        } else if(region[0] == 0 && region[4] == c)
+            credit -= X_SQUARE;
+        return credit;
+    }
+}
@@ -0,0 +1,176 @@
+package plu.red.reversi.core.game.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+
+/**
+ * Totals of every search run in this process, for monitoring to scrape. Every search adds its SearchStats here when
+ * it finishes. The first time that happens the counters are registered with the platform MBean server as
+ * <code>plu.red.reversi:type=SearchCounters</code>; where there is no JMX (such as on Android) they are still kept,
+ * just not published.
+ *
+ * @see SearchStats
+ */
+public final class SearchCounters implements SearchCountersMBean {
+    /// Name the counters are published under.
+    public static final String OBJECT_NAME = "plu.red.reversi:type=SearchCounters";
+
+    private static final SearchCounters INSTANCE = new SearchCounters();
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong cutoffs = new AtomicLong();
+    private final AtomicLong firstMoveCutoffs = new AtomicLong();
+    private final AtomicLong elapsedNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private volatile boolean registered = false;
+
+
+    private SearchCounters() {}
+
+
+    /**
+     * @return The counters for this process.
+     */
+    public static SearchCounters getInstance() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * Adds a finished search to the totals.
+     * @param stats What the search did.
+     */
+    public void record(SearchStats stats) {
+        if(!registered) register();
+
+        searches.incrementAndGet();
+        nodes.addAndGet(stats.getNodes());
+        evaluations.addAndGet(stats.getEvaluations());
+        probes.addAndGet(stats.getProbes());
+        hits.addAndGet(stats.getHits());
+        cutoffs.addAndGet(stats.getTotalCutoffs());
+        firstMoveCutoffs.addAndGet(stats.getCutoffs(0));
+        elapsedNanos.addAndGet(stats.getElapsedNanos());
+        if(stats.getAllocatedBytes() != SearchStats.UNKNOWN) allocatedBytes.addAndGet(stats.getAllocatedBytes());
+
+        final int depth = stats.getMaxDepth();
+        for(int d = maxDepth.get(); depth > d && !maxDepth.compareAndSet(d, depth); d = maxDepth.get());
+    }
+
+
+    /**
+     * Publishes the counters over JMX, if it has not been done already. Called by the first search, but can be called
+     * earlier so the counters show up before anything has searched.
+     */
+    public synchronized void register() {
+        if(registered) return;
+        registered = true;
+        try {
+            Jmx.register(this);
+        } catch(Throwable t) {
+            //no JMX on this platform, or something else already took the name
+        }
+    }
+
+
+    @Override
+    public long getSearches() {
+        return searches.get();
+    }
+
+
+    @Override
+    public long getNodes() {
+        return nodes.get();
+    }
+
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+
+    @Override
+    public long getProbes() {
+        return probes.get();
+    }
+
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+
+    @Override
+    public long getCutoffs() {
+        return cutoffs.get();
+    }
+
+
+    @Override
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs.get();
+    }
+
+
+    @Override
+    public long getElapsedMillis() {
+        return elapsedNanos.get() / 1000000;
+    }
+
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+
+    @Override
+    public long getNodesPerSecond() {
+        final long nanos = elapsedNanos.get();
+        return nanos <= 0 ? 0 : (long)(nodes.get() * 1e9 / nanos);
+    }
+
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+
+    /**
+     * Sets every counter back to 0.
+     */
+    @Override
+    public void reset() {
+        searches.set(0);
+        nodes.set(0);
+        evaluations.set(0);
+        probes.set(0);
+        hits.set(0);
+        cutoffs.set(0);
+        firstMoveCutoffs.set(0);
+        elapsedNanos.set(0);
+        allocatedBytes.set(0);
+        maxDepth.set(0);
+    }
+
+
+    /**
+     * Kept apart so the management classes are only loaded when the counters are registered.
+     */
+    private static final class Jmx {
+        static void register(SearchCounters counters) throws Exception {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(counters, new ObjectName(OBJECT_NAME));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package plu.red.reversi.core.game.search;
+
+/**
+ * Management interface of SearchCounters, which is what monitoring sees over JMX.
+ * @see SearchCounters
+ */
+public interface SearchCountersMBean {
+    long getSearches();
+    long getNodes();
+    long getEvaluations();
+    long getProbes();
+    long getHits();
+    long getCutoffs();
+    long getFirstMoveCutoffs();
+    long getElapsedMillis();
+    long getAllocatedBytes();
+    long getNodesPerSecond();
+    int getMaxDepth();
+    void reset();
+}
@@ -0,0 +1,296 @@
+package plu.red.reversi.core.game.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What a single search did: how many positions it visited, how well its move ordering and transposition table
+ * worked, how deep it got and what it cost. Every search fills one of these in, so a slow move can be put down to a
+ * wide tree, poor ordering or time lost somewhere else.
+ *
+ * Counting is not thread safe. Each thread of a parallel search keeps its own stats and they are added together with
+ * add() once the thread is done, so the counters in the search itself are plain fields.
+ *
+ * @see SearchCounters
+ */
+public class SearchStats {
+    /// Cutoffs are counted by the index of the move which caused them; later moves all share the last slot.
+    public static final int CUTOFF_SLOTS = 8;
+    /// Returned by getAllocatedBytes() when the JVM cannot measure allocation.
+    public static final long UNKNOWN = -1;
+
+    /// How many allocation measurements are running on each thread.
+    private static final ThreadLocal<int[]> measuring = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+    /// Set once measuring allocation has failed, so it is not tried again.
+    private static volatile boolean unsupported = false;
+
+    private long nodes = 0;
+    private long evaluations = 0;
+    private long probes = 0;
+    private long hits = 0;
+    private final long[] cutoffs = new long[CUTOFF_SLOTS];
+    private int maxDepth = 0;
+    private int completedDepth = 0;
+    private long elapsedNanos = 0;
+    private long allocatedBytes = UNKNOWN;
+
+
+    /**
+     * Counts positions visited.
+     * @param count Number of positions.
+     */
+    public void addNodes(long count) {
+        nodes += count;
+    }
+
+
+    /**
+     * Counts a position scored by the evaluator (or a playout, for searches which use them).
+     */
+    public void addEvaluation() {
+        evaluations++;
+    }
+
+
+    /**
+     * Counts a look up in the transposition table.
+     * @param hit True if the table had an entry for the position.
+     */
+    public void addProbe(boolean hit) {
+        probes++;
+        if(hit) hits++;
+    }
+
+
+    /**
+     * Counts a beta cutoff.
+     * @param moveIndex Index of the move which caused it in the order the moves were searched, 0 for the first.
+     */
+    public void addCutoff(int moveIndex) {
+        cutoffs[Math.min(moveIndex, CUTOFF_SLOTS - 1)]++;
+    }
+
+
+    /**
+     * Notes that the search reached a depth.
+     * @param depth Number of moves from the root.
+     */
+    public void reachDepth(int depth) {
+        if(depth > maxDepth) maxDepth = depth;
+    }
+
+
+    /**
+     * Notes that every move was searched to a depth, for searches which deepen one ply at a time.
+     * @param depth Nominal depth of the deepest finished iteration.
+     */
+    public void setCompletedDepth(int depth) {
+        completedDepth = depth;
+    }
+
+
+    /**
+     * Sets how long the whole search took.
+     * @param nanos Wall clock time in nanoseconds.
+     */
+    public void setElapsedNanos(long nanos) {
+        elapsedNanos = nanos;
+    }
+
+
+    /**
+     * Adds the counts of another set of stats to these, such as those of one thread of a parallel search. Depths are
+     * combined by taking the deepest, and the elapsed time is left alone.
+     * @param other Stats to add.
+     */
+    public synchronized void add(SearchStats other) {
+        nodes += other.nodes;
+        evaluations += other.evaluations;
+        probes += other.probes;
+        hits += other.hits;
+        for(int i = 0; i < CUTOFF_SLOTS; i++) cutoffs[i] += other.cutoffs[i];
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        completedDepth = Math.max(completedDepth, other.completedDepth);
+        if(other.allocatedBytes != UNKNOWN)
+            allocatedBytes = (allocatedBytes == UNKNOWN ? 0 : allocatedBytes) + other.allocatedBytes;
+    }
+
+
+    /**
+     * @return Number of positions visited.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    /**
+     * @return Number of positions scored by the evaluator.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+
+    /**
+     * @return Number of look ups in the transposition table.
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+
+    /**
+     * @return Number of look ups which found an entry.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+
+    /**
+     * @param moveIndex Index of the move in the order they were searched; the last slot counts every later move too.
+     * @return Number of cutoffs caused by the move at that index.
+     */
+    public long getCutoffs(int moveIndex) {
+        return cutoffs[Math.min(moveIndex, CUTOFF_SLOTS - 1)];
+    }
+
+
+    /**
+     * @return Number of cutoffs in total.
+     */
+    public long getTotalCutoffs() {
+        long total = 0;
+        for(long c : cutoffs) total += c;
+        return total;
+    }
+
+
+    /**
+     * @return Deepest position visited, in moves from the root.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+
+    /**
+     * @return Nominal depth of the deepest iteration which finished, 0 if none did or the search does not deepen.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+
+    /**
+     * @return Wall clock time the search took, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+
+    /**
+     * @return Bytes allocated by the threads of the search while they were searching, or UNKNOWN.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+
+    /**
+     * @return Positions visited per second, 0 if no time was recorded.
+     */
+    public long getNodesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : (long)(nodes * 1e9 / elapsedNanos);
+    }
+
+
+    /**
+     * Starts measuring what the current thread allocates, to be finished with endAllocation() on the same thread.
+     * Measurements may nest on one thread, such as a task which runs other tasks while it waits for them, and only the
+     * outermost one counts so nothing is counted twice.
+     * @return Value to hand to endAllocation().
+     */
+    public static long startAllocation() {
+        final int[] depth = measuring.get();
+        if(depth[0]++ > 0) return UNKNOWN;
+        return threadAllocatedBytes();
+    }
+
+
+    /**
+     * Finishes measuring what the current thread allocates, adding it to these stats.
+     * @param start Value returned by startAllocation().
+     */
+    public void endAllocation(long start) {
+        measuring.get()[0]--;
+        if(start == UNKNOWN) return;
+        final long end = threadAllocatedBytes();
+        if(end == UNKNOWN) return;
+        allocatedBytes = (allocatedBytes == UNKNOWN ? 0 : allocatedBytes) + (end - start);
+    }
+
+
+    /**
+     * @return Bytes allocated by the current thread so far, or UNKNOWN if the JVM cannot tell us (such as on Android).
+     */
+    private static long threadAllocatedBytes() {
+        if(unsupported) return UNKNOWN;
+        try {
+            return Allocation.currentThread();
+        } catch(Throwable t) {
+            //missing classes or a JVM without the counter; never try again
+            unsupported = true;
+            return UNKNOWN;
+        }
+    }
+
+
+    /**
+     * Kept apart so the management classes are only loaded once allocation is first measured.
+     */
+    private static final class Allocation {
+        private static final com.sun.management.ThreadMXBean BEAN;
+
+        static {
+            final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if(!(bean instanceof com.sun.management.ThreadMXBean))
+                throw new UnsupportedOperationException("Thread allocation is not available");
+            BEAN = (com.sun.management.ThreadMXBean)bean;
+            if(!BEAN.isThreadAllocatedMemorySupported())
+                throw new UnsupportedOperationException("Thread allocation is not available");
+            BEAN.setThreadAllocatedMemoryEnabled(true);
+        }
+
+
+        static long currentThread() {
+            return BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("nodes=").append(nodes)
+                .append(" nps=").append(getNodesPerSecond())
+                .append(" evals=").append(evaluations)
+                .append(" tt=").append(hits).append('/').append(probes)
+                .append(" cutoffs=[");
+        for(int i = 0; i < CUTOFF_SLOTS; i++) {
+            if(i > 0) sb.append(',');
+            sb.append(cutoffs[i]);
+        }
+        sb.append("] depth=").append(completedDepth).append('/').append(maxDepth)
+                .append(" ms=").append(elapsedNanos / 1000000);
+        if(allocatedBytes != UNKNOWN) sb.append(" alloc=").append(allocatedBytes);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,185 @@
+package plu.red.reversi.core.game.search;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, keyed by the Zobrist hash of a position (including the side to move).
+ * Each entry remembers how deep the position was searched, what kind of bound the score is, the score itself and the
+ * best move that was found.
+ *
+ * Entries are packed into two parallel long arrays so the table does not create any objects once it is built. The
+ * key array stores <code>hash ^ data</code>, which lets readers detect entries that were torn by another thread
+ * writing at the same time; this makes the table safe to share between search threads without locking.
+ *
+ * Entries live in buckets of two. When storing a new position, an entry for the same position is always replaced,
+ * otherwise the entry which is shallower or left over from an older search is evicted.
+ *
+ * A table can be kept between moves of the same game; call newSearch() before each one so older entries are
+ * preferred for replacement.
+ */
+public class TranspositionTable {
+    /// Bound types stored with a score
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    /// Default number of entries, 16 bytes each.
+    public static final int DEFAULT_SIZE = 1 << 18;
+    /// Deepest depth which can be stored, used for positions where the game is over.
+    public static final int MAX_DEPTH = 0xFF;
+
+    // Layout of the data word
+    private static final int SCORE_SHIFT = 32;
+    private static final int MOVE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 8;
+    private static final int BOUND_SHIFT = 6;
+    private static final long VALID = 1L << 5;
+    private static final int GENERATION_MASK = 0x1F;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation = 0;
+
+
+    /**
+     * Constructs a table with the default number of entries.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE);
+    }
+
+
+    /**
+     * Constructs a table which can hold about <code>entries</code> positions.
+     * @param entries Number of entries, rounded up to a power of two (at least 2).
+     */
+    public TranspositionTable(int entries) {
+        int size = entries <= 2 ? 2 : Integer.highestOneBit(entries - 1) << 1;
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+
+    /**
+     * Marks the start of a new search. Entries from previous searches are kept, but are replaced before entries from
+     * the current one.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+
+    /**
+     * @return Number of entries the table can hold.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+
+    /**
+     * Looks up a position.
+     * @param hash Hash of the position and the side to move.
+     * @return The packed entry, or 0 if the position is not in the table. Use the static getters to unpack it.
+     */
+    public long probe(long hash) {
+        final int i = (int)hash & mask & ~1;
+        long d = data[i];
+        if((keys[i] ^ d) == hash && (d & VALID) != 0) return d;
+        d = data[i + 1];
+        if((keys[i + 1] ^ d) == hash && (d & VALID) != 0) return d;
+        return 0;
+    }
+
+
+    /**
+     * Stores the result of searching a position.
+     * @param hash Hash of the position and the side to move.
+     * @param depth Remaining depth the position was searched to.
+     * @param bound One of EXACT, LOWER or UPPER.
+     * @param score Score found by the search.
+     * @param move Best move found, as a tile number, or -1 if there is none.
+     */
+    public void store(long hash, int depth, int bound, int score, int move) {
+        final int i = (int)hash & mask & ~1;
+        final long d0 = data[i];
+        final long d1 = data[i + 1];
+
+        //pick the slot to write: the same position, else the least valuable entry
+        int slot;
+        if((keys[i] ^ d0) == hash) slot = i;
+        else if((keys[i + 1] ^ d1) == hash) slot = i + 1;
+        else slot = worth(d0) <= worth(d1) ? i : i + 1;
+
+        //keep the old best move if we did not find one this time
+        final long old = data[slot];
+        if(move < 0 && (keys[slot] ^ old) == hash && (old & VALID) != 0)
+            move = move(old);
+
+        final long d = ((long)score << SCORE_SHIFT)
+                | ((long)((move + 1) & 0xFFFF) << MOVE_SHIFT)
+                | ((long)(Math.min(Math.max(depth, 0), MAX_DEPTH)) << DEPTH_SHIFT)
+                | ((long)bound << BOUND_SHIFT)
+                | VALID
+                | generation;
+        keys[slot] = hash ^ d;
+        data[slot] = d;
+    }
+
+
+    /**
+     * How much an entry is worth keeping; deeper entries from the current search are worth more.
+     */
+    private int worth(long d) {
+        if((d & VALID) == 0) return Integer.MIN_VALUE;
+        final int age = (generation - (int)(d & GENERATION_MASK)) & GENERATION_MASK;
+        return depth(d) - age * 4;
+    }
+
+
+    /**
+     * @param entry Packed entry from probe().
+     * @return Score stored in the entry.
+     */
+    public static int score(long entry) {
+        return (int)(entry >> SCORE_SHIFT);
+    }
+
+
+    /**
+     * @param entry Packed entry from probe().
+     * @return Remaining depth the position was searched to.
+     */
+    public static int depth(long entry) {
+        return (int)(entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+
+    /**
+     * @param entry Packed entry from probe().
+     * @return One of EXACT, LOWER or UPPER.
+     */
+    public static int bound(long entry) {
+        return (int)(entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+
+    /**
+     * @param entry Packed entry from probe().
+     * @return The best move as a tile number, or -1 if there was none.
+     */
+    public static int move(long entry) {
+        return ((int)(entry >>> MOVE_SHIFT) & 0xFFFF) - 1;
+    }
+}
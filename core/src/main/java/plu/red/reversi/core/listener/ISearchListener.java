@@ -0,0 +1,30 @@
+package plu.red.reversi.core.listener;
+
+import plu.red.reversi.core.game.player.BotPlayer;
+import plu.red.reversi.core.game.search.SearchStats;
+
+/**
+ * Glory to the Red Team.
+ *
+ * Interface for finding out what a BotPlayer's search did each time it picks a move, such as to show how hard it is
+ * thinking or to work out why a move took so long.
+ */
+public interface ISearchListener extends IListener {
+
+    /**
+     * Called once a BotPlayer has finished searching for a move, on the thread which did the search.
+     *
+     * @param player BotPlayer which searched
+     * @param stats What the search did
+     */
+    void onSearchFinished(BotPlayer player, SearchStats stats);
+
+    /**
+     * Called when a BotPlayer's executor was too busy to take its search, so it made a quick move on its own thread
+     * instead.
+     *
+     * @param player BotPlayer whose search was turned away
+     */
+    void onSearchRejected(BotPlayer player);
+
+}
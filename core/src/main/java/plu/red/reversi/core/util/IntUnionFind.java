@@ -0,0 +1,263 @@
+package plu.red.reversi.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over the integers 0 to capacity - 1, for when the members are small indices such as the cells
+ * of a board. Works the same way as UnionFind (union by rank with path compression) but keeps everything in int
+ * arrays, so nothing is boxed or hashed and a copy is a handful of array copies.
+ *
+ * Every set also keeps its members in a circular list, so a set can be walked or removed in time proportional to its
+ * size instead of scanning every member of the forest.
+ *
+ * @see UnionFind
+ */
+public class IntUnionFind {
+    /// Marks a value which is not in the forest.
+    private static final int ABSENT = -1;
+
+    /// Parent of each value, itself for representatives, or ABSENT.
+    private int[] parent;
+    private int[] rank;
+    /// Next member of the same set, forming a circle.
+    private int[] next;
+    /// Number of members in the set, only valid for representatives.
+    private int[] sizes;
+
+    private int members = 0;
+    private int disjointSets = 0;
+
+
+    /**
+     * Constructs an empty forest.
+     * @param capacity Values which can be added are 0 up to but not including this.
+     */
+    public IntUnionFind(int capacity) {
+        parent = new int[capacity];
+        rank = new int[capacity];
+        next = new int[capacity];
+        sizes = new int[capacity];
+        Arrays.fill(parent, ABSENT);
+    }
+
+
+    /**
+     * Constructs a copy of another forest, with the same representatives.
+     * @param other IntUnionFind object to copy.
+     */
+    public IntUnionFind(IntUnionFind other) {
+        parent = other.parent.clone();
+        rank = other.rank.clone();
+        next = other.next.clone();
+        sizes = other.sizes.clone();
+        members = other.members;
+        disjointSets = other.disjointSets;
+    }
+
+
+    /**
+     * Replaces the contents of this forest with a copy of another one, with the same representatives.
+     * @param other IntUnionFind object to copy.
+     */
+    public void copyFrom(IntUnionFind other) {
+        if(parent.length != other.parent.length) {
+            parent = other.parent.clone();
+            rank = other.rank.clone();
+            next = other.next.clone();
+            sizes = other.sizes.clone();
+        } else {
+            System.arraycopy(other.parent, 0, parent, 0, parent.length);
+            System.arraycopy(other.rank, 0, rank, 0, rank.length);
+            System.arraycopy(other.next, 0, next, 0, next.length);
+            System.arraycopy(other.sizes, 0, sizes, 0, sizes.length);
+        }
+        members = other.members;
+        disjointSets = other.disjointSets;
+    }
+
+
+    /**
+     * @return Values which can be added are 0 up to but not including this.
+     */
+    public int capacity() {
+        return parent.length;
+    }
+
+
+    /**
+     * Changes how many values the forest can hold. This empties the forest.
+     * @param capacity Values which can be added are 0 up to but not including this.
+     */
+    public void setCapacity(int capacity) {
+        if(capacity != parent.length) {
+            parent = new int[capacity];
+            rank = new int[capacity];
+            next = new int[capacity];
+            sizes = new int[capacity];
+        }
+        clear();
+    }
+
+
+    /**
+     * Remove all values from the forest.
+     */
+    public void clear() {
+        Arrays.fill(parent, ABSENT);
+        members = 0;
+        disjointSets = 0;
+    }
+
+
+    /**
+     * Adds a new set containing only x. If x is already in the forest, no action is performed.
+     * @param x Value to add.
+     * @return True if the value was added, false if it already existed in the forest.
+     */
+    public boolean add(int x) {
+        if(parent[x] != ABSENT) return false;
+        parent[x] = x;
+        rank[x] = 0;
+        next[x] = x;
+        sizes[x] = 1;
+        members++;
+        disjointSets++;
+        return true;
+    }
+
+
+    /**
+     * @param x Value to look for.
+     * @return True if x is in the forest.
+     */
+    public boolean contains(int x) {
+        return x >= 0 && x < parent.length && parent[x] != ABSENT;
+    }
+
+
+    /**
+     * Finds the set representative of a value.
+     * @param x A value in the forest.
+     * @return The representative of the set containing x, or -1 if x is not in the forest.
+     */
+    public int getRep(int x) {
+        if(parent[x] == ABSENT) return ABSENT;
+        //path halving: point every other node on the way up at its grandparent
+        while(parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+
+    /**
+     * Checks if two values are in the same set.
+     * @return True if both are in the forest and share a representative.
+     */
+    public boolean inSameSet(int x, int y) {
+        final int a = getRep(x);
+        return a != ABSENT && a == getRep(y);
+    }
+
+
+    /**
+     * Performs the union of the sets containing x and y. Does nothing if they are already in the same set or either
+     * of them is not in the forest.
+     * @param x First value in the forest.
+     * @param y Second value in the forest.
+     * @return True if the union was successful, false if no action occurred.
+     */
+    public boolean union(int x, int y) {
+        int a = getRep(x);
+        int b = getRep(y);
+        if(a == ABSENT || b == ABSENT || a == b) return false;
+
+        if(rank[a] < rank[b]) {
+            final int t = a;
+            a = b;
+            b = t;
+        } else if(rank[a] == rank[b]) rank[a]++;
+        parent[b] = a;
+        sizes[a] += sizes[b];
+
+        //splice the two circles together
+        final int t = next[a];
+        next[a] = next[b];
+        next[b] = t;
+
+        disjointSets--;
+        return true;
+    }
+
+
+    /**
+     * Finds the member after x in its set. Starting anywhere in a set and following this until getting back to the
+     * start visits every member once.
+     * @param x A value in the forest.
+     * @return The next member of the set.
+     */
+    public int next(int x) {
+        return next[x];
+    }
+
+
+    /**
+     * @param x A value in the forest.
+     * @return Number of members in the set containing x, 0 if x is not in the forest.
+     */
+    public int setSize(int x) {
+        final int rep = getRep(x);
+        return rep == ABSENT ? 0 : sizes[rep];
+    }
+
+
+    /**
+     * Remove the entire set containing v. Takes time proportional to the size of the set.
+     * @param v A member of the set to be removed.
+     * @param removed Array the removed values are written into, or null. Must have room for the whole set.
+     * @param offset Index in removed to start writing at.
+     * @return Number of values removed, 0 if v is not in the forest.
+     */
+    public int removeSet(int v, int[] removed, int offset) {
+        if(parent[v] == ABSENT) return 0;
+
+        int count = 0;
+        int x = v;
+        do {
+            final int following = next[x];
+            parent[x] = ABSENT;
+            if(removed != null) removed[offset + count] = x;
+            count++;
+            x = following;
+        } while(x != v);
+
+        members -= count;
+        disjointSets--;
+        return count;
+    }
+
+
+    /**
+     * @return Number of unique sets that exist in this forest.
+     */
+    public int disjointSets() {
+        return disjointSets;
+    }
+
+
+    /**
+     * @return Total number of values in the forest.
+     */
+    public int size() {
+        return members;
+    }
+
+
+    /**
+     * @return True if there are no values in the forest.
+     */
+    public boolean isEmpty() {
+        return members == 0;
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 import plu.red.reversi.core.command.SetCommand;
 import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Zobrist;
 
 import java.util.Iterator;
 
@@ -74,4 +75,95 @@ public class BoardTest {
 
         assertFalse(iter.hasNext());
     }
+
+    @Test
+    public void testHash() {
+        Board b1 = new Board(8);
+        assertEquals(0, b1.getHash());
+
+        b1.apply(new SetCommand(0, new BoardIndex(3, 3)));
+        b1.apply(new SetCommand(1, new BoardIndex(3, 4)));
+        assertEquals(Zobrist.hash(b1), b1.getHash());
+
+        Board b2 = new Board(b1);
+        assertEquals(b1.getHash(), b2.getHash());
+
+        //same tiles reached a different way should hash the same
+        Board b3 = new Board(8);
+        b3.apply(new SetCommand(0, new BoardIndex(3, 4)));
+        b3.apply(new SetCommand(1, new BoardIndex(3, 4)));
+        b3.apply(new SetCommand(0, new BoardIndex(3, 3)));
+        assertEquals(b1.getHash(), b3.getHash());
+
+        b2.apply(new SetCommand(0, new BoardIndex(3, 4)));
+        assertNotEquals(b1.getHash(), b2.getHash());
+        b2.apply(new SetCommand(-1, new BoardIndex(3, 4)));
+        b2.apply(new SetCommand(-1, new BoardIndex(3, 3)));
+        assertEquals(0, b2.getHash());
+    }
+
+    @Test
+    public void testCells() {
+        for(int size : new int[] {1, 4, 8, 19}) {
+            Board b = new Board(size);
+
+            //every tile has a cell which maps back to it, and starts out empty
+            for(int r = 0; r < size; r++) {
+                for(int c = 0; c < size; c++) {
+                    int cell = b.cell(r, c);
+                    assertEquals(r, b.row(cell));
+                    assertEquals(c, b.column(cell));
+                    assertEquals(r * size + c, b.cellToTile(cell));
+                    assertEquals(cell, b.tileToCell(r * size + c));
+                    assertEquals(-1, b.get(cell));
+                }
+            }
+
+            //stepping off any edge or corner lands on the border
+            for(int i = 0; i < size; i++) {
+                assertEquals(Board.BORDER, b.get(b.cell(-1, i)));
+                assertEquals(Board.BORDER, b.get(b.cell(size, i)));
+                assertEquals(Board.BORDER, b.get(b.cell(i, -1)));
+                assertEquals(Board.BORDER, b.get(b.cell(i, size)));
+            }
+            for(int r = 0; r < size; r++) {
+                for(int c = 0; c < size; c++) {
+                    for(int direction : b.getDirections()) {
+                        int next = b.cell(r, c) + direction;
+                        boolean onBoard = b.row(next) >= 0 && b.row(next) < size &&
+                                b.column(next) >= 0 && b.column(next) < size;
+                        assertEquals(onBoard ? -1 : Board.BORDER, b.get(next));
+                    }
+                }
+            }
+        }
+
+        Board b = new Board(8);
+        int[] directions = b.getDirections();
+        assertEquals(b.cell(2, 3), b.cell(3, 3) + directions[0]);
+        assertEquals(b.cell(4, 3), b.cell(3, 3) + directions[1]);
+        assertEquals(b.cell(3, 2), b.cell(3, 3) + directions[2]);
+        assertEquals(b.cell(3, 4), b.cell(3, 3) + directions[3]);
+
+        b.set(b.cell(2, 5), 1);
+        assertEquals(1, b.at(2, 5));
+        assertEquals(Zobrist.hash(b), b.getHash());
+        b.apply(new SetCommand(3, new BoardIndex(7, 7)));
+        assertEquals(3, b.get(b.cell(7, 7)));
+
+        //the border is not part of the board
+        try {
+            b.at(new BoardIndex(8, 0));
+            fail("Read off the edge of the board");
+        } catch(IndexOutOfBoundsException e) { /* expected */ }
+        try {
+            b.apply(new SetCommand(0, new BoardIndex(0, -1)));
+            fail("Wrote off the edge of the board");
+        } catch(IndexOutOfBoundsException e) { /* expected */ }
+        try {
+            b.apply(new SetCommand(Board.BORDER, new BoardIndex(0, 0)));
+            fail("Wrote the border value onto the board");
+        } catch(IllegalArgumentException e) { /* expected */ }
+        assertEquals(-1, b.at(0, 0));
+    }
 }
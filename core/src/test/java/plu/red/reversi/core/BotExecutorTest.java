@@ -0,0 +1,363 @@
+package plu.red.reversi.core;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.command.SurrenderCommand;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.BotExecutor;
+import plu.red.reversi.core.game.player.BotPlayer;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.listener.ISearchListener;
+import plu.red.reversi.core.util.Color;
+import plu.red.reversi.core.util.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BotExecutorTest {
+    private BotExecutor executor;
+    private Game game;
+
+    @Before
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        executor = new BotExecutor(1, 1);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Submits a task which blocks until the latch is released.
+     */
+    private BotExecutor.Search block(final CountDownLatch started, final CountDownLatch release) {
+        return executor.submit(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch(InterruptedException ignored) {}
+        }, release::countDown, release::countDown, 0);
+    }
+
+    /**
+     * Waits for the executor to run out of searches.
+     */
+    private void awaitIdle() throws InterruptedException {
+        for(int i = 0; i < 500 && executor.getActiveCount() + executor.getQueuedCount() > 0; i++)
+            Thread.sleep(10);
+        assertEquals(0, executor.getActiveCount() + executor.getQueuedCount());
+    }
+
+    @Test
+    public void testQueueIsBounded() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BotExecutor.Search running = block(started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The only worker is busy, so there is nothing idle to ponder on
+        assertNull(executor.submitIfIdle(() -> {}, () -> {}));
+
+        // One search fits in the queue, the next does not
+        executor.submit(() -> {}, () -> {}, () -> {}, 0);
+        assertEquals(1, executor.getQueuedCount());
+        try {
+            executor.submit(() -> {}, () -> {}, () -> {}, 0);
+            fail("Queue should be full");
+        } catch(RejectedExecutionException e) {
+            // expected
+        }
+
+        release.countDown();
+        awaitIdle();
+        assertTrue(running.isDone());
+        assertNotNull(executor.submitIfIdle(() -> {}, () -> {}));
+    }
+
+    @Test
+    public void testCancelQueued() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        block(started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean ran = new AtomicBoolean(false);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        BotExecutor.Search queued = executor.submit(() -> ran.set(true), () -> {}, () -> cancelled.set(true), 0);
+        queued.cancel();
+        assertTrue(queued.isCancelled());
+        assertTrue(queued.isDone());
+        assertTrue(cancelled.get());
+
+        release.countDown();
+        awaitIdle();
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void testCancelRunning() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BotExecutor.Search running = block(started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The cancel hook releases the task
+        running.cancel();
+        assertTrue(running.isCancelled());
+        assertFalse(running.isExpired());
+        awaitIdle();
+        assertTrue(running.isDone());
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        BotExecutor.Search search = executor.submit(() -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch(InterruptedException ignored) {}
+        }, release::countDown, () -> cancelled.set(true), 50);
+
+        assertTrue(release.await(5, TimeUnit.SECONDS));
+        awaitIdle();
+        assertTrue(search.isExpired());
+        assertFalse(search.isCancelled());
+        assertFalse(cancelled.get());
+    }
+
+    @Test
+    public void testDeadlineStartsWithSearch() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        block(started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Waiting in the queue for longer than the deadline does not use it up
+        BotExecutor.Search queued = executor.submit(() -> {}, () -> {}, () -> {}, 50);
+        Thread.sleep(200);
+        assertFalse(queued.isExpired());
+
+        release.countDown();
+        awaitIdle();
+        assertTrue(queued.isDone());
+        assertFalse(queued.isExpired());
+    }
+
+    @Test
+    public void testSearchPreemptsIdleSearch() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BotExecutor.Search idle = executor.submitIfIdle(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch(InterruptedException ignored) {}
+        }, release::countDown);
+        assertNotNull(idle);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The only worker is pondering, so a real search takes it over instead of waiting behind it
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.submit(ran::countDown, () -> {}, () -> {}, 0);
+        assertTrue(idle.isCancelled());
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        awaitIdle();
+    }
+
+    @Test
+    public void testSubmitRacesSubmitIfIdle() throws InterruptedException {
+        final BotExecutor wide = new BotExecutor(1, 4096);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<BotExecutor.Search> idle = Collections.synchronizedList(new ArrayList<>());
+
+        // Pondering and real searches from different games fight over the only worker
+        Thread ponderer = new Thread(() -> {
+            try {
+                for(int i = 0; i < 2000; i++) {
+                    final CountDownLatch release = new CountDownLatch(1);
+                    BotExecutor.Search search = wide.submitIfIdle(() -> {
+                        try {
+                            release.await(10, TimeUnit.SECONDS);
+                        } catch(InterruptedException ignored) {}
+                    }, release::countDown);
+                    if(search != null) idle.add(search);
+                }
+            } catch(Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        Thread searcher = new Thread(() -> {
+            try {
+                for(int i = 0; i < 2000; i++) {
+                    try {
+                        wide.submit(() -> {}, () -> {}, () -> {}, 0);
+                    } catch(RejectedExecutionException ignored) {}
+                }
+            } catch(Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        ponderer.start();
+        searcher.start();
+        ponderer.join(30000);
+        searcher.join(30000);
+
+        synchronized(idle) {
+            for(BotExecutor.Search search : idle) search.cancel();
+        }
+        for(int i = 0; i < 500 && wide.getActiveCount() + wide.getQueuedCount() > 0; i++)
+            Thread.sleep(10);
+        wide.shutdown();
+        if(failure.get() != null) throw new AssertionError("Racing submissions failed", failure.get());
+        assertEquals(0, wide.getActiveCount() + wide.getQueuedCount());
+    }
+
+    /**
+     * Gets the search pool of a worker of the given executor.
+     */
+    private static ForkJoinPool searchPoolOf(BotExecutor executor) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<ForkJoinPool> pool = new AtomicReference<>();
+        executor.submit(() -> {
+            pool.set(BotExecutor.getSearchPool());
+            done.countDown();
+        }, () -> {}, () -> {}, 0);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return pool.get();
+    }
+
+    @Test
+    public void testSearchPoolSharesProcessors() throws InterruptedException {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        assertNull(BotExecutor.getSearchPool());
+
+        // A lone worker gets every processor
+        ForkJoinPool pool = searchPoolOf(executor);
+        if(processors == 1) assertNull(pool);
+        else assertEquals(processors, pool.getParallelism());
+
+        // With a worker for every processor each search stays on its worker
+        BotExecutor full = new BotExecutor(processors, 1);
+        try {
+            assertNull(searchPoolOf(full));
+        } finally {
+            full.shutdown();
+        }
+    }
+
+    @Test
+    public void testMinimaxStop() {
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        // A stopped search still gives a move, even one far too deep to finish
+        ReversiMinimax minimax = new ReversiMinimax(game, 0, 30);
+        minimax.stop();
+        BoardIndex move = minimax.getBestPlay();
+        assertNotNull(move);
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(0, move)));
+
+        // A cancelled search hands on no move at all
+        minimax = new ReversiMinimax(game, 0, 2);
+        minimax.cancel();
+        minimax.run();
+        assertTrue(minimax.isCancelled());
+        assertEquals(4, game.getBoard().getTotalPieces());
+
+        minimax.reset();
+        assertFalse(minimax.isCancelled());
+        minimax.run();
+        assertEquals(5, game.getBoard().getTotalPieces());
+    }
+
+    @Test
+    public void testSurrenderCancelsBot() throws InterruptedException {
+        BotPlayer bot = new BotPlayer(game, Color.BLACK, 30);
+        bot.setExecutor(executor);
+        bot.setSearchDeadline(0);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        assertFalse(bot.isCancelled());
+        assertTrue(game.acceptCommand(new SurrenderCommand(bot.getID())));
+        assertTrue(bot.isCancelled());
+        awaitIdle();
+    }
+
+    @Test
+    public void testFullQueuePlaysQuickMove() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        block(started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> {}, () -> {}, () -> {}, 0);
+
+        BotPlayer bot = new BotPlayer(game, Color.BLACK, 2);
+        bot.setExecutor(executor);
+        final AtomicBoolean rejected = new AtomicBoolean(false);
+        bot.addSearchListener(new ISearchListener() {
+            @Override
+            public void onSearchFinished(BotPlayer player, SearchStats stats) {}
+
+            @Override
+            public void onSearchRejected(BotPlayer player) {
+                rejected.set(true);
+            }
+        });
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        // With nowhere to run its search the bot moves straight away instead of holding the game up
+        assertTrue(rejected.get());
+        Looper.getLooper(Thread.currentThread()).run();
+        assertEquals(5, game.getBoard().getTotalPieces());
+        assertFalse(bot.isCancelled());
+        assertFalse(game.isGameOver());
+
+        release.countDown();
+        awaitIdle();
+    }
+
+    @Test
+    public void testEndGameCancelsSearch() throws InterruptedException {
+        BotPlayer bot = new BotPlayer(game, Color.BLACK, 30);
+        bot.setExecutor(executor);
+        bot.setSearchDeadline(0);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        // The bot moves first, so its search is running or about to be
+        assertEquals(1, executor.getActiveCount() + executor.getQueuedCount());
+        game.endGame();
+        assertTrue(bot.isCancelled());
+        awaitIdle();
+    }
+}
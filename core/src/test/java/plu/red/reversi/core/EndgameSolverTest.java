@@ -0,0 +1,97 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
+import plu.red.reversi.core.game.search.EndgameSolver;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EndgameSolverTest {
+    /**
+     * Plain negamax to check the solver against.
+     */
+    private static int negamax(long own, long opp) {
+        long moves = ReversiBitboard.moves(own, opp);
+        if(moves == 0) {
+            if(ReversiBitboard.moves(opp, own) == 0) return Long.bitCount(own) - Long.bitCount(opp);
+            return -negamax(opp, own);
+        }
+        int best = -EndgameSolver.WORST;
+        for(; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = ReversiBitboard.flips(own, opp, square);
+            best = Math.max(best, -negamax(opp & ~flips, own | flips | (1L << square)));
+        }
+        return best;
+    }
+
+    @Test
+    public void testSolveMatchesNegamax() {
+        Random random = new Random(8);
+        EndgameSolver solver = new EndgameSolver();
+        int checked = 0;
+        while(checked < 40) {
+            //enough empties to use both fastest-first and parity ordering
+            long[] p = ReversiBitboardTest.randomPosition(random, Integer.MAX_VALUE, 9);
+            if(p == null) continue;
+
+            int expected = negamax(p[0], p[1]);
+            assertEquals(expected, solver.solve(p[0], p[1]));
+
+            //the best move really does reach the result
+            int move = solver.getBestMove();
+            if(move >= 0) {
+                long flips = ReversiBitboard.flips(p[0], p[1], move);
+                assertNotEquals(0, flips);
+                assertEquals(expected, -negamax(p[1] & ~flips, p[0] | flips | (1L << move)));
+            }
+
+            //null window tests agree with the exact result
+            assertTrue(solver.test(p[0], p[1], expected));
+            assertFalse(solver.test(p[0], p[1], expected + 1));
+
+            //results outside of a window are bounds on the real result
+            int low = solver.solve(p[0], p[1], expected + 2, expected + 10);
+            assertTrue(low <= expected + 2 && low >= expected);
+            int high = solver.solve(p[0], p[1], expected - 10, expected - 2);
+            assertTrue(high >= expected - 2 && high <= expected);
+            checked++;
+        }
+    }
+
+    @Test
+    public void testFinishedGame() {
+        EndgameSolver solver = new EndgameSolver();
+        //a full board
+        assertEquals(64 - 2 * 20, solver.solve(~0xFFFFFL, 0xFFFFFL));
+        //no one can move with empties left; they do not count for anyone
+        assertEquals(-2, solver.solve(1L, 1L << 2 | 1L << 3 | 1L << 4));
+        assertEquals(-1, solver.getBestMove());
+    }
+
+    @Test
+    public void testPoll() {
+        final boolean[] stop = {true};
+        EndgameSolver solver = new EndgameSolver() {
+            @Override
+            protected void poll() {
+                if(stop[0]) throw new IllegalStateException();
+            }
+        };
+
+        long[] p = ReversiBitboardTest.randomPosition(new Random(3), Integer.MAX_VALUE, 14);
+        assertNotNull(p);
+        try {
+            solver.solve(p[0], p[1]);
+            fail("poll() was never called");
+        } catch(IllegalStateException e) { /* expected */ }
+
+        //still usable after being stopped
+        stop[0] = false;
+        long[] q = ReversiBitboardTest.randomPosition(new Random(4), Integer.MAX_VALUE, 8);
+        assertNotNull(q);
+        assertEquals(negamax(q[0], q[1]), solver.solve(q[0], q[1]));
+    }
+}
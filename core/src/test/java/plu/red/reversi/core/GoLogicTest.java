@@ -7,8 +7,18 @@ import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.logic.GameLogic;
 import plu.red.reversi.core.game.logic.GameLogicCache;
 import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.logic.GoLogicCache;
+import plu.red.reversi.core.game.logic.MoveUndo;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GoLogicTest {
     @Test
@@ -29,6 +39,212 @@ public class GoLogicTest {
         assertEquals(1, logic.getScore(cache, board, 1));
     }
 
+    @Test
+    public void testGetValidMovesArray() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(3);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        //fill the board around the corner, which player 1 can no longer play into
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(0, 1)), false, false);
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(1, 0)), false, false);
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(1, 1)), false, false);
+
+        int[] moves = new int[9];
+        int count = logic.getValidMoves(cache, board, 1, moves);
+        assertEquals(logic.getValidMoves(cache, board, 1).size(), count);
+        for(int i = 0; i < count; i++)
+            assertNotEquals(0, moves[i]);
+        assertEquals(5, count);
+        assertEquals(6, logic.getValidMoves(cache, board, 0, moves));
+        assertTrue(logic.canPlay(cache, board, 1));
+    }
+
+    @Test
+    public void testMakeUnmakeMove() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(4);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+        MoveUndo undo = logic.createUndo();
+
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(0, 0)), false, false);
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(0, 1)), false, false);
+        Board before = new Board(board);
+
+        //capture the corner, then take it back
+        logic.makeMove(cache, board, new MoveCommand(1, new BoardIndex(1, 0)), undo);
+        assertEquals(-1, board.at(new BoardIndex(0, 0)));
+        assertEquals(1, logic.getScore(cache, board, 1));
+
+        logic.unmakeMove(cache, board, undo);
+        assertEquals(before, board);
+        assertEquals(0, board.at(new BoardIndex(0, 0)));
+        assertEquals(0, logic.getScore(cache, board, 1));
+
+        //the restored groups must still work
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(1, 0)), false, false);
+        assertEquals(-1, board.at(new BoardIndex(0, 0)));
+        assertEquals(1, logic.getScore(cache, board, 1));
+    }
+
+    @Test
+    public void testIsValidMove() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(4);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        //player 0 has a stone in the corner, and player 1 has the tiles around (1, 0)
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(0, 0)), false, false);
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(0, 1)), false, false);
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(1, 1)), false, false);
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(2, 0)), false, false);
+
+        //joining the corner stone without a liberty left is not allowed for player 0, taking it is for player 1
+        MoveCommand join = new MoveCommand(0, new BoardIndex(1, 0));
+        MoveCommand take = new MoveCommand(1, new BoardIndex(1, 0));
+        assertFalse(logic.isValidMove(cache, board, join));
+        assertTrue(logic.isValidMove(cache, board, take));
+        assertFalse(logic.getValidMoves(cache, board, 0).contains(join.position));
+        assertTrue(logic.getValidMoves(cache, board, 1).contains(take.position));
+    }
+
+    @Test
+    public void testLiberties() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(5);
+        GoLogicCache cache = (GoLogicCache)logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(0, 0)), false, false);
+        assertEquals(2, cache.getLiberties(board, new BoardIndex(0, 0)));
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(0, 1)), false, false);
+        //(1, 0), (1, 1) and (0, 2)
+        assertEquals(3, cache.getLiberties(board, new BoardIndex(0, 0)));
+        logic.play(cache, board, new MoveCommand(0, new BoardIndex(1, 1)), false, false);
+        //(1, 0) counts twice, once for each stone next to it
+        assertEquals(5, cache.getLiberties(board, new BoardIndex(0, 1)));
+
+        logic.play(cache, board, new MoveCommand(1, new BoardIndex(1, 0)), false, false);
+        assertEquals(1, cache.getLiberties(board, new BoardIndex(1, 0)));
+        assertEquals(3, cache.getLiberties(board, new BoardIndex(0, 0)));
+
+        //a copy keeps them
+        GoLogicCache copy = (GoLogicCache)cache.duplicate();
+        assertEquals(3, copy.getLiberties(board, new BoardIndex(1, 1)));
+        copy.copyFrom(cache);
+        assertEquals(1, copy.getLiberties(board, new BoardIndex(1, 0)));
+    }
+
+    /**
+     * Counts the liberties of the group a stone is in the slow way.
+     */
+    private static int countLiberties(Board board, int row, int column) {
+        int player = board.at(row, column);
+        boolean[][] seen = new boolean[board.size][board.size];
+        java.util.ArrayDeque<int[]> open = new java.util.ArrayDeque<>();
+        open.add(new int[] {row, column});
+        seen[row][column] = true;
+        int liberties = 0;
+        int[][] sides = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while(!open.isEmpty()) {
+            int[] t = open.poll();
+            for(int[] d : sides) {
+                int r = t[0] + d[0], c = t[1] + d[1];
+                if(r < 0 || c < 0 || r >= board.size || c >= board.size) continue;
+                if(board.at(r, c) == -1) liberties++;
+                else if(board.at(r, c) == player && !seen[r][c]) {
+                    seen[r][c] = true;
+                    open.add(new int[] {r, c});
+                }
+            }
+        }
+        return liberties;
+    }
+
+    @Test
+    public void testRebuildCache() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(9);
+        GoLogicCache cache = (GoLogicCache)logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        Random random = new Random(19);
+        int[] moves = new int[board.size * board.size];
+        for(int ply = 0; ply < 120; ply++) {
+            int player = ply % 2;
+            int count = logic.getValidMoves(cache, board, player, moves);
+            if(count == 0) continue;
+            int move = moves[random.nextInt(count)];
+            logic.play(cache, board, new MoveCommand(player, new BoardIndex(move / board.size, move % board.size)),
+                    false, false);
+
+            if(ply % 10 != 9) continue;
+            GoLogicCache rebuilt = (GoLogicCache)logic.createCache();
+            logic.rebuildCache(rebuilt, board);
+            for(int cell = 0; cell < board.stride * board.stride; cell++) {
+                if(board.get(cell) < 0) continue;
+                BoardIndex index = new BoardIndex(board.row(cell), board.column(cell));
+                assertEquals(cache.getLiberties(board, index), rebuilt.getLiberties(board, index));
+                for(int d = 0; d < 4; d++) {
+                    int other = cell + board.getDirections()[d];
+                    if(board.get(other) >= 0)
+                        assertEquals(cache.groups.inSameSet(cell, other), rebuilt.groups.inSameSet(cell, other));
+                }
+            }
+            assertEquals(cache.groups.disjointSets(), rebuilt.groups.disjointSets());
+        }
+    }
+
+    @Test
+    public void testRandomGame() {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(6);
+        GoLogicCache cache = (GoLogicCache)logic.createCache();
+        int[] players = {0, 1, 2};
+        logic.initBoard(cache, board, players, false, false);
+
+        Random random = new Random(16);
+        for(int ply = 0; ply < 150; ply++) {
+            int player = players[ply % players.length];
+            List<BoardIndex> valid = new ArrayList<>();
+            for(int row = 0; row < board.size; row++) {
+                for(int column = 0; column < board.size; column++) {
+                    MoveCommand move = new MoveCommand(player, new BoardIndex(row, column));
+                    boolean playable;
+                    try {
+                        logic.play(cache.duplicate(), new Board(board), move, false, false);
+                        playable = true;
+                    } catch(InvalidParameterException e) {
+                        playable = false;
+                    }
+                    assertEquals(playable, logic.isValidMove(cache, board, move));
+                    if(playable) valid.add(move.position);
+                }
+            }
+
+            //the one pass versions must agree with checking every tile
+            int[] moves = new int[board.size * board.size];
+            int count = logic.getValidMoves(cache, board, player, moves);
+            assertEquals(valid.size(), count);
+            for(int i = 0; i < count; i++)
+                assertEquals(valid.get(i).row * board.size + valid.get(i).column, moves[i]);
+            assertEquals(!valid.isEmpty(), logic.canPlay(cache, board, player));
+
+            if(valid.isEmpty()) continue;
+            logic.play(cache, board, new MoveCommand(player, valid.get(random.nextInt(valid.size()))), false, false);
+
+            //a group has no liberties exactly when its count is 0
+            for(int row = 0; row < board.size; row++)
+                for(int column = 0; column < board.size; column++)
+                    if(board.at(row, column) >= 0)
+                        assertEquals(countLiberties(board, row, column) > 0,
+                                cache.getLiberties(board, new BoardIndex(row, column)) > 0);
+        }
+    }
+
 //    @Test
 //    public void testIsValidMove() {
 //        Board board = new Board(4);
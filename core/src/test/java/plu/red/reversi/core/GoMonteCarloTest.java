@@ -0,0 +1,119 @@
+package plu.red.reversi.core;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.GoMonteCarlo;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.GoPlayoutBoard;
+import plu.red.reversi.core.util.Color;
+import plu.red.reversi.core.util.DataMap;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class GoMonteCarloTest {
+    private Game game;
+    private int first;
+    private int second;
+
+    @Before
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        DataMap settings = SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject());
+        settings.set(SettingsLoader.GAME_BOARD_SIZE, 9);
+        game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(settings).setLogic(new GoLogic(game));
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+        first = game.getCurrentPlayer().getID();
+        second = game.getNextPlayerID(first);
+    }
+
+    private void play(int player, int row, int column) {
+        game.getGameLogic().play(new MoveCommand(player, new BoardIndex(row, column)));
+    }
+
+    @Test
+    public void testGetBestPlay() {
+        GoMonteCarlo search = new GoMonteCarlo(game, first, 500).setSeed(1L);
+        BoardIndex move = search.getBestPlay();
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(first, move)));
+        assertEquals(500, search.getPlayoutCount());
+    }
+
+    /**
+     * Plays a game between the search and random moves.
+     * @return True if the search captured more stones.
+     */
+    private boolean playRandom(boolean searchFirst, int playouts, long seed) {
+        Random random = new Random(seed);
+        int bot = searchFirst ? first : second;
+        int player = first;
+        int size = game.getBoard().size;
+        for(int ply = 0, passes = 0; ply < 3 * size * size && passes < 2; ply++) {
+            int other = player == first ? second : first;
+            GoPlayoutBoard board = GoPlayoutBoard.fromBoard(game.getBoard(), new int[] {player, other},
+                    new int[] {game.getGameLogic().getScore(player), game.getGameLogic().getScore(other)});
+
+            int tile;
+            if(player == bot) {
+                BoardIndex move = new GoMonteCarlo(game, bot, playouts).setSeed(seed + ply).getBestPlay();
+                tile = move == null ? -1 : move.row * size + move.column;
+                //the search never passes, but filling its own eye is as good as passing
+                if(tile >= 0 && board.isEye(0, board.point(tile))) tile = -1;
+            } else {
+                int point = board.randomMove(0, random);
+                tile = point == GoPlayoutBoard.PASS ? -1 : board.tile(point);
+            }
+
+            if(tile < 0) passes++;
+            else {
+                passes = 0;
+                play(player, tile / size, tile % size);
+            }
+            player = other;
+        }
+        return game.getGameLogic().getScore(bot) > game.getGameLogic().getScore(bot == first ? second : first);
+    }
+
+    @Test
+    public void testBeatsRandom() {
+        assertTrue(playRandom(true, 300, 5));
+        setup();
+        assertTrue(playRandom(false, 300, 6));
+    }
+
+    @Test
+    public void testParallel() {
+        play(first, 4, 4);
+        play(second, 3, 4);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            GoMonteCarlo search = new GoMonteCarlo(game, first, 8000).setPool(pool);
+            BoardIndex move = search.getBestPlay();
+            assertTrue(game.getGameLogic().isValidMove(new MoveCommand(first, move)));
+            assertEquals(8000, search.getPlayoutCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeLimit() {
+        GoMonteCarlo search = new GoMonteCarlo(game, first, Integer.MAX_VALUE).setTimeLimit(200);
+        long start = System.currentTimeMillis();
+        BoardIndex move = search.getBestPlay();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(first, move)));
+        assertTrue(search.getPlayoutCount() > 0);
+    }
+}
@@ -0,0 +1,120 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.search.GoPlayoutBoard;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GoPlayoutBoardTest {
+
+    /**
+     * Checks a move by trying it on a copy of the game, since play() is the final word on what is valid.
+     */
+    private static boolean canPlay(GameLogic logic, GameLogicCache cache, Board board, int player, int tile) {
+        try {
+            logic.play(cache.duplicate(), new Board(board), new MoveCommand(player,
+                    new BoardIndex(tile / board.size, tile % board.size)), false, false);
+            return true;
+        } catch(InvalidParameterException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Plays the same random game with GoLogic and a GoPlayoutBoard, checking they agree after every move.
+     */
+    private static void compare(int size, int[] ids, long seed) {
+        GameLogic logic = new GoLogic();
+        Board board = new Board(size);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, ids, false, false);
+        GoPlayoutBoard playout = GoPlayoutBoard.fromBoard(board, ids, new int[ids.length]);
+
+        Random random = new Random(seed);
+        for(int ply = 0; ply < size * size * 3; ply++) {
+            int player = ply % ids.length;
+            List<Integer> legal = new ArrayList<>();
+            for(int tile = 0; tile < size * size; tile++) {
+                boolean valid = canPlay(logic, cache, board, ids[player], tile);
+                assertEquals(valid, playout.isLegal(player, playout.point(tile)));
+                if(valid) legal.add(tile);
+            }
+            if(legal.isEmpty()) continue;
+
+            int tile = legal.get(random.nextInt(legal.size()));
+            logic.play(cache, board, new MoveCommand(ids[player], new BoardIndex(tile / size, tile % size)),
+                    false, false);
+            playout.play(player, playout.point(tile));
+
+            for(int i = 0; i < ids.length; i++)
+                assertEquals(logic.getScore(cache, board, ids[i]), playout.getCaptures(i));
+            for(int t = 0; t < size * size; t++) {
+                int id = board.at(t / size, t % size);
+                int stone = playout.get(playout.point(t));
+                assertEquals(id, stone < 0 ? stone : ids[stone]);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesGoLogic() {
+        compare(5, new int[] {0, 1}, 1);
+        compare(5, new int[] {0, 1}, 2);
+        compare(6, new int[] {3, 1, 2}, 3);
+        compare(4, new int[] {0, 1, 2, 3}, 4);
+        compare(5, new int[] {0, 1, 2, 3}, 0);
+    }
+
+    @Test
+    public void testCaptureAndEyes() {
+        GoPlayoutBoard board = new GoPlayoutBoard(5, 2);
+        //player 0 surrounds the corner; the corner is their eye and player 1 cannot play there
+        board.play(0, board.point(1));
+        board.play(0, board.point(5));
+        assertTrue(board.isEye(0, board.point(0)));
+        assertFalse(board.isLegal(1, board.point(0)));
+        assertFalse(board.isEye(1, board.point(0)));
+
+        //player 1 takes the stone on tile 1
+        board.play(1, board.point(2));
+        board.play(1, board.point(6));
+        assertTrue(board.isLegal(1, board.point(0)));
+        board.play(1, board.point(0));
+        assertEquals(1, board.getCaptures(1));
+        assertEquals(GoPlayoutBoard.EMPTY, board.get(board.point(1)));
+        assertEquals(0, board.get(board.point(5)));
+
+        //there is no ko rule, so player 0 can take straight back
+        assertTrue(board.isLegal(0, board.point(1)));
+        board.play(0, board.point(1));
+        assertEquals(1, board.getCaptures(0));
+    }
+
+    @Test
+    public void testPlayout() {
+        GoPlayoutBoard start = new GoPlayoutBoard(9, 2);
+        GoPlayoutBoard board = new GoPlayoutBoard(9, 2);
+        Random random = new Random(5);
+        for(int i = 0; i < 20; i++) {
+            board.copyFrom(start);
+            int moves = board.playout(0, random, 3 * 81);
+            assertTrue(moves > 0 && moves <= 3 * 81);
+            //random games which keep their eyes end with both players unable to move
+            if(moves < 3 * 81) {
+                assertEquals(GoPlayoutBoard.PASS, board.randomMove(0, random));
+                assertEquals(GoPlayoutBoard.PASS, board.randomMove(1, random));
+            }
+        }
+    }
+}
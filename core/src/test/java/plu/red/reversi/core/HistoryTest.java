@@ -5,13 +5,29 @@ import org.junit.Before;
 import org.junit.Test;
 import plu.red.reversi.core.command.BoardCommand;
 import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
 import plu.red.reversi.core.game.History;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.GoLogic;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.listener.IBoardUpdateListener;
+import plu.red.reversi.core.util.Color;
 import plu.red.reversi.core.util.DataMap;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class HistoryTest {
@@ -84,4 +100,152 @@ public class HistoryTest {
 
         assertEquals(3, history2.getNumBoardCommands());
     }
+
+    @Test
+    public void testSnapshots() {
+        //record a game of Go with captures, keeping every position along the way
+        GameLogic logic = new GoLogic();
+        Board board = new Board(7);
+        GameLogicCache cache = logic.createCache();
+        List<Board> boards = new ArrayList<>();
+        List<int[]> scores = new ArrayList<>();
+        Random random = new Random(21);
+        int[] moves = new int[board.size * board.size];
+        boards.add(new Board(board));
+        scores.add(new int[3]);
+        for(int ply = 0; history.getNumBoardCommands() < 100; ply++) {
+            int player = ply % 3;
+            int count = logic.getValidMoves(cache, board, player, moves);
+            if(count == 0) continue;
+            int move = moves[random.nextInt(count)];
+            MoveCommand c = new MoveCommand(player, new BoardIndex(move / board.size, move % board.size));
+            logic.play(cache, board, c, false, false);
+            history.addCommand(c);
+            boards.add(new Board(board));
+            scores.add(new int[] {logic.getScore(cache, board, 0), logic.getScore(cache, board, 1),
+                    logic.getScore(cache, board, 2)});
+        }
+        assertNull(history.getSnapshot(100));
+
+        //the first replay takes snapshots, and the ones after start from them
+        for(int pass = 0; pass < 2; pass++) {
+            for(int n = 0; n <= 100; n += 7) {
+                Board replayed = new Board(board.size);
+                GameLogicCache replayCache = logic.createCache();
+                logic.replay(replayCache, replayed, history, n, false);
+                assertEquals(boards.get(n), replayed);
+                for(int p = 0; p < 3; p++)
+                    assertEquals(scores.get(n)[p], logic.getScore(replayCache, replayed, p));
+
+                //the cache is ready to keep playing
+                Board expected = new Board(boards.get(n));
+                GameLogicCache expectedCache = logic.createCache();
+                logic.replay(expectedCache, expected, new History(), 0, false);
+                expected.copyFrom(boards.get(n));
+                logic.rebuildCache(expectedCache, expected);
+                int[] a = new int[moves.length];
+                int[] b = new int[moves.length];
+                for(int p = 0; p < 3; p++) {
+                    int count = logic.getValidMoves(replayCache, replayed, p, a);
+                    assertEquals(logic.getValidMoves(expectedCache, expected, p, b), count);
+                    assertArrayEquals(b, a);
+                }
+            }
+        }
+        assertNotNull(history.getSnapshot(100));
+        assertEquals(96, history.getSnapshot(100).commands);
+        assertEquals(32, history.getSnapshot(63).commands);
+    }
+
+    /**
+     * Plays a random game of Go with captures, replaying it to the end so it has snapshots.
+     */
+    private void playGo(GameLogic logic, int commands) {
+        Board board = new Board(7);
+        GameLogicCache cache = logic.createCache();
+        Random random = new Random(21);
+        int[] moves = new int[board.size * board.size];
+        for(int ply = 0; history.getNumBoardCommands() < commands; ply++) {
+            int player = ply % 3;
+            int count = logic.getValidMoves(cache, board, player, moves);
+            if(count == 0) continue;
+            int move = moves[random.nextInt(count)];
+            MoveCommand c = new MoveCommand(player, new BoardIndex(move / board.size, move % board.size));
+            logic.play(cache, board, c, false, false);
+            history.addCommand(c);
+        }
+        logic.replay(logic.createCache(), new Board(board.size), history, commands, false);
+    }
+
+    @Test
+    public void testSerializeSnapshots() {
+        GameLogic logic = new GoLogic();
+        playGo(logic, 100);
+        assertEquals(3, history.getSnapshots().size());
+
+        DataMap data = new DataMap();
+        data.set("test", history);
+        History loaded = new DataMap(data.toJSON()).get("test", History.class);
+        assertEquals(100, loaded.getNumBoardCommands());
+        assertEquals(3, loaded.getSnapshots().size());
+        assertEquals(96, loaded.getSnapshot(100).commands);
+
+        //the loaded snapshots give the same positions as replaying from the start
+        Board expected = new Board(7);
+        Board replayed = new Board(7);
+        GameLogicCache expectedCache = logic.createCache();
+        GameLogicCache replayedCache = logic.createCache();
+        logic.initBoard(expectedCache, expected, history.getMoveCommandsUntil(100), false, false);
+        logic.replay(replayedCache, replayed, loaded, 100, false);
+        assertEquals(expected, replayed);
+        for(int p = 0; p < 3; p++)
+            assertEquals(logic.getScore(expectedCache, expected, p), logic.getScore(replayedCache, replayed, p));
+    }
+
+    @Test
+    public void testReplayNotifiesRefresh() {
+        GameLogic logic = new GoLogic();
+        playGo(logic, 40);
+
+        int[] calls = new int[2];
+        logic.addBoardUpdateListener(new IBoardUpdateListener() {
+            @Override
+            public void onBoardUpdate(BoardUpdate update) {
+                calls[0]++;
+            }
+
+            @Override
+            public void onBoardRefresh() {
+                calls[1]++;
+            }
+        });
+
+        //starting from the snapshot at 32 skips telling listeners about the commands before it
+        logic.replay(logic.createCache(), new Board(7), history, 40, true);
+        assertEquals(8, calls[0]);
+        assertEquals(1, calls[1]);
+    }
+
+    @Test
+    public void testLivePlayTakesSnapshots() {
+        Controller.init(new Client(null, null, null, null));
+        Game game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+
+        int[] moves = new int[64];
+        while(game.getHistory().getNumBoardCommands() < History.SNAPSHOT_INTERVAL) {
+            int player = game.getCurrentPlayer().getID();
+            int count = game.getGameLogic().getValidMoves(game.getGameCache(), game.getBoard(), player, moves);
+            assertTrue(count > 0);
+            game.acceptCommand(new MoveCommand(player, new BoardIndex(moves[0] / 8, moves[0] % 8)));
+        }
+
+        History.Snapshot snapshot = game.getHistory().getSnapshot(History.SNAPSHOT_INTERVAL);
+        assertNotNull(snapshot);
+        assertEquals(History.SNAPSHOT_INTERVAL, snapshot.commands);
+    }
 }
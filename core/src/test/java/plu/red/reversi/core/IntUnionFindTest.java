@@ -0,0 +1,133 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.util.IntUnionFind;
+import plu.red.reversi.core.util.UnionFind;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntUnionFindTest {
+    @Test
+    public void testIntUnionFind() {
+        IntUnionFind uf = new IntUnionFind(10);
+        assertEquals(0, uf.disjointSets());
+        assertEquals(10, uf.capacity());
+        assertTrue(uf.isEmpty());
+        assertEquals(-1, uf.getRep(3));
+    }
+
+    @Test
+    public void testUnion() {
+        IntUnionFind uf = new IntUnionFind(10);
+        for(int x = 0; x < 5; ++x) assertTrue(uf.add(x));
+        assertFalse(uf.add(2));
+        assertEquals(5, uf.disjointSets());
+
+        assertTrue(uf.union(0, 1));
+        assertTrue(uf.union(2, 3));
+        assertTrue(uf.union(1, 3));
+        assertFalse(uf.union(0, 2));
+        assertFalse(uf.union(0, 7)); //7 was never added
+
+        assertEquals(2, uf.disjointSets());
+        assertEquals(5, uf.size());
+        assertEquals(4, uf.setSize(3));
+        assertEquals(1, uf.setSize(4));
+        assertTrue(uf.inSameSet(0, 3));
+        assertFalse(uf.inSameSet(0, 4));
+
+        //walking a set visits each member once
+        boolean[] seen = new boolean[10];
+        int x = 2;
+        do {
+            assertFalse(seen[x]);
+            seen[x] = true;
+            x = uf.next(x);
+        } while(x != 2);
+        assertTrue(seen[0] && seen[1] && seen[2] && seen[3] && !seen[4]);
+    }
+
+    @Test
+    public void testRemoveSet() {
+        IntUnionFind uf = new IntUnionFind(10);
+        for(int x = 0; x < 6; ++x) uf.add(x);
+        uf.union(0, 1);
+        uf.union(1, 2);
+        uf.union(4, 5);
+
+        int[] removed = new int[10];
+        removed[0] = 9;
+        assertEquals(3, uf.removeSet(1, removed, 1));
+        assertEquals(9, removed[0]);
+        int[] sorted = Arrays.copyOfRange(removed, 1, 4);
+        Arrays.sort(sorted);
+        assertArrayEquals(new int[] {0, 1, 2}, sorted);
+
+        assertFalse(uf.contains(0));
+        assertEquals(0, uf.removeSet(0, null, 0));
+        assertEquals(3, uf.size());
+        assertEquals(2, uf.disjointSets());
+        assertTrue(uf.inSameSet(4, 5));
+
+        //removed values can be added again on their own
+        assertTrue(uf.add(1));
+        assertEquals(1, uf.setSize(1));
+    }
+
+    @Test
+    public void testCopy() {
+        IntUnionFind uf = new IntUnionFind(8);
+        for(int x = 0; x < 8; ++x) uf.add(x);
+        uf.union(0, 5);
+        uf.union(5, 7);
+
+        IntUnionFind copy = new IntUnionFind(uf);
+        assertEquals(uf.getRep(7), copy.getRep(7));
+        copy.union(1, 2);
+        assertFalse(uf.inSameSet(1, 2));
+
+        IntUnionFind other = new IntUnionFind(3);
+        other.copyFrom(copy);
+        assertEquals(8, other.capacity());
+        assertEquals(copy.disjointSets(), other.disjointSets());
+        assertTrue(other.inSameSet(0, 7));
+        assertTrue(other.inSameSet(1, 2));
+
+        other.setCapacity(4);
+        assertTrue(other.isEmpty());
+        assertEquals(4, other.capacity());
+    }
+
+    @Test
+    public void testMatchesUnionFind() {
+        Random random = new Random(17);
+        IntUnionFind uf = new IntUnionFind(50);
+        UnionFind<Integer> reference = new UnionFind<>();
+        for(int n = 0; n < 2000; ++n) {
+            int x = random.nextInt(50);
+            int y = random.nextInt(50);
+            switch(random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.add(x), uf.add(x));
+                    break;
+                case 1:
+                    if(reference.contains(x) && reference.contains(y))
+                        assertEquals(reference.union(x, y), uf.union(x, y));
+                    break;
+                default:
+                    if(random.nextInt(4) == 0 && reference.contains(x)) {
+                        int size = uf.setSize(x);
+                        reference.removeSet(x, null);
+                        assertEquals(size, uf.removeSet(x, null, 0));
+                    }
+            }
+            assertEquals(reference.size(), uf.size());
+            assertEquals(reference.disjointSets(), uf.disjointSets());
+            assertEquals(reference.contains(x) && reference.contains(y) && reference.inSameSet(x, y),
+                    uf.inSameSet(x, y));
+        }
+    }
+}
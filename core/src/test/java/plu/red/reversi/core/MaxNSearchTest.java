@@ -0,0 +1,122 @@
+package plu.red.reversi.core;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.MaxNSearch;
+import plu.red.reversi.core.util.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MaxNSearchTest {
+    private Game game;
+
+    @Before
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        game = newGame(Color.BLACK, Color.WHITE, Color.RED, Color.BLUE);
+    }
+
+    private static Game newGame(Color... colors) {
+        Game game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        for(Color color : colors) new NullPlayer(game, color);
+        game.initialize();
+        return game;
+    }
+
+    /**
+     * Plays random moves, skipping players who cannot move.
+     * @return The player to move next, or -1 if the game ended.
+     */
+    private int playRandom(Random random, int plies) {
+        int player = game.getCurrentPlayer().getID();
+        for(int i = 0; i < plies; i++) {
+            int passes = 0;
+            while(!game.getGameLogic().canPlay(player)) {
+                if(++passes >= game.getPlayerCount()) return -1;
+                player = game.getNextPlayerID(player);
+            }
+            List<BoardIndex> moves = new ArrayList<>(game.getGameLogic().getValidMoves(player));
+            game.getGameLogic().play(new MoveCommand(player, moves.get(random.nextInt(moves.size()))));
+            player = game.getNextPlayerID(player);
+        }
+        return player;
+    }
+
+    /**
+     * Searches a few positions from a random game with and without pruning.
+     * @return {nodes with pruning, nodes without}
+     */
+    private long[] comparePruning(Random random) {
+        int player = playRandom(random, 6);
+        long prunedNodes = 0;
+        long fullNodes = 0;
+        for(int n = 0; n < 8 && player >= 0; n++) {
+            if(game.getGameLogic().canPlay(player)) {
+                MaxNSearch pruned = new MaxNSearch(game);
+                MaxNSearch full = new MaxNSearch(game).setShallowPruning(false);
+                int move = pruned.search(game.getGameCache(), game.getBoard(), player, 4);
+                assertEquals(full.search(game.getGameCache(), game.getBoard(), player, 4), move);
+                prunedNodes += pruned.getNodeCount();
+                fullNodes += full.getNodeCount();
+
+                //the best move is just as good for its player either way
+                assertEquals(full.getScore(player), pruned.getScore(player));
+            }
+            player = playRandom(random, 3);
+        }
+        return new long[] {prunedNodes, fullNodes};
+    }
+
+    @Test
+    public void testShallowPruning() {
+        //four players rarely hold enough of the board between two of them to prune, but it must never hurt
+        long[] nodes = comparePruning(new Random(14));
+        assertTrue(nodes[0] <= nodes[1]);
+
+        //with two players the scores always add up to the total, so there is plenty to prune
+        game = newGame(Color.BLACK, Color.WHITE);
+        nodes = comparePruning(new Random(14));
+        assertTrue(nodes[0] < nodes[1]);
+    }
+
+    @Test
+    public void testNoMoves() {
+        //nobody has played yet, so only the first player can move
+        int first = game.getCurrentPlayer().getID();
+        MaxNSearch search = new MaxNSearch(game);
+        int move = search.search(game.getGameCache(), game.getBoard(), first, 2);
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(first, new BoardIndex(move / 8, move % 8))));
+        assertEquals(move, search.getBestMove());
+        assertTrue(search.getScore(first) > 0);
+    }
+
+    @Test
+    public void testStrategies() {
+        assertEquals(ReversiMinimax.MultiplayerStrategy.PARANOID, ReversiMinimax.MultiplayerStrategy.forPlayers(2));
+        assertEquals(ReversiMinimax.MultiplayerStrategy.PARANOID, ReversiMinimax.MultiplayerStrategy.forPlayers(3));
+        assertEquals(ReversiMinimax.MultiplayerStrategy.MAX_N, ReversiMinimax.MultiplayerStrategy.forPlayers(4));
+
+        int player = playRandom(new Random(3), 5);
+        while(!game.getGameLogic().canPlay(player)) player = game.getNextPlayerID(player);
+        for(ReversiMinimax.MultiplayerStrategy strategy : new ReversiMinimax.MultiplayerStrategy[] {
+                null, ReversiMinimax.MultiplayerStrategy.PARANOID, ReversiMinimax.MultiplayerStrategy.MAX_N}) {
+            ReversiMinimax minimax = new ReversiMinimax(game, player, 3).setMultiplayerStrategy(strategy);
+            BoardIndex move = minimax.getBestPlay();
+            assertTrue(game.getGameLogic().isValidMove(new MoveCommand(player, move)));
+            assertTrue(minimax.getNodeCount() > 0);
+        }
+    }
+}
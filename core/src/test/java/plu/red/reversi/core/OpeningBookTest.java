@@ -0,0 +1,129 @@
+package plu.red.reversi.core;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.OpeningBook;
+import plu.red.reversi.core.game.search.OpeningBookBuilder;
+import plu.red.reversi.core.util.Color;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OpeningBookTest {
+    private Game game;
+
+    @Before
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        game = newGame();
+    }
+
+    private static Game newGame() {
+        Game game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+        return game;
+    }
+
+    /**
+     * Plays an opening on a new game, alternating between the two players.
+     */
+    private static Game play(int first, int... tiles) {
+        Game game = newGame();
+        int player = first;
+        for(int tile : tiles) {
+            game.getGameLogic().play(new MoveCommand(player, new BoardIndex(tile / 8, tile % 8)));
+            player = 1 - player;
+        }
+        return game;
+    }
+
+    private static File write(OpeningBookBuilder builder) throws IOException {
+        File file = File.createTempFile("book", ".dat");
+        file.deleteOnExit();
+        builder.write(file);
+        return file;
+    }
+
+    @Test
+    public void testPopularMove() throws IOException {
+        int first = game.getCurrentPlayer().getID();
+
+        //two games open on tile 20, one on tile 29
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        assertTrue(builder.addHistory(play(first, 20, 19).getHistory(), 8, 20));
+        assertTrue(builder.addHistory(play(first, 20, 21).getHistory(), 8, 20));
+        assertTrue(builder.addHistory(play(first, 29, 19).getHistory(), 8, 20));
+        assertEquals(3, builder.getGamesAdded());
+
+        OpeningBook book = OpeningBook.open(write(builder));
+        //20 and 29 from the start, then 19 and 21 after 20, and 19 after 29
+        assertEquals(5, book.size());
+        assertEquals(20, book.probe(game.getBoard(), first));
+        //same tiles with the other player to move is not in the book
+        assertEquals(-1, book.probe(game.getBoard(), 1 - first));
+
+        //moves seen in fewer games are left out
+        builder.setMinGames(2);
+        book = OpeningBook.open(write(builder));
+        assertEquals(1, book.size());
+        assertEquals(20, book.probe(game.getBoard(), first));
+    }
+
+    @Test
+    public void testMinimaxUsesBook() throws IOException {
+        int first = game.getCurrentPlayer().getID();
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.addHistory(play(first, 34).getHistory(), 8, 20);
+
+        ReversiMinimax minimax = new ReversiMinimax(game, first, 6);
+        minimax.setOpeningBook(OpeningBook.open(write(builder)));
+        assertEquals(new BoardIndex(4, 2), minimax.getBestPlay());
+        assertEquals(0, minimax.getNodeCount());
+
+        //out of the book it searches as normal
+        game.getGameLogic().play(new MoveCommand(first, new BoardIndex(4, 2)));
+        minimax = new ReversiMinimax(game, 1 - first, 2).setOpeningBook(minimax.getOpeningBook());
+        BoardIndex move = minimax.getBestPlay();
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(1 - first, move)));
+        assertTrue(minimax.getNodeCount() > 0);
+    }
+
+    @Test
+    public void testSelfPlay() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        Random random = new Random(9);
+        for(int i = 0; i < 3; i++)
+            assertTrue(builder.addSelfPlay(newGame(), 1, 4, 10, random));
+
+        OpeningBook book = OpeningBook.open(write(builder));
+        assertTrue(book.size() >= 10);
+        int first = game.getCurrentPlayer().getID();
+        int move = book.probe(game.getBoard(), first);
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(first, new BoardIndex(move / 8, move % 8))));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadFile() throws IOException {
+        File file = File.createTempFile("book", ".dat");
+        file.deleteOnExit();
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        }
+        OpeningBook.open(file);
+    }
+}
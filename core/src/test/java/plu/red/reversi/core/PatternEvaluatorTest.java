@@ -0,0 +1,83 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.search.DiscEvaluator;
+import plu.red.reversi.core.game.search.PatternEvaluator;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PatternEvaluatorTest {
+
+    /**
+     * Mirrors a mask across the main diagonal, one tile at a time.
+     */
+    private static long transpose(long discs) {
+        long result = 0;
+        for(int row = 0; row < 8; row++)
+            for(int col = 0; col < 8; col++)
+                if((discs & (1L << (row * 8 + col))) != 0) result |= 1L << (col * 8 + row);
+        return result;
+    }
+
+    @Test
+    public void testSymmetry() {
+        Random random = new Random(10);
+        for(int n = 0; n < 500; n++) {
+            long[] p = ReversiBitboardTest.randomPosition(random, 1 + random.nextInt(55), 0);
+            if(p == null) continue;
+            long own = p[0];
+            long opp = p[1];
+            int score = PatternEvaluator.evaluate(own, opp);
+
+            //the same position is worth the same to one player as it costs the other
+            assertEquals(-score, PatternEvaluator.evaluate(opp, own));
+
+            //turning or mirroring the board must not change anything
+            assertEquals(score, PatternEvaluator.evaluate(Long.reverseBytes(own), Long.reverseBytes(opp)));
+            assertEquals(score, PatternEvaluator.evaluate(Long.reverse(own), Long.reverse(opp)));
+            assertEquals(score, PatternEvaluator.evaluate(transpose(own), transpose(opp)));
+            assertEquals(score, PatternEvaluator.evaluate(
+                    transpose(Long.reverseBytes(own)), transpose(Long.reverseBytes(opp))));
+        }
+    }
+
+    @Test
+    public void testCorners() {
+        //a few discs near the top edge
+        long own = 0x3CL << 8;
+        long opp = 0x3CL << 16;
+        int base = PatternEvaluator.evaluate(own, opp);
+
+        //taking a corner is good, and giving one away by sitting next to it is bad
+        assertTrue(PatternEvaluator.evaluate(own | 1L, opp) > base);
+        assertTrue(PatternEvaluator.evaluate(own, opp | 1L) < base);
+        assertTrue(PatternEvaluator.evaluate(own | (1L << 9), opp) < base);
+    }
+
+    @Test
+    public void testFallback() {
+        GameLogic logic = new ReversiLogic();
+        PatternEvaluator patterns = new PatternEvaluator();
+        DiscEvaluator discs = new DiscEvaluator();
+
+        //boards which do not fit in a bitboard use the plain disc count
+        Board board = new Board(6);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+        assertEquals(discs.evaluate(logic, cache, board, 0), patterns.evaluate(logic, cache, board, 0));
+
+        board = new Board(8);
+        cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+        ReversiBitboard bitboard = ReversiBitboard.fromBoard(board);
+        assertEquals(PatternEvaluator.evaluate(bitboard.discs(0), bitboard.discs(1)),
+                patterns.evaluate(logic, cache, board, 0));
+    }
+}
@@ -0,0 +1,148 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.command.MoveCommand;
+import plu.red.reversi.core.game.Board;
+import plu.red.reversi.core.game.BoardIndex;
+import plu.red.reversi.core.game.logic.GameLogic;
+import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.logic.ReversiLogicCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReversiBitboardTest {
+
+    /**
+     * Plays random moves from the start, for tests which need bitboard positions from all through a game.
+     * @param plies Most plies to play; a pass counts as one.
+     * @param empties Stops early once this few empty tiles are left.
+     * @return {own, opp} for the player to move, or null if the game ended first.
+     */
+    static long[] randomPosition(Random random, int plies, int empties) {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(8);
+        logic.initBoard(logic.createCache(), board, new int[]{0, 1}, false, false);
+        ReversiBitboard start = ReversiBitboard.fromBoard(board);
+
+        long own = start.discs(0);
+        long opp = start.opponentDiscs(0);
+        for(int i = 0; i < plies && Long.bitCount(~(own | opp)) > empties; i++) {
+            long moves = ReversiBitboard.moves(own, opp);
+            if(moves == 0) {
+                if(ReversiBitboard.moves(opp, own) == 0) return null;
+            } else {
+                int pick = random.nextInt(Long.bitCount(moves));
+                while(pick-- > 0) moves &= moves - 1;
+                int square = Long.numberOfTrailingZeros(moves);
+                long flips = ReversiBitboard.flips(own, opp, square);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+            }
+            long t = own;
+            own = opp;
+            opp = t;
+        }
+        return new long[] {own, opp};
+    }
+
+    @Test
+    public void testFromBoard() {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(8);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        ReversiBitboard bitboard = ReversiBitboard.fromBoard(board);
+        assertNotNull(bitboard);
+        assertEquals(2, bitboard.count(0));
+        assertEquals(2, bitboard.count(1));
+        assertEquals(1, bitboard.opponent(0));
+        assertEquals(4, Long.bitCount(bitboard.moves(0)));
+
+        assertNull(ReversiBitboard.fromBoard(new Board(4)));
+
+        board.apply(new BoardIndex(0, 0), 2);
+        assertNull(ReversiBitboard.fromBoard(board));
+    }
+
+    @Test
+    public void testFlips() {
+        ReversiBitboard bitboard = new ReversiBitboard();
+        bitboard.set(0, 0);
+        bitboard.set(1, 1);
+        bitboard.set(2, 1);
+
+        //playing at the end of the row captures both
+        assertEquals((1L << 1) | (1L << 2), bitboard.flips(0, 3));
+        //can't flip anything from an occupied tile or without a cap
+        assertEquals(0, bitboard.flips(0, 2));
+        assertEquals(0, bitboard.flips(1, 3));
+        //lines must not wrap around to the next row
+        bitboard.set(7, 1);
+        assertEquals(0, bitboard.flips(0, 8));
+    }
+
+    @Test
+    public void testMatchesBoardLogic() {
+        GameLogic logic = new ReversiLogic();
+        Random random = new Random(8);
+
+        for(int game = 0; game < 20; game++) {
+            Board bitBoard = new Board(8);
+            GameLogicCache bitCache = logic.createCache();
+            logic.initBoard(bitCache, bitBoard, new int[]{0, 1}, false, false);
+
+            Board plainBoard = new Board(8);
+            GameLogicCache plainCache = new ReversiLogicCache(false);
+            logic.initBoard(plainCache, plainBoard, new int[]{0, 1}, false, false);
+
+            int player = 0;
+            int passes = 0;
+            while(passes < 2) {
+                Set<BoardIndex> bitMoves = logic.getValidMoves(bitCache, bitBoard, player);
+                Set<BoardIndex> plainMoves = logic.getValidMoves(plainCache, plainBoard, player);
+                assertEquals(plainMoves, bitMoves);
+                assertEquals(logic.canPlay(plainCache, plainBoard, player), logic.canPlay(bitCache, bitBoard, player));
+
+                for(BoardIndex index : bitBoard)
+                    assertEquals(
+                            logic.isValidMove(plainCache, plainBoard, new MoveCommand(player, index)),
+                            logic.isValidMove(bitCache, bitBoard, new MoveCommand(player, index)));
+
+                if(bitMoves.isEmpty()) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    List<BoardIndex> moves = new ArrayList<>(bitMoves);
+                    moves.sort(null);
+                    BoardIndex move = moves.get(random.nextInt(moves.size()));
+                    logic.play(bitCache, bitBoard, new MoveCommand(player, move), false, false);
+                    logic.play(plainCache, plainBoard, new MoveCommand(player, move), false, false);
+                    assertEquals(plainBoard, bitBoard);
+                }
+
+                assertEquals(logic.getScore(plainCache, plainBoard, 0), logic.getScore(bitCache, bitBoard, 0));
+                assertEquals(logic.getScore(plainCache, plainBoard, 1), logic.getScore(bitCache, bitBoard, 1));
+                player = 1 - player;
+            }
+        }
+    }
+
+    @Test
+    public void testFourPlayersUseBoard() {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(8);
+        ReversiLogicCache cache = (ReversiLogicCache)logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1, 2, 3}, false, false);
+
+        assertNull(cache.getBitboard(board));
+        assertFalse(logic.getValidMoves(cache, board, 0).isEmpty());
+    }
+}
@@ -7,8 +7,14 @@ import plu.red.reversi.core.game.Board;
 import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.logic.GameLogic;
 import plu.red.reversi.core.game.logic.GameLogicCache;
+import plu.red.reversi.core.game.logic.MoveUndo;
 import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.logic.ReversiLogicCache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -28,6 +34,49 @@ public class ReversiLogicTest {
         assertEquals(1, logic.getScore(cache, board, 1));
     }
 
+    @Test
+    public void testScoreCache() {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(6);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1, 2, 3}, false, false);
+        assertArrayEquals(new int[] {0, 1, 2, 3}, sortedPlayers(cache));
+
+        //copies keep their own scores
+        GameLogicCache copy = cache.duplicate();
+        int[] moves = new int[36];
+        assertTrue(logic.getValidMoves(copy, board, 0, moves) > 0);
+        logic.play(copy, board, new MoveCommand(0, new BoardIndex(moves[0] / 6, moves[0] % 6)), false, false);
+        assertTrue(copy.getScore(0) > cache.getScore(0));
+        int[] played = new int[4];
+        for(int player = 0; player < 4; player++)
+            played[player] = copy.getScore(player);
+
+        //an invalidated cache counts every player again from the board
+        copy.invalidate();
+        assertFalse(copy.hasScore(2));
+        assertEquals(0, copy.getScore(2));
+        for(int player = 0; player < 4; player++)
+            assertEquals(played[player], logic.getScore(copy, board, player));
+
+        copy.copyFrom(cache);
+        assertEquals(cache.getScore(0), copy.getScore(0));
+
+        //any number of players fits
+        for(int player = 10; player < 30; player++)
+            cache.addToScore(player, player);
+        assertEquals(24, cache.getScoredPlayers().length);
+        assertEquals(29, cache.getScore(29));
+        assertFalse(cache.addToScore(-1, 5));
+        assertFalse(cache.hasScore(-1));
+    }
+
+    private static int[] sortedPlayers(GameLogicCache cache) {
+        int[] players = cache.getScoredPlayers();
+        Arrays.sort(players);
+        return players;
+    }
+
     @Test
     public void testIsValidMove() {
         Board board = new Board(4);
@@ -105,4 +154,98 @@ public class ReversiLogicTest {
             logic.play(cache, board, new MoveCommand(1, i), false, false);
         }
     }
+
+    @Test
+    public void testGetValidMovesArray() {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(4);
+        GameLogicCache cache = logic.createCache();
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+
+        //same moves as the set, in tile order
+        int[] moves = new int[16];
+        assertEquals(4, logic.getValidMoves(cache, board, 1, moves));
+        assertArrayEquals(new int[]{1, 4, 11, 14}, Arrays.copyOf(moves, 4));
+        assertEquals((1L << 1) | (1L << 4) | (1L << 11) | (1L << 14), logic.getValidMoveMask(cache, board, 1));
+
+        //the bitboard must agree with the board walk
+        for(GameLogicCache c : new GameLogicCache[]{new ReversiLogicCache(), new ReversiLogicCache(false)}) {
+            Board b = new Board(8);
+            logic.initBoard(c, b, new int[]{0, 1}, false, false);
+            moves = new int[64];
+            assertEquals(4, logic.getValidMoves(c, b, 0, moves));
+            assertArrayEquals(new int[]{20, 29, 34, 43}, Arrays.copyOf(moves, 4));
+            assertEquals((1L << 20) | (1L << 29) | (1L << 34) | (1L << 43), logic.getValidMoveMask(c, b, 0));
+        }
+
+        try {
+            logic.getValidMoveMask(cache, new Board(10), 0);
+            assertTrue(false);
+        } catch(IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testMakeUnmakeMove() {
+        //8x8 runs on the bitboard, 6x6 walks the board
+        checkMakeUnmakeMove(new ReversiLogicCache(), 8);
+        checkMakeUnmakeMove(new ReversiLogicCache(false), 8);
+        checkMakeUnmakeMove(new ReversiLogicCache(), 6);
+    }
+
+    private static void checkMakeUnmakeMove(GameLogicCache cache, int size) {
+        GameLogic logic = new ReversiLogic();
+        Board board = new Board(size);
+        logic.initBoard(cache, board, new int[]{0, 1}, false, false);
+        MoveUndo undo = logic.createUndo();
+        Random random = new Random(size);
+
+        int player = 0;
+        for(int turn = 0; turn < 40; turn++) {
+            List<BoardIndex> moves = new ArrayList<>(logic.getValidMoves(cache, board, player));
+            if(moves.isEmpty()) break;
+            moves.sort(null);
+
+            Board before = new Board(board);
+            for(BoardIndex move : moves) {
+                //making a move must match playing it
+                Board played = new Board(board);
+                GameLogicCache playedCache = cache.duplicate();
+                logic.play(playedCache, played, new MoveCommand(player, move), false, false);
+
+                logic.makeMove(cache, board, new MoveCommand(player, move), undo);
+                assertEquals(played, board);
+                assertEquals(played.getHash(), board.getHash());
+                assertEquals(logic.getScore(playedCache, played, 0), logic.getScore(cache, board, 0));
+                assertEquals(logic.getScore(playedCache, played, 1), logic.getScore(cache, board, 1));
+                assertEquals(logic.getValidMoves(playedCache, played, 1 - player), logic.getValidMoves(cache, board, 1 - player));
+
+                //and taking it back must restore everything
+                logic.unmakeMove(cache, board, undo);
+                assertEquals(before, board);
+                assertEquals(before.getHash(), board.getHash());
+                assertEquals(new ArrayList<>(moves), sorted(logic.getValidMoves(cache, board, player)));
+            }
+
+            logic.play(cache, board, new MoveCommand(player, moves.get(random.nextInt(moves.size()))), false, false);
+            player = 1 - player;
+        }
+
+        //playing on top of a tile is not allowed, and must leave the board alone
+        BoardIndex taken = new BoardIndex(size / 2, size / 2);
+        Board before = new Board(board);
+        try {
+            logic.makeMove(cache, board, new MoveCommand(player, taken), undo);
+            assertTrue(false);
+        } catch(IllegalArgumentException e) {
+            assertEquals(before, board);
+        }
+    }
+
+    private static List<BoardIndex> sorted(Set<BoardIndex> set) {
+        List<BoardIndex> list = new ArrayList<>(set);
+        list.sort(null);
+        return list;
+    }
 }
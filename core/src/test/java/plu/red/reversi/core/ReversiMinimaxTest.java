@@ -7,15 +7,24 @@ import plu.red.reversi.core.command.MoveCommand;
 import plu.red.reversi.core.game.BoardIndex;
 import plu.red.reversi.core.game.Game;
 import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.Zobrist;
+import plu.red.reversi.core.game.logic.ReversiBitboard;
 import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.logic.ReversiLogicCache;
 import plu.red.reversi.core.game.player.NullPlayer;
 import plu.red.reversi.core.game.player.Player;
+import plu.red.reversi.core.game.search.EndgameSolver;
+import plu.red.reversi.core.game.search.PatternEvaluator;
+import plu.red.reversi.core.game.search.TranspositionTable;
 import plu.red.reversi.core.util.Color;
 import plu.red.reversi.core.util.DataMap;
 
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class ReversiMinimaxTest {
@@ -49,6 +58,220 @@ public class ReversiMinimaxTest {
         assertTrue(game.getGameLogic().isValidMove(new MoveCommand(1, bp)));
     }
 
+    @Test
+    public void testTranspositionTableReuse() {
+        ReversiMinimax reversiMinimax = new ReversiMinimax(game, 1, 6);
+        BoardIndex first = reversiMinimax.getBestPlay();
+        long firstNodes = reversiMinimax.getNodeCount();
+
+        //searching the same position again should mostly come out of the table
+        BoardIndex second = reversiMinimax.getBestPlay();
+        assertEquals(first, second);
+        assertTrue(reversiMinimax.getNodeCount() < firstNodes);
+    }
+
+    /**
+     * Plain minimax without any pruning or ordering, scoring leaves the same way ReversiMinimax does.
+     */
+    private static int minimax(long ai, long other, boolean aiToMove, int depth) {
+        if(depth == 0) return PatternEvaluator.evaluate(ai, other);
+        long own = aiToMove ? ai : other;
+        long opp = aiToMove ? other : ai;
+        long moves = ReversiBitboard.moves(own, opp);
+        if(moves == 0) {
+            if(ReversiBitboard.moves(opp, own) == 0) return (Long.bitCount(ai) - Long.bitCount(other)) * 16;
+            return minimax(ai, other, !aiToMove, depth);
+        }
+
+        int best = aiToMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for(; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = ReversiBitboard.flips(own, opp, square);
+            long played = own | flips | (1L << square);
+            int score = aiToMove ? minimax(played, opp & ~flips, false, depth - 1) :
+                    minimax(opp & ~flips, played, true, depth - 1);
+            best = aiToMove ? Math.max(best, score) : Math.min(best, score);
+        }
+        return best;
+    }
+
+    /**
+     * Plays the start of a game with one search for each side, checking every root score against plain minimax.
+     */
+    private void checkScores(ReversiMinimax.SearchMode mode) {
+        ReversiMinimax[] bots = {
+                new ReversiMinimax(game, 0, 4).setSearchMode(mode),
+                new ReversiMinimax(game, 1, 4).setSearchMode(mode)};
+        int player = game.getCurrentPlayer().getID();
+        for(int turn = 0; turn < 10; turn++) {
+            ReversiMinimax bot = bots[player];
+            BoardIndex move = bot.getBestPlay();
+
+            ReversiBitboard bitboard = ((ReversiLogicCache)game.getGameCache()).getBitboard(game.getBoard());
+            long hash = game.getBoard().getHash() ^ Zobrist.side(player);
+            assertEquals(minimax(bitboard.discs(player), bitboard.opponentDiscs(player), true, 4),
+                    TranspositionTable.score(bot.getTranspositionTable().probe(hash)));
+
+            game.getGameLogic().play(new MoveCommand(player, move));
+            player = 1 - player;
+        }
+    }
+
+    @Test
+    public void testMoveOrdering() {
+        //the same searches keep their killers and history between moves, which must never change the result
+        checkScores(ReversiMinimax.SearchMode.ALPHA_BETA);
+    }
+
+    @Test
+    public void testPrincipalVariationSearch() {
+        //the table is kept between moves, so later searches start with an aspiration window
+        checkScores(ReversiMinimax.SearchMode.PVS);
+    }
+
+    @Test
+    public void testParallelPrincipalVariationSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(int turn = 0; turn < 6; turn++) {
+                int player = turn % 2;
+                ReversiMinimax serial = new ReversiMinimax(game, player, 6);
+                ReversiMinimax parallel = new ReversiMinimax(game, player, 6).setPool(pool)
+                        .setSearchMode(ReversiMinimax.SearchMode.PVS).setTimeLimit(60000);
+
+                BoardIndex serialMove = serial.getBestPlay();
+                BoardIndex parallelMove = parallel.getBestPlay();
+                assertTrue(game.getGameLogic().isValidMove(new MoveCommand(player, parallelMove)));
+
+                long hash = game.getBoard().getHash() ^ Zobrist.side(player);
+                assertEquals(
+                        TranspositionTable.score(serial.getTranspositionTable().probe(hash)),
+                        TranspositionTable.score(parallel.getTranspositionTable().probe(hash)));
+
+                game.getGameLogic().play(new MoveCommand(player, serialMove));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPondering() {
+        int player = game.getCurrentPlayer().getID();
+        int bot = 1 - player;
+
+        //ponder to completion while the other player is on move
+        ReversiMinimax ponderer = new ReversiMinimax(game, bot, 5);
+        Runnable task = ponderer.ponder(player);
+        assertTrue(ponderer.isPondering());
+        task.run();
+        assertFalse(ponderer.isPondering());
+
+        game.getGameLogic().play(new MoveCommand(player, game.getGameLogic().getValidMoves(player).iterator().next()));
+
+        ReversiMinimax fresh = new ReversiMinimax(game, bot, 5);
+        BoardIndex expected = fresh.getBestPlay();
+        assertEquals(expected, ponderer.getBestPlay());
+        assertTrue(ponderer.getNodeCount() < fresh.getNodeCount() / 2);
+    }
+
+    @Test
+    public void testStopPondering() throws InterruptedException {
+        int player = game.getCurrentPlayer().getID();
+        ReversiMinimax ponderer = new ReversiMinimax(game, 1 - player, 60);
+        Thread thread = new Thread(ponderer.ponder(player));
+        thread.start();
+        Thread.sleep(50);
+
+        //asking for a move stops the ponder search first
+        game.getGameLogic().play(new MoveCommand(player, game.getGameLogic().getValidMoves(player).iterator().next()));
+        ponderer.stopPondering();
+        thread.join(2000);
+        assertFalse(thread.isAlive());
+        assertFalse(ponderer.isPondering());
+
+        //a stopped ponder search never starts
+        Runnable task = ponderer.ponder(1 - player);
+        ponderer.stopPondering();
+        long start = System.currentTimeMillis();
+        task.run();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testParallelSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(int turn = 0; turn < 6; turn++) {
+                int player = turn % 2;
+                ReversiMinimax serial = new ReversiMinimax(game, player, 6);
+                ReversiMinimax parallel = new ReversiMinimax(game, player, 6).setPool(pool);
+
+                BoardIndex serialMove = serial.getBestPlay();
+                BoardIndex parallelMove = parallel.getBestPlay();
+                assertTrue(game.getGameLogic().isValidMove(new MoveCommand(player, parallelMove)));
+
+                //moves may differ if they are tied, but the score of the position must not
+                long hash = game.getBoard().getHash() ^ Zobrist.side(player);
+                assertEquals(
+                        TranspositionTable.score(serial.getTranspositionTable().probe(hash)),
+                        TranspositionTable.score(parallel.getTranspositionTable().probe(hash)));
+
+                game.getGameLogic().play(new MoveCommand(player, serialMove));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelTimedSearch() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ReversiMinimax reversiMinimax = new ReversiMinimax(game, 1, 60).setTimeLimit(200).setPool(pool);
+            long start = System.currentTimeMillis();
+            BoardIndex bp = reversiMinimax.getBestPlay();
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue(game.getGameLogic().isValidMove(new MoveCommand(1, bp)));
+            assertTrue(elapsed < 2000);
+
+            // Every task has finished by the time the move comes back, so nothing adds to the count afterwards
+            long nodes = reversiMinimax.getNodeCount();
+            Thread.sleep(100);
+            assertEquals(nodes, reversiMinimax.getNodeCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimedSearch() {
+        ReversiMinimax reversiMinimax = new ReversiMinimax(game, 1, 60).setTimeLimit(200);
+        long start = System.currentTimeMillis();
+        BoardIndex bp = reversiMinimax.getBestPlay();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(game.getGameLogic().isValidMove(new MoveCommand(1, bp)));
+        assertTrue(elapsed < 2000);
+    }
+
+    @Test
+    public void testGameTimeLimit() {
+        Game timed = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        DataMap settings = SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject());
+        settings.set(SettingsLoader.GAME_TIME_LIMIT, 60);
+        timed.setSettings(settings).setLogic(new ReversiLogic(timed));
+        new NullPlayer(timed, Color.BLACK);
+        new NullPlayer(timed, Color.WHITE);
+        timed.initialize();
+
+        assertNotNull(timed.getTurnTimer());
+        ReversiMinimax reversiMinimax = new ReversiMinimax(timed, 1, 60);
+        BoardIndex bp = reversiMinimax.getBestPlay();
+        assertTrue(timed.getGameLogic().isValidMove(new MoveCommand(1, bp)));
+    }
+
     @Test
     public void testGetBestPlayEndGame() {
         ReversiMinimax reversiMinimax = new ReversiMinimax(game, 1, 4);
@@ -79,4 +302,35 @@ public class ReversiMinimaxTest {
             assertTrue(true);
         }
     }
+
+    @Test
+    public void testEndgameSolve() {
+        //play the first moves available until the end is close
+        int player = 0;
+        while(game.getBoard().getTotalPieces() < 64 - 14) {
+            Iterator<BoardIndex> possible = game.getGameLogic().getValidMoves(player).iterator();
+            if(possible.hasNext()) game.getGameLogic().play(new MoveCommand(player, possible.next()));
+            player = 1 - player;
+        }
+        while(!game.getGameLogic().canPlay(player)) player = 1 - player;
+
+        ReversiBitboard bitboard = ((ReversiLogicCache)game.getGameCache()).getBitboard(game.getBoard());
+        int margin = new EndgameSolver().solve(bitboard.discs(player), bitboard.opponentDiscs(player));
+
+        //a shallow search still has to find the exact result, in serial and in parallel
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(ForkJoinPool p : new ForkJoinPool[] {null, pool}) {
+                ReversiMinimax reversiMinimax = new ReversiMinimax(game, player, 2).setPool(p);
+                BoardIndex bp = reversiMinimax.getBestPlay();
+                assertTrue(game.getGameLogic().isValidMove(new MoveCommand(player, bp)));
+
+                long hash = game.getBoard().getHash() ^ Zobrist.side(player);
+                long entry = reversiMinimax.getTranspositionTable().probe(hash);
+                assertEquals(margin * 16, TranspositionTable.score(entry));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package plu.red.reversi.core;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import plu.red.reversi.core.game.Game;
+import plu.red.reversi.core.game.ReversiMinimax;
+import plu.red.reversi.core.game.logic.ReversiLogic;
+import plu.red.reversi.core.game.player.NullPlayer;
+import plu.red.reversi.core.game.search.SearchCounters;
+import plu.red.reversi.core.game.search.SearchStats;
+import plu.red.reversi.core.util.Color;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class SearchStatsTest {
+    private Game game;
+
+    @Before
+    public void setup() {
+        Controller.init(new Client(null, null, null, null));
+        game = new Game(Controller.getInstance(), new IMainGUI.NullGUI());
+        game.setSettings(SettingsLoader.INSTANCE.loadGameSettingsFromJSON(new JSONObject()))
+                .setLogic(new ReversiLogic(game));
+        new NullPlayer(game, Color.BLACK);
+        new NullPlayer(game, Color.WHITE);
+        game.initialize();
+    }
+
+    @Test
+    public void testAdd() {
+        SearchStats a = new SearchStats();
+        a.addNodes(10);
+        a.addProbe(true);
+        a.addProbe(false);
+        a.addCutoff(0);
+        a.addCutoff(20);
+        a.reachDepth(4);
+
+        SearchStats b = new SearchStats();
+        b.addNodes(5);
+        b.addEvaluation();
+        b.addCutoff(0);
+        b.reachDepth(7);
+        b.setCompletedDepth(3);
+
+        a.add(b);
+        assertEquals(15, a.getNodes());
+        assertEquals(1, a.getEvaluations());
+        assertEquals(2, a.getProbes());
+        assertEquals(1, a.getHits());
+        assertEquals(2, a.getCutoffs(0));
+        assertEquals(1, a.getCutoffs(SearchStats.CUTOFF_SLOTS - 1));
+        assertEquals(3, a.getTotalCutoffs());
+        assertEquals(7, a.getMaxDepth());
+        assertEquals(3, a.getCompletedDepth());
+
+        a.setElapsedNanos(1000000000L);
+        assertEquals(15, a.getNodesPerSecond());
+    }
+
+    @Test
+    public void testAllocation() {
+        SearchStats stats = new SearchStats();
+        long outer = SearchStats.startAllocation();
+        //only the outermost measurement on a thread counts
+        long inner = SearchStats.startAllocation();
+        assertEquals(SearchStats.UNKNOWN, inner);
+        byte[][] garbage = new byte[64][];
+        for(int i = 0; i < garbage.length; i++) garbage[i] = new byte[1024];
+        stats.endAllocation(inner);
+        assertEquals(SearchStats.UNKNOWN, stats.getAllocatedBytes());
+        stats.endAllocation(outer);
+        if(outer != SearchStats.UNKNOWN) assertTrue(stats.getAllocatedBytes() >= 64 * 1024);
+    }
+
+    @Test
+    public void testMinimaxStats() throws Exception {
+        long searches = SearchCounters.getInstance().getSearches();
+        ReversiMinimax minimax = new ReversiMinimax(game, 0, 5);
+        assertNull(minimax.getLastStats());
+        minimax.getBestPlay();
+
+        SearchStats stats = minimax.getLastStats();
+        assertEquals(minimax.getNodeCount(), stats.getNodes());
+        assertTrue(stats.getEvaluations() > 0);
+        assertTrue(stats.getProbes() > 0);
+        assertTrue(stats.getHits() <= stats.getProbes());
+        assertTrue(stats.getTotalCutoffs() > 0);
+        //most cutoffs should come from the first move tried
+        assertTrue(stats.getCutoffs(0) * 2 > stats.getTotalCutoffs());
+        assertEquals(5, stats.getCompletedDepth());
+        assertTrue(stats.getMaxDepth() >= 5);
+        assertTrue(stats.getElapsedNanos() > 0);
+
+        //the parallel search adds up every task
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ReversiMinimax parallel = new ReversiMinimax(game, 0, 6).setPool(pool);
+            parallel.getBestPlay();
+            assertEquals(parallel.getNodeCount(), parallel.getLastStats().getNodes());
+            assertEquals(6, parallel.getLastStats().getCompletedDepth());
+        } finally {
+            pool.shutdown();
+        }
+
+        //and every search ends up in the process totals, which are published
+        assertEquals(searches + 2, SearchCounters.getInstance().getSearches());
+        assertTrue(SearchCounters.getInstance().getNodes() >= stats.getNodes());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName(SearchCounters.OBJECT_NAME)));
+    }
+}
@@ -0,0 +1,57 @@
+package plu.red.reversi.core;
+
+import org.junit.Test;
+import plu.red.reversi.core.game.search.TranspositionTable;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(1024, table.capacity());
+        assertEquals(0, table.probe(12345L));
+
+        table.store(12345L, 6, TranspositionTable.LOWER, -42, 27);
+        long entry = table.probe(12345L);
+        assertNotEquals(0, entry);
+        assertEquals(6, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(-42, TranspositionTable.score(entry));
+        assertEquals(27, TranspositionTable.move(entry));
+
+        //a different position in the same bucket is not confused for this one
+        assertEquals(0, table.probe(12345L + 1024 * 7));
+
+        //storing without a move keeps the old move
+        table.store(12345L, 8, TranspositionTable.EXACT, 10, -1);
+        entry = table.probe(12345L);
+        assertEquals(27, TranspositionTable.move(entry));
+        assertEquals(8, TranspositionTable.depth(entry));
+
+        table.clear();
+        assertEquals(0, table.probe(12345L));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.store(2, 10, TranspositionTable.EXACT, 1, -1);
+        table.store(4, 1, TranspositionTable.EXACT, 2, -1);
+
+        //the bucket is full, so the shallow entry is replaced
+        table.store(6, 5, TranspositionTable.EXACT, 3, -1);
+        assertNotEquals(0, table.probe(2));
+        assertEquals(0, table.probe(4));
+        assertNotEquals(0, table.probe(6));
+
+        //entries from old searches are replaced before deep ones from the current search
+        table.newSearch();
+        table.newSearch();
+        table.newSearch();
+        table.store(8, 9, TranspositionTable.EXACT, 4, -1);
+        table.store(10, 1, TranspositionTable.EXACT, 5, -1);
+        assertNotEquals(0, table.probe(8));
+        assertNotEquals(0, table.probe(10));
+    }
+}